@@ -1,12 +1,21 @@
 package com.training.mybank;
 
+import com.training.mybank.dao.HistoryCursor;
+import com.training.mybank.fraud.TransactionDeclinedException;
 import com.training.mybank.model.Account;
+import com.training.mybank.model.Money;
+import com.training.mybank.model.Transaction;
+import com.training.mybank.security.LoginThrottledException;
 import com.training.mybank.service.BankingService;
+import com.training.mybank.service.InsufficientFundsException;
 
 import java.util.List;
 import java.util.Scanner;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class BankingApp {
+    private static final Logger log = Logger.getLogger(BankingApp.class.getName());
     private static final BankingService service = new BankingService();
     private static final Scanner scanner = new Scanner(System.in);
 
@@ -22,6 +31,11 @@ public class BankingApp {
                 }
             } catch (Exception e) {
                 System.err.println("Error: " + e.getMessage());
+                // Rejected input is the user's to fix; anything else is worth a stack trace in the log
+                boolean userError = e instanceof IllegalArgumentException || e instanceof IllegalStateException
+                        || e instanceof SecurityException || e instanceof InsufficientFundsException
+                        || e instanceof TransactionDeclinedException;
+                log.log(userError ? Level.FINE : Level.WARNING, "Menu action failed", e);
             }
         }
     }
@@ -43,10 +57,14 @@ public class BankingApp {
                 System.out.print("Password: ");
                 String pwd = scanner.nextLine();
 
-                if (service.login(uid, pwd)) {
-                    System.out.println("Login successful! Welcome, " + uid);
-                } else {
-                    System.out.println("Invalid credentials.");
+                try {
+                    if (service.login(uid, pwd)) {
+                        System.out.println("Login successful! Welcome, " + uid);
+                    } else {
+                        System.out.println("Invalid credentials.");
+                    }
+                } catch (LoginThrottledException e) {
+                    System.out.println(e.getMessage());
                 }
             }
             case "2" -> System.exit(0);
@@ -62,7 +80,8 @@ public class BankingApp {
         System.out.println("4. Deposit Money");
         System.out.println("5. Withdraw Money");
         System.out.println("6. Transfer Money");
-        System.out.println("7. Logout");
+        System.out.println("7. Transaction History");
+        System.out.println("8. Logout");
         System.out.print("Selection: ");
 
         String choice = scanner.nextLine();
@@ -71,26 +90,26 @@ public class BankingApp {
             case "1" -> listAccounts();
             case "2" -> {
                 System.out.print("Enter initial deposit amount: ");
-                double amount = Double.parseDouble(scanner.nextLine());
-                service.createAccount(amount);
-                System.out.println("Account created successfully.");
+                long amount = Money.parse(scanner.nextLine());
+                int accountId = service.createAccount(amount);
+                System.out.println("Account " + accountId + " created successfully.");
             }
             case "3" -> {
                 int id = promptAccountId();
-                double bal = service.getBalance(id);
-                System.out.println("Current Balance: $" + bal);
+                long bal = service.getBalance(id);
+                System.out.println("Current Balance: $" + Money.format(bal));
             }
             case "4" -> {
                 int id = promptAccountId();
                 System.out.print("Amount to deposit: ");
-                double amt = Double.parseDouble(scanner.nextLine());
+                long amt = Money.parse(scanner.nextLine());
                 service.deposit(id, amt);
                 System.out.println("Deposit complete.");
             }
             case "5" -> {
                 int id = promptAccountId();
                 System.out.print("Amount to withdraw: ");
-                double amt = Double.parseDouble(scanner.nextLine());
+                long amt = Money.parse(scanner.nextLine());
                 service.withdraw(id, amt);
                 System.out.println("Withdrawal complete.");
             }
@@ -100,11 +119,12 @@ public class BankingApp {
                 System.out.print("To Account ID: ");
                 int to = Integer.parseInt(scanner.nextLine());
                 System.out.print("Transfer Amount: ");
-                double amt = Double.parseDouble(scanner.nextLine());
+                long amt = Money.parse(scanner.nextLine());
                 service.transferFunds(from, to, amt);
                 System.out.println("Transfer successful.");
             }
-            case "7" -> service.logout();
+            case "7" -> showHistory(promptAccountId());
+            case "8" -> service.logout();
             default -> System.out.println("Invalid option.");
         }
     }
@@ -117,8 +137,28 @@ public class BankingApp {
             System.out.println("\nID\t| Balance");
             System.out.println("------------------");
             for (Account acc : accounts) {
-                System.out.printf("%d\t| $%.2f%n", acc.accountId(), acc.balance());
+                System.out.printf("%d\t| $%s%n", acc.accountId(), Money.format(acc.balance()));
+            }
+        }
+    }
+
+    private static void showHistory(int accountId) throws Exception {
+        HistoryCursor cursor = HistoryCursor.START;
+        while (true) {
+            List<Transaction> page = service.getTransactionHistory(accountId, cursor, 10);
+            if (page.isEmpty()) {
+                System.out.println("No more transactions.");
+                return;
+            }
+            System.out.println("\nID\t| Date\t\t\t| From\t| To\t| Amount");
+            for (Transaction tx : page) {
+                System.out.printf("%d\t| %tF %<tT\t| %s\t| %s\t| $%s%n", tx.transactionId(), tx.timestamp(),
+                        tx.fromAccount() == null ? "-" : tx.fromAccount(),
+                        tx.toAccount() == null ? "-" : tx.toAccount(), Money.format(tx.amount()));
             }
+            System.out.print("Press n for the next page, Enter to stop: ");
+            if (!"n".equalsIgnoreCase(scanner.nextLine().trim())) return;
+            cursor = HistoryCursor.after(page.get(page.size() - 1));
         }
     }
 
@@ -0,0 +1,67 @@
+package com.training.mybank.batch;
+
+import com.training.mybank.config.AppConfig;
+import com.training.mybank.config.DatabaseConfig;
+import com.training.mybank.dao.AccountDAO;
+import com.training.mybank.dao.DatabaseClock;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Periodic job that writes balance snapshots (see {@link AccountDAO#takeBalanceSnapshots}).
+ * Run it from cron or a scheduler, e.g. hourly or nightly; each run only reads the ledger rows
+ * since the previous run.
+ *
+ * A snapshot is taken as of {@code now - settleSeconds}, not now. transaction_date is set when
+ * a transaction starts, so a row may commit a moment after a later-dated snapshot was taken;
+ * staying well behind the present keeps every snapshot exact. "Now" is the database's clock
+ * in its session zone, the one that fills transaction_date (see {@link DatabaseClock}).
+ */
+public class BalanceSnapshotJob {
+    private static final Logger log = Logger.getLogger(BalanceSnapshotJob.class.getName());
+
+    private final AccountDAO accountDAO = new AccountDAO();
+    private final long settleMillis;
+
+    public BalanceSnapshotJob() {
+        this(AppConfig.getLong("mybank.snapshot.settle-seconds", 300));
+    }
+
+    public BalanceSnapshotJob(long settleSeconds) {
+        this.settleMillis = TimeUnit.SECONDS.toMillis(settleSeconds);
+    }
+
+    public static void main(String[] args) throws SQLException {
+        new BalanceSnapshotJob().runOnce();
+        DatabaseConfig.close();
+    }
+
+    /**
+     * Takes one round of snapshots. Returns the number of accounts snapshotted.
+     */
+    public int runOnce() throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try {
+                conn.setAutoCommit(false);
+                LocalDateTime cutoff = DatabaseClock.now(conn).minus(Duration.ofMillis(settleMillis));
+                LocalDateTime previous = accountDAO.getLatestSnapshotTime(conn);
+                if (previous != null && !cutoff.isAfter(previous)) {
+                    conn.rollback();
+                    return 0;
+                }
+                int written = accountDAO.takeBalanceSnapshots(conn, previous, cutoff);
+                conn.commit();
+                log.info("Balance snapshot as of " + cutoff + ": " + written + " accounts");
+                return written;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.training.mybank.batch;
+
+import com.training.mybank.config.AppConfig;
+import com.training.mybank.config.DatabaseConfig;
+import com.training.mybank.dao.AccountDAO;
+import com.training.mybank.dao.DataAccessException;
+import com.training.mybank.dao.TransactionDAO;
+import com.training.mybank.model.Account;
+import com.training.mybank.model.Money;
+import com.training.mybank.util.IntLongHashMap;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * End-of-day check that every account balance equals its ledger: credits minus debits over
+ * all transactions rows.
+ *
+ * The ledger is split into transaction_id ranges that fork-join workers stream in parallel,
+ * each on its own connection with a large fetch size, summing net movement per account into
+ * a primitive {@link IntLongHashMap}. The partial maps are merged pairwise as the workers
+ * finish. Memory is proportional to the number of accounts, not ledger rows, and at most
+ * {@code parallelism} connections are in use.
+ *
+ * The aggregation and the balance scan are not one snapshot, so writes landing during the run
+ * can make a healthy account look wrong. Every mismatch is therefore rechecked in a single
+ * REPEATABLE READ transaction before it is reported. Only the first {@code maxRechecks}
+ * mismatches are kept and rechecked; any beyond that are counted as discrepancies but not
+ * listed, so a badly broken ledger cannot exhaust the heap.
+ */
+public class LedgerReconciler {
+    private static final Logger log = Logger.getLogger(LedgerReconciler.class.getName());
+
+    // Uncached: the balances must come from the database
+    private final AccountDAO accountDAO = new AccountDAO();
+    private final TransactionDAO transactionDAO = new TransactionDAO();
+    private final int parallelism;
+    private final int fetchSize;
+    private final long rangeSize;
+    private final int maxRechecks;
+
+    private record Mismatch(int accountId, long balance, long ledgerNet, String status) {
+    }
+
+    public LedgerReconciler() {
+        this(AppConfig.getInt("mybank.reconcile.parallelism", 0),
+                AppConfig.getInt("mybank.reconcile.fetch-size", 10_000),
+                AppConfig.getLong("mybank.reconcile.range-size", 1_000_000),
+                AppConfig.getInt("mybank.reconcile.max-rechecks", 10_000));
+    }
+
+    /**
+     * @param parallelism ledger readers; 0 means one per core. Never more than the connection pool.
+     * @param rangeSize   transaction_ids per unit of work
+     */
+    public LedgerReconciler(int parallelism, int fetchSize, long rangeSize, int maxRechecks) {
+        if (rangeSize < 1) throw new IllegalArgumentException("rangeSize must be at least 1");
+        int wanted = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.parallelism = Math.min(wanted, DatabaseConfig.getMaximumPoolSize());
+        this.fetchSize = fetchSize;
+        this.rangeSize = rangeSize;
+        this.maxRechecks = maxRechecks;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path report = Path.of(args.length > 0 ? args[0] : "reconciliation.csv");
+        ReconciliationReport result = new LedgerReconciler().reconcile(report);
+        System.out.println(result);
+        DatabaseConfig.close();
+        System.exit(result.isClean() ? 0 : 1);
+    }
+
+    public ReconciliationReport reconcile(Path reportFile) throws SQLException, IOException {
+        long start = System.nanoTime();
+        LongAdder ledgerRows = new LongAdder();
+        IntLongHashMap ledgerNet = aggregateLedger(ledgerRows);
+
+        List<Mismatch> suspects = new ArrayList<>();
+        long[] unchecked = new long[1];
+        long accounts = accountDAO.forEachBalance(fetchSize, (accountId, balance) -> {
+            long net = ledgerNet.get(accountId);
+            if (net == balance) return;
+            if (suspects.size() < maxRechecks) {
+                suspects.add(new Mismatch(accountId, balance, net, "unconfirmed"));
+            } else {
+                unchecked[0]++;
+            }
+        });
+
+        List<Mismatch> discrepancies = recheck(suspects);
+        writeReport(reportFile, discrepancies);
+
+        ReconciliationReport report = new ReconciliationReport(ledgerRows.sum(), accounts,
+                discrepancies.size() + unchecked[0], suspects.size() - discrepancies.size(), unchecked[0],
+                reportFile, (System.nanoTime() - start) / 1_000_000);
+        log.info(report.toString());
+        return report;
+    }
+
+    // --- Ledger aggregation ---
+
+    private IntLongHashMap aggregateLedger(LongAdder ledgerRows) throws SQLException {
+        long[] range = transactionDAO.getTransactionIdRange();
+        if (range == null) return new IntLongHashMap();
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(new AggregateRange(range[0], range[1] + 1, ledgerRows));
+        } catch (DataAccessException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Net movement per account over transaction_id in [from, to)
+    private final class AggregateRange extends RecursiveTask<IntLongHashMap> {
+        private final long from;
+        private final long to;
+        private final LongAdder ledgerRows;
+
+        AggregateRange(long from, long to, LongAdder ledgerRows) {
+            this.from = from;
+            this.to = to;
+            this.ledgerRows = ledgerRows;
+        }
+
+        @Override
+        protected IntLongHashMap compute() {
+            if (to - from <= rangeSize) {
+                IntLongHashMap net = new IntLongHashMap(1024);
+                try {
+                    ledgerRows.add(transactionDAO.forEachLedgerRow(from, to, fetchSize, (fromAcc, toAcc, amount) -> {
+                        if (fromAcc != 0) net.addTo(fromAcc, -amount);
+                        if (toAcc != 0) net.addTo(toAcc, amount);
+                    }));
+                } catch (SQLException e) {
+                    throw new DataAccessException(e);
+                }
+                return net;
+            }
+            long mid = from + (to - from) / 2;
+            AggregateRange left = new AggregateRange(from, mid, ledgerRows);
+            left.fork();
+            IntLongHashMap right = new AggregateRange(mid, to, ledgerRows).compute();
+            IntLongHashMap leftNet = left.join();
+            // Merge the smaller map into the larger one
+            if (leftNet.size() < right.size()) {
+                right.addAll(leftNet);
+                return right;
+            }
+            leftNet.addAll(right);
+            return leftNet;
+        }
+    }
+
+    // --- Recheck and report ---
+
+    private List<Mismatch> recheck(List<Mismatch> suspects) throws SQLException {
+        if (suspects.isEmpty()) return suspects;
+        List<Mismatch> confirmed = new ArrayList<>();
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            try {
+                for (Mismatch suspect : suspects) {
+                    // Balance and ledger read in one snapshot; a new transaction per account keeps it fresh
+                    Account account = accountDAO.getAccountById(conn, suspect.accountId());
+                    long net = transactionDAO.getNetMovement(conn, suspect.accountId());
+                    conn.commit();
+                    if (account != null && account.balance() != net) {
+                        confirmed.add(new Mismatch(suspect.accountId(), account.balance(), net, "confirmed"));
+                    }
+                }
+            } finally {
+                conn.rollback();
+            }
+        }
+        return confirmed;
+    }
+
+    private static void writeReport(Path reportFile, List<Mismatch> discrepancies) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(reportFile)) {
+            out.write("account_id,balance,ledger_net,difference,status");
+            out.newLine();
+            for (Mismatch m : discrepancies) {
+                out.write(m.accountId() + "," + Money.format(m.balance()) + "," + Money.format(m.ledgerNet()) + ","
+                        + Money.format(m.balance() - m.ledgerNet()) + "," + m.status());
+                out.newLine();
+            }
+        }
+    }
+}
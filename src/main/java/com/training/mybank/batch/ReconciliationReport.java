@@ -0,0 +1,31 @@
+package com.training.mybank.batch;
+
+import java.nio.file.Path;
+
+/**
+ * Outcome of one reconciliation run. The accounts whose balance differs from their ledger
+ * are listed in {@code reportFile}, except the {@code unlisted} ones found after the recheck
+ * limit was reached.
+ */
+public record ReconciliationReport(
+        long ledgerRows,
+        long accounts,
+        long discrepancies,  // still different when rechecked in one snapshot, plus the unlisted ones
+        int settled,         // differed only because of writes that landed during the run
+        long unlisted,       // past the recheck limit: counted, not rechecked or listed
+        Path reportFile,
+        long elapsedMillis
+) {
+
+    public boolean isClean() {
+        return discrepancies == 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Reconciled %d accounts against %d ledger rows in %d ms: %d discrepancies (%d settled on recheck)%s%s",
+                accounts, ledgerRows, elapsedMillis, discrepancies, settled,
+                discrepancies > 0 ? ", see " + reportFile : "",
+                unlisted > 0 ? " (" + unlisted + " past the recheck limit not listed)" : "");
+    }
+}
@@ -0,0 +1,259 @@
+package com.training.mybank.batch;
+
+import com.training.mybank.config.AppConfig;
+import com.training.mybank.config.DatabaseConfig;
+import com.training.mybank.dao.AccountDAO;
+import com.training.mybank.dao.DatabaseClock;
+import com.training.mybank.dao.TransactionDAO;
+import com.training.mybank.model.Account;
+import com.training.mybank.util.IntLongHashMap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Monthly statements for every account: the opening balance, each ledger row of the month with
+ * the running balance, the month's credits and debits, and the closing balance, written as
+ * gzip-compressed CSV and printable text (see {@link StatementWriter}).
+ *
+ * Accounts are split into fixed account_id ranges of {@code accountsPerFile}. Each range is one
+ * unit of work, rendered by one of {@code parallelism} workers into its own pair of files,
+ * part-NNNNNN.csv.gz and part-NNNNNN.txt.gz. A worker reads its range in one REPEATABLE READ
+ * transaction: the current balances, the net movement since the month began, and the month's
+ * rows streamed in account order. Lines are written as the rows arrive, so memory does not grow
+ * with the ledger. The opening balance is the current balance less everything since the month
+ * began, so no balance snapshot is needed.
+ *
+ * Month bounds are transaction_date values, compared without any time zone conversion, and a
+ * month counts as ended by the database's clock (see {@link DatabaseClock}).
+ *
+ * A range's files are written under a temporary name and renamed when complete, so the finished
+ * files are the checkpoint: running the job again for the same month and directory skips them
+ * and only redoes the ranges that had not finished.
+ */
+public class StatementJob {
+    private static final Logger log = Logger.getLogger(StatementJob.class.getName());
+
+    private final AccountDAO accountDAO = new AccountDAO();
+    private final TransactionDAO transactionDAO = new TransactionDAO();
+    private final int accountsPerFile;
+    private final int parallelism;
+    private final int fetchSize;
+    private final long settleMillis;
+
+    public StatementJob() {
+        this(AppConfig.getInt("mybank.statements.accounts-per-file", 10_000),
+                AppConfig.getInt("mybank.statements.parallelism", 0),
+                AppConfig.getInt("mybank.statements.fetch-size", 10_000),
+                AppConfig.getLong("mybank.snapshot.settle-seconds", 300));
+    }
+
+    /**
+     * @param parallelism  statement writers; 0 means one per core. Never more than the connection pool.
+     * @param settleSeconds how long after the month ends its statements may be written, so that no
+     *                      row dated in the month can still be uncommitted (as for balance snapshots)
+     */
+    public StatementJob(int accountsPerFile, int parallelism, int fetchSize, long settleSeconds) {
+        if (accountsPerFile < 1) throw new IllegalArgumentException("accountsPerFile must be at least 1");
+        int wanted = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.accountsPerFile = accountsPerFile;
+        this.parallelism = Math.min(wanted, DatabaseConfig.getMaximumPoolSize());
+        this.fetchSize = fetchSize;
+        this.settleMillis = TimeUnit.SECONDS.toMillis(settleSeconds);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: StatementJob <yyyy-MM> [output-dir]");
+            System.exit(2);
+        }
+        YearMonth month = YearMonth.parse(args[0]);
+        Path outputDir = Path.of(args.length > 1 ? args[1] : "statements-" + month);
+        System.out.println(new StatementJob().run(month, outputDir));
+        DatabaseConfig.close();
+    }
+
+    /**
+     * Writes the statements for {@code month} into {@code outputDir}, skipping the ranges an
+     * earlier run finished there.
+     *
+     * @throws IllegalArgumentException if the month has not ended and settled yet
+     */
+    public StatementRun run(YearMonth month, Path outputDir) throws SQLException, IOException {
+        long start = System.nanoTime();
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+        LocalDateTime now;
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            now = DatabaseClock.now(conn);
+        }
+        if (to.isAfter(now.minus(Duration.ofMillis(settleMillis)))) {
+            throw new IllegalArgumentException("Statements for " + month + " cannot be written before the month has ended");
+        }
+        Files.createDirectories(outputDir);
+
+        LongAdder accounts = new LongAdder();
+        LongAdder rows = new LongAdder();
+        int written = 0;
+        int skipped = 0;
+        int[] range = accountDAO.getAccountIdRange();
+        if (range != null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            ExecutorService workers = Executors.newFixedThreadPool(parallelism, r -> {
+                Thread t = new Thread(r, "statement-writer-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                List<Future<?>> parts = new ArrayList<>();
+                for (int part = range[0] / accountsPerFile; part <= range[1] / accountsPerFile; part++) {
+                    if (Files.exists(file(outputDir, part, ".csv.gz")) && Files.exists(file(outputDir, part, ".txt.gz"))) {
+                        skipped++;
+                        continue;
+                    }
+                    int p = part;
+                    parts.add(workers.submit(() -> {
+                        writePart(p, month, from, to, outputDir, accounts, rows);
+                        return null;
+                    }));
+                }
+                for (Future<?> part : parts) {
+                    await(part);
+                    written++;
+                }
+            } finally {
+                workers.shutdownNow();
+            }
+        }
+
+        StatementRun run = new StatementRun(month, outputDir, accounts.sum(), rows.sum(), written, skipped,
+                (System.nanoTime() - start) / 1_000_000);
+        log.info(run.toString());
+        return run;
+    }
+
+    private static Path file(Path outputDir, int part, String suffix) {
+        return outputDir.resolve(String.format("part-%06d%s", part, suffix));
+    }
+
+    private static void await(Future<?> part) throws SQLException, IOException {
+        try {
+            part.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for statements", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sql) throw sql;
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            throw new IllegalStateException("Writing statements failed", cause);
+        }
+    }
+
+    // The statements of the accounts with part * accountsPerFile <= account_id < (part + 1) * accountsPerFile
+    private void writePart(int part, YearMonth month, LocalDateTime from, LocalDateTime to, Path outputDir,
+                           LongAdder accountCount, LongAdder rowCount) throws SQLException, IOException {
+        long fromId = (long) part * accountsPerFile;
+        long toId = fromId + accountsPerFile;
+        Path csv = file(outputDir, part, ".csv.gz");
+        Path text = file(outputDir, part, ".txt.gz");
+        Path csvTmp = file(outputDir, part, ".csv.gz.tmp");
+        Path textTmp = file(outputDir, part, ".txt.gz.tmp");
+
+        long rows;
+        List<Account> accounts = new ArrayList<>();
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            // Balances and ledger from one snapshot; PostgreSQL also needs the transaction for the fetch size
+            conn.setAutoCommit(false);
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            try (StatementWriter out = new StatementWriter(csvTmp, textTmp, month)) {
+                accountDAO.forEachAccount(conn, fromId, toId, fetchSize,
+                        (accountId, userId, balance) -> accounts.add(new Account(accountId, userId, balance)));
+                IntLongHashMap sinceStart = transactionDAO.getNetMovementSince(conn, fromId, toId, from);
+                PartRenderer renderer = new PartRenderer(accounts, sinceStart, out);
+                try {
+                    rows = transactionDAO.forEachAccountRow(conn, fromId, toId, from, to, fetchSize, renderer);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                renderer.finish();
+            } catch (SQLException | IOException | RuntimeException e) {
+                Files.deleteIfExists(csvTmp);
+                Files.deleteIfExists(textTmp);
+                throw e;
+            } finally {
+                conn.rollback();
+            }
+        }
+        // The CSV file marks the part as done, so it is moved last
+        Files.move(textTmp, text, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(csvTmp, csv, StandardCopyOption.ATOMIC_MOVE);
+        accountCount.add(accounts.size());
+        rowCount.add(rows);
+    }
+
+    /**
+     * Walks the part's accounts in account_id order alongside the rows, which arrive in the same
+     * order, so accounts without rows in the month still get a statement.
+     */
+    private static final class PartRenderer implements TransactionDAO.AccountRowHandler {
+        private final List<Account> accounts;
+        private final IntLongHashMap sinceStart;
+        private final StatementWriter out;
+        private int next;
+        private Account current;
+
+        PartRenderer(List<Account> accounts, IntLongHashMap sinceStart, StatementWriter out) {
+            this.accounts = accounts;
+            this.sinceStart = sinceStart;
+            this.out = out;
+        }
+
+        @Override
+        public void accept(int accountId, int transactionId, LocalDateTime date, int counterparty, long amount) {
+            try {
+                while (current == null || current.accountId() < accountId) {
+                    if (!advance()) return;
+                }
+                // Always true, as accounts and rows come from the same snapshot
+                if (current.accountId() == accountId) out.row(transactionId, date, counterparty, amount);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void finish() throws IOException {
+            while (advance()) {
+                // statements of the accounts after the last row
+            }
+        }
+
+        // Ends the current statement and begins the next account's; false when there are no more
+        private boolean advance() throws IOException {
+            if (current != null) out.end();
+            current = next < accounts.size() ? accounts.get(next++) : null;
+            if (current == null) return false;
+            out.begin(current.accountId(), current.userId(), current.balance() - sinceStart.get(current.accountId()));
+            return true;
+        }
+    }
+}
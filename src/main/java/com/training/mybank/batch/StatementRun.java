@@ -0,0 +1,25 @@
+package com.training.mybank.batch;
+
+import java.nio.file.Path;
+import java.time.YearMonth;
+
+/**
+ * Outcome of one statement run. {@code partsSkipped} counts the account ranges an earlier run had
+ * already finished; their accounts and rows are not included in the totals.
+ */
+public record StatementRun(
+        YearMonth month,
+        Path outputDir,
+        long accounts,
+        long ledgerRows,
+        int partsWritten,
+        int partsSkipped,
+        long elapsedMillis
+) {
+
+    @Override
+    public String toString() {
+        return String.format("Statements for %s: %d accounts, %d ledger rows in %d parts (%d already done) in %d ms, in %s",
+                month, accounts, ledgerRows, partsWritten, partsSkipped, elapsedMillis, outputDir);
+    }
+}
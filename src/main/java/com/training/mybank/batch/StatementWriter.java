@@ -0,0 +1,156 @@
+package com.training.mybank.batch;
+
+import com.training.mybank.model.Money;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Renders statements into two gzip files at once: CSV with an opening line, one line per ledger
+ * row and a closing line per account, and fixed-width text for printing, one page per account.
+ * Lines go straight to the compressors, so only the current account's totals are held.
+ *
+ * Call {@link #begin}, then {@link #row} for each ledger row oldest first, then {@link #end}.
+ */
+final class StatementWriter implements Closeable {
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String RULE = "=".repeat(92);
+    private static final String THIN_RULE = "-".repeat(92);
+
+    private final BufferedWriter csv;
+    private final BufferedWriter text;
+    private final String firstDay;
+    private final String lastDay;
+    private final StringBuilder line = new StringBuilder(128);
+    private boolean firstPage = true;
+
+    // The statement being written
+    private String csvPrefix;
+    private long balance;
+    private long credits;
+    private long debits;
+    private int rows;
+
+    StatementWriter(Path csvFile, Path textFile, YearMonth month) throws IOException {
+        this.firstDay = month.atDay(1).toString();
+        this.lastDay = month.atEndOfMonth().toString();
+        this.csv = open(csvFile);
+        BufferedWriter textOut;
+        try {
+            textOut = open(textFile);
+        } catch (IOException e) {
+            csv.close();
+            throw e;
+        }
+        this.text = textOut;
+        csv.write("account_id,user_id,date,transaction_id,type,counterparty,amount,balance\n");
+    }
+
+    private static BufferedWriter open(Path file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(file), BUFFER_SIZE), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    void begin(int accountId, String userId, long openingBalance) throws IOException {
+        this.csvPrefix = accountId + "," + csvField(userId) + ",";
+        this.balance = openingBalance;
+        this.credits = 0;
+        this.debits = 0;
+        this.rows = 0;
+
+        csv.write(csvPrefix + firstDay + ",,OPENING,,," + Money.format(openingBalance) + "\n");
+
+        if (!firstPage) text.write('\f');
+        firstPage = false;
+        text.write(RULE + "\n");
+        line.setLength(0);
+        line.append("STATEMENT OF ACCOUNT ").append(accountId);
+        padLeft(line, "Account holder: " + userId, RULE.length() - line.length());
+        text.write(line.append('\n').toString());
+        text.write("Period: " + firstDay + " to " + lastDay + "\n");
+        text.write(THIN_RULE + "\n");
+        line.setLength(0);
+        padRight(line, "Date", 21);
+        padRight(line, "Reference", 12);
+        padRight(line, "Description", 27);
+        padLeft(line, "Amount", 15);
+        padLeft(line, "Balance", 17);
+        text.write(line.append('\n').toString());
+        textLine(firstDay, "", "Opening balance", null);
+    }
+
+    /** {@code amount} is positive for money in, negative for money out; counterparty 0 means none. */
+    void row(int transactionId, LocalDateTime date, int counterparty, long amount) throws IOException {
+        balance += amount;
+        if (amount >= 0) credits += amount;
+        else debits -= amount;
+        rows++;
+
+        String type;
+        String description;
+        if (counterparty == 0) {
+            type = amount >= 0 ? "DEPOSIT" : "WITHDRAWAL";
+            description = amount >= 0 ? "Deposit" : "Withdrawal";
+        } else {
+            type = amount >= 0 ? "TRANSFER_IN" : "TRANSFER_OUT";
+            description = (amount >= 0 ? "Transfer from " : "Transfer to ") + counterparty;
+        }
+        String when = DATE_TIME.format(date);
+        String amountText = Money.format(amount);
+        csv.write(csvPrefix + when + "," + transactionId + "," + type + "," + (counterparty == 0 ? "" : counterparty)
+                + "," + amountText + "," + Money.format(balance) + "\n");
+        textLine(when, Integer.toString(transactionId), description, amountText);
+    }
+
+    void end() throws IOException {
+        csv.write(csvPrefix + lastDay + ",,CLOSING,," + Money.format(credits - debits) + "," + Money.format(balance) + "\n");
+
+        textLine(lastDay, "", "Closing balance", null);
+        text.write(THIN_RULE + "\n");
+        text.write("Credits: " + Money.format(credits) + "   Debits: " + Money.format(debits)
+                + "   Transactions: " + rows + "\n");
+    }
+
+    private void textLine(String date, String reference, String description, String amount) throws IOException {
+        line.setLength(0);
+        padRight(line, date, 21);
+        padRight(line, reference, 12);
+        padRight(line, description, 27);
+        padLeft(line, amount == null ? "" : amount, 15);
+        padLeft(line, Money.format(balance), 17);
+        text.write(line.append('\n').toString());
+    }
+
+    private static void padRight(StringBuilder out, String value, int width) {
+        out.append(value);
+        for (int i = value.length(); i < width; i++) out.append(' ');
+    }
+
+    private static void padLeft(StringBuilder out, String value, int width) {
+        for (int i = value.length(); i < width; i++) out.append(' ');
+        out.append(value);
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /** Finishes both gzip streams; a statement still open is left incomplete. */
+    @Override
+    public void close() throws IOException {
+        try (csv; text) {
+            // closes both, even if one fails
+        }
+    }
+}
@@ -1,39 +1,80 @@
 package com.training.mybank.config;
 
+import com.training.mybank.jdbc.ProfilingDataSource;
+import com.training.mybank.metrics.MetricsRegistry;
+import com.training.mybank.metrics.PoolMetricsTracker;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
+/**
+ * Owns the application's Hikari connection pool.
+ *
+ * Every call to {@link #getConnection()} borrows a connection from the pool; closing it
+ * (try-with-resources) hands it back. Callers must therefore use one connection per
+ * unit of work and never cache it. Pool settings come from application.properties.
+ *
+ * Unless mybank.jdbc.statistics.enabled is false, connections are handed out through a
+ * {@link ProfilingDataSource}, which keeps per-statement counts and logs slow statements.
+ */
 public class DatabaseConfig {
     private static final String URL = "jdbc:postgresql://localhost:5432/mybankdb?currentSchema=mybank";
     private static final String USER = "postgres";
     private static final String PASS = "password";
-    private static HikariDataSource dataSource;
-    {
+    private static final HikariDataSource pool = createPool();
+    private static final ProfilingDataSource profiler = createProfiler();
+    private static final DataSource dataSource = profiler != null ? profiler : pool;
+
+    private static HikariDataSource createPool() {
         HikariConfig config = new HikariConfig();
-        config.setJdbcUrl("jdbc:postgresql://localhost:5432/mybankdb?currentSchema=mybank");
-        config.setUsername("postgres");
-        config.setPassword("password");
-        // =======================================
-
-        config.setMaximumPoolSize(2);
-        config.setMinimumIdle(2);
-        config.setConnectionTimeout(30_000);
-        config.setIdleTimeout(600_000);
-        config.setMaxLifetime(1_800_000);
-
-        dataSource = new HikariDataSource(config);
+        config.setPoolName("mybank-pool");
+        config.setJdbcUrl(AppConfig.get("spring.datasource.url", URL));
+        config.setUsername(AppConfig.get("spring.datasource.username", USER));
+        config.setPassword(AppConfig.get("spring.datasource.password", PASS));
+
+        String initSql = AppConfig.get("spring.datasource.hikari.connection-init-sql", "");
+        if (!initSql.isEmpty()) {
+            config.setConnectionInitSql(initSql);
+        }
+
+        config.setMaximumPoolSize(AppConfig.getInt("spring.datasource.hikari.maximum-pool-size", 10));
+        config.setMinimumIdle(AppConfig.getInt("spring.datasource.hikari.minimum-idle", 2));
+        config.setConnectionTimeout(AppConfig.getLong("spring.datasource.hikari.connection-timeout", 30_000));
+        config.setIdleTimeout(AppConfig.getLong("spring.datasource.hikari.idle-timeout", 600_000));
+        config.setMaxLifetime(AppConfig.getLong("spring.datasource.hikari.max-lifetime", 1_800_000));
+        config.setLeakDetectionThreshold(AppConfig.getLong("spring.datasource.hikari.leak-detection-threshold", 0));
+        config.setMetricsTrackerFactory(PoolMetricsTracker.factory(MetricsRegistry.shared()));
+
+        return new HikariDataSource(config);
     }
 
-    private static Connection connection = null;
+    private static ProfilingDataSource createProfiler() {
+        if (!AppConfig.getBoolean("mybank.jdbc.statistics.enabled", true)) return null;
+        ProfilingDataSource profiler = new ProfilingDataSource(pool, AppConfig.getLong("mybank.jdbc.slow-query-ms", 200));
+        profiler.registerMetrics(MetricsRegistry.shared());
+        return profiler;
+    }
 
+    /**
+     * Borrows a connection from the pool. Close it to return it.
+     */
     public static Connection getConnection() throws SQLException {
-        if (connection ==null) {
-            connection = dataSource.getConnection();
-        }
-        return connection;
+        return dataSource.getConnection();
+    }
+
+    public static DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public static int getMaximumPoolSize() {
+        return pool.getMaximumPoolSize();
+    }
+
+    public static void close() {
+        if (profiler != null) profiler.logSummary(10);
+        pool.close();
     }
 }
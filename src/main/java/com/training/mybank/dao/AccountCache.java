@@ -0,0 +1,172 @@
+package com.training.mybank.dao;
+
+import com.training.mybank.config.AppConfig;
+import com.training.mybank.model.Account;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded in-memory cache of account rows keyed by account_id.
+ *
+ * Entries expire after a fixed TTL and the least recently used entry is evicted when a
+ * segment is full. The cache is split into independently locked LRU segments so that
+ * concurrent requests for different accounts do not contend on one lock.
+ *
+ * Every invalidation also bumps a version per stripe of accounts. A reader takes the
+ * {@link #version} before reading the row and caches it with {@link #putIfUnchanged}, which
+ * drops the row if an invalidation happened meanwhile, since the row may predate it.
+ */
+public class AccountCache {
+    private static final int SEGMENTS = 16;
+    private static final int VERSION_STRIPES = 1024;
+    private static AccountCache shared;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long ttlNanos;
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private record Entry(Account account, long expiresAt) {
+    }
+
+    private final class Segment extends LinkedHashMap<Integer, Entry> {
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true); // access order = LRU
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public AccountCache(int maxEntries, long ttlMillis) {
+        int perSegment = Math.max(1, maxEntries / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    /**
+     * The process-wide cache, sized from mybank.account-cache.* in application.properties.
+     */
+    public static synchronized AccountCache shared() {
+        if (shared == null) {
+            shared = new AccountCache(
+                    AppConfig.getInt("mybank.account-cache.max-entries", 100_000),
+                    AppConfig.getLong("mybank.account-cache.ttl-ms", 1_000));
+        }
+        return shared;
+    }
+
+    private Segment segmentFor(int accountId) {
+        return segments[(accountId ^ (accountId >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * Returns the cached account, or null on a miss or an expired entry.
+     */
+    public Account get(int accountId) {
+        Segment segment = segmentFor(accountId);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(accountId);
+            if (entry != null && entry.expiresAt() - System.nanoTime() <= 0) {
+                segment.remove(accountId);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.account();
+    }
+
+    public void put(Account account) {
+        Segment segment = segmentFor(account.accountId());
+        Entry entry = new Entry(account, System.nanoTime() + ttlNanos);
+        synchronized (segment) {
+            segment.put(account.accountId(), entry);
+        }
+    }
+
+    /** The account's version, to pass to {@link #putIfUnchanged} after reading it. */
+    public long version(int accountId) {
+        return versions.get(stripe(accountId));
+    }
+
+    /**
+     * Caches the account unless it has been invalidated since {@code version} was taken.
+     */
+    public void putIfUnchanged(Account account, long version) {
+        int accountId = account.accountId();
+        Segment segment = segmentFor(accountId);
+        Entry entry = new Entry(account, System.nanoTime() + ttlNanos);
+        synchronized (segment) {
+            // invalidate() bumps the version before it takes the segment lock to remove
+            if (versions.get(stripe(accountId)) == version) segment.put(accountId, entry);
+        }
+    }
+
+    public void invalidate(int accountId) {
+        versions.incrementAndGet(stripe(accountId));
+        Segment segment = segmentFor(accountId);
+        synchronized (segment) {
+            if (segment.remove(accountId) != null) invalidations.increment();
+        }
+    }
+
+    private static int stripe(int accountId) {
+        return (accountId ^ (accountId >>> 10)) & (VERSION_STRIPES - 1);
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    // --- Metrics ---
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    public double getHitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+}
@@ -1,57 +1,196 @@
 package com.training.mybank.dao;
 
 import com.training.mybank.config.DatabaseConfig;
+import com.training.mybank.metrics.Timer;
 import com.training.mybank.model.Account;
+import com.training.mybank.model.BalanceSnapshot;
+import com.training.mybank.model.Money;
+import com.training.mybank.model.NewAccount;
+import com.training.mybank.util.IntLongHashMap;
 
+import java.math.BigDecimal;
 import java.sql.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class AccountDAO {
+    private static final Timer CREATE_ACCOUNT = StatementTimers.timer("AccountDAO.createAccount");
+    private static final Timer GET_BY_ID = StatementTimers.timer("AccountDAO.getAccountById");
+    private static final Timer GET_BY_USER = StatementTimers.timer("AccountDAO.getAccountsByUserId");
+    private static final Timer UPDATE_BALANCE = StatementTimers.timer("AccountDAO.updateBalance");
+    private static final Timer DEBIT = StatementTimers.timer("AccountDAO.debitIfSufficient");
+    private static final Timer ADJUST_BALANCES = StatementTimers.timer("AccountDAO.adjustBalances");
+    private static final Timer LOCK_BALANCES = StatementTimers.timer("AccountDAO.lockBalances");
+    private static final Timer FIND_SNAPSHOT = StatementTimers.timer("AccountDAO.findSnapshot");
 
-    public void createAccount(Connection conn, String userId, double initialDeposit) throws SQLException {
+    // Columns of an Account, in the order ACCOUNT_ROW reads them
+    static final String ACCOUNT_COLUMNS = "account_id, user_id, balance";
+    static final RowMapper<Account> ACCOUNT_ROW =
+            rs -> new Account(rs.getInt(1), rs.getString(2), Money.fromDecimal(rs.getBigDecimal(3)));
+
+    private final TransactionDAO transactionDAO = new TransactionDAO();
+
+    @FunctionalInterface
+    public interface BalanceHandler {
+        void accept(int accountId, long balance);
+    }
+
+    @FunctionalInterface
+    public interface AccountHandler {
+        void accept(int accountId, String userId, long balance);
+    }
+
+    // Returns the new account_id
+    public int createAccount(Connection conn, String userId, long initialDeposit) throws SQLException {
         String sql = "INSERT INTO accounts (user_id, balance) VALUES (?, ?)";
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, new String[] {"account_id"})) {
             pstmt.setString(1, userId);
-            pstmt.setDouble(2, initialDeposit);
-            pstmt.executeUpdate();
+            pstmt.setBigDecimal(2, Money.toDecimal(initialDeposit));
+            StatementTimers.executeUpdate(pstmt, CREATE_ACCOUNT);
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                if (!keys.next()) throw new SQLException("No account_id generated for new account");
+                return keys.getInt(1);
+            }
         }
     }
 
+    /**
+     * Inserts many accounts with one JDBC batch on the caller's connection/transaction.
+     * Returns the new account_ids in the order of {@code accounts}.
+     */
+    public int[] createAccounts(Connection conn, List<NewAccount> accounts) throws SQLException {
+        int[] ids = new int[accounts.size()];
+        if (accounts.isEmpty()) return ids;
+        String sql = "INSERT INTO accounts (user_id, balance) VALUES (?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, new String[] {"account_id"})) {
+            for (NewAccount account : accounts) {
+                pstmt.setString(1, account.userId());
+                pstmt.setBigDecimal(2, Money.toDecimal(account.initialDeposit()));
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                for (int i = 0; i < ids.length; i++) {
+                    if (!keys.next()) throw new SQLException("Fewer account_ids generated than accounts inserted");
+                    ids[i] = keys.getInt(1);
+                }
+            }
+        }
+        return ids;
+    }
+
     public Account getAccountById(int accountId) throws SQLException {
-        String sql = "SELECT * FROM accounts WHERE account_id = ?";
-        try (Connection conn = DatabaseConfig.getConnection(); 
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            return getAccountById(conn, accountId);
+        }
+    }
 
+    /**
+     * Reads the account on the caller's connection, so it sees the caller's transaction. Never cached.
+     */
+    public Account getAccountById(Connection conn, int accountId) throws SQLException {
+        String sql = "SELECT " + ACCOUNT_COLUMNS + " FROM accounts WHERE account_id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, accountId);
+            try (ResultSet rs = StatementTimers.executeQuery(pstmt, GET_BY_ID)) {
+                return rs.next() ? ACCOUNT_ROW.map(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * Hands every account's balance in cents to {@code handler}, reading {@code fetchSize} rows
+     * per round-trip. Returns the number of accounts.
+     */
+    public long forEachBalance(int fetchSize, BalanceHandler handler) throws SQLException {
+        String sql = "SELECT account_id, CAST(balance * 100 AS BIGINT) FROM accounts";
+        long count = 0;
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            // PostgreSQL only honours the fetch size (server-side cursor) inside a transaction
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setFetchSize(fetchSize);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    for (; rs.next(); count++) {
+                        handler.accept(rs.getInt(1), rs.getLong(2));
+                    }
+                }
+            } finally {
+                conn.rollback();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Like {@link #forEachBalance}, but also hands over each account's owner.
+     */
+    public long forEachAccount(int fetchSize, AccountHandler handler) throws SQLException {
+        String sql = "SELECT account_id, user_id, CAST(balance * 100 AS BIGINT) FROM accounts";
+        long count = 0;
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setFetchSize(fetchSize);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    for (; rs.next(); count++) {
+                        handler.accept(rs.getInt(1), rs.getString(2), rs.getLong(3));
+                    }
+                }
+            } finally {
+                conn.rollback();
+            }
+        }
+        return count;
+    }
+
+    // Lowest and highest account_id, or null if there are no accounts
+    public int[] getAccountIdRange() throws SQLException {
+        String sql = "SELECT MIN(account_id), MAX(account_id) FROM accounts";
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            int min = rs.getInt(1);
+            return rs.wasNull() ? null : new int[] {min, rs.getInt(2)};
+        }
+    }
+
+    /**
+     * Hands every account with {@code fromId <= account_id < toId} to {@code handler} in account_id
+     * order, on the caller's connection, reading {@code fetchSize} rows per round-trip. Returns the
+     * number of accounts.
+     */
+    public long forEachAccount(Connection conn, long fromId, long toId, int fetchSize, AccountHandler handler)
+            throws SQLException {
+        String sql = "SELECT account_id, user_id, CAST(balance * 100 AS BIGINT) FROM accounts"
+                + " WHERE account_id >= ? AND account_id < ? ORDER BY account_id";
+        long count = 0;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setFetchSize(fetchSize);
+            pstmt.setLong(1, fromId);
+            pstmt.setLong(2, toId);
             try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    Account account = new Account(
-                            rs.getInt("account_id"),
-                            rs.getString("user_id"),
-                            rs.getDouble("balance")
-                    );
-                    return account;
+                for (; rs.next(); count++) {
+                    handler.accept(rs.getInt(1), rs.getString(2), rs.getLong(3));
                 }
             }
         }
-        return null;
+        return count;
     }
 
     public List<Account> getAccountsByUserId(String userId) throws SQLException {
-        String sql = "SELECT * FROM accounts WHERE user_id = ?";
+        String sql = "SELECT " + ACCOUNT_COLUMNS + " FROM accounts WHERE user_id = ?";
         List<Account> accounts = new ArrayList<>();
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, userId);
-            try (ResultSet rs = pstmt.executeQuery()) {
+            try (ResultSet rs = StatementTimers.executeQuery(pstmt, GET_BY_USER)) {
                 while (rs.next()) {
-                    accounts.add(new Account(
-                            rs.getInt("account_id"),
-                            rs.getString("user_id"),
-                            rs.getDouble("balance")
-                    ));
+                    accounts.add(ACCOUNT_ROW.map(rs));
                 }
             }
         }
@@ -59,16 +198,161 @@ public class AccountDAO {
     }
 
     /**
-     * Updates balance. Positive amount for deposits, negative for withdrawals.
+     * Called by the owner of a transaction, after it committed (or may have), for each account
+     * whose balance it changed through this DAO. Nothing to do here; a caching DAO evicts the account.
+     */
+    public void afterCommit(int accountId) {
+    }
+
+    /**
+     * Updates balance by an amount in cents. Positive amount for deposits, negative for withdrawals.
      * Uses the connection provided by Service to support ACID transactions.
      */
-    public void updateBalance(Connection conn, int accountId, double amount) throws SQLException {
+    public void updateBalance(Connection conn, int accountId, long amount) throws SQLException {
         String sql = "UPDATE accounts SET balance = balance + ? WHERE account_id = ?";
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setDouble(1, amount);
+            pstmt.setBigDecimal(1, Money.toDecimal(amount));
             pstmt.setInt(2, accountId);
-            int rows = pstmt.executeUpdate();
-            if (rows == 0) throw new SQLException("Update failed, account not found: " + accountId);
+            int rows = StatementTimers.executeUpdate(pstmt, UPDATE_BALANCE);
+            if (rows == 0) throw new AccountNotFoundException(accountId);
+        }
+    }
+
+    /**
+     * Adds each account's delta in cents to its balance with one JDBC batch on the caller's
+     * connection. Accounts are updated in ascending id order, so concurrent callers take the row
+     * locks in the same order. Zero deltas are skipped.
+     */
+    public void adjustBalances(Connection conn, IntLongHashMap deltas) throws SQLException {
+        int[] accountIds = new int[deltas.size()];
+        int[] n = new int[1];
+        deltas.forEach((accountId, delta) -> {
+            if (delta != 0) accountIds[n[0]++] = accountId;
+        });
+        if (n[0] == 0) return;
+        Arrays.sort(accountIds, 0, n[0]);
+        String sql = "UPDATE accounts SET balance = balance + ? WHERE account_id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < n[0]; i++) {
+                pstmt.setBigDecimal(1, Money.toDecimal(deltas.get(accountIds[i])));
+                pstmt.setInt(2, accountIds[i]);
+                pstmt.addBatch();
+            }
+            int[] counts = StatementTimers.executeBatch(pstmt, ADJUST_BALANCES);
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) throw new AccountNotFoundException(accountIds[i]);
+            }
+        }
+    }
+
+    /**
+     * Locks the accounts' rows in the caller's transaction, in ascending account_id order, and
+     * returns their balances in cents. Accounts that do not exist are missing from the result.
+     */
+    public IntLongHashMap lockBalances(Connection conn, int[] accountIds) throws SQLException {
+        IntLongHashMap balances = new IntLongHashMap(accountIds.length);
+        if (accountIds.length == 0) return balances;
+        Integer[] ids = new Integer[accountIds.length];
+        for (int i = 0; i < ids.length; i++) ids[i] = accountIds[i];
+        String sql = "SELECT account_id, balance FROM accounts WHERE account_id = ANY(?) ORDER BY account_id FOR UPDATE";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("integer", ids));
+            try (ResultSet rs = StatementTimers.executeQuery(pstmt, LOCK_BALANCES)) {
+                while (rs.next()) {
+                    balances.put(rs.getInt(1), Money.fromDecimal(rs.getBigDecimal(2)));
+                }
+            }
+        }
+        return balances;
+    }
+
+    /**
+     * Debits the account only if it holds at least {@code amount}, in a single UPDATE.
+     * The funds check and the debit happen atomically under the row lock, so concurrent
+     * withdrawals cannot both pass the check and overdraw the account.
+     *
+     * @return true if the account was debited, false if funds were insufficient
+     *         (or the account does not exist)
+     */
+    public boolean debitIfSufficient(Connection conn, int accountId, long amount) throws SQLException {
+        String sql = "UPDATE accounts SET balance = balance - ? WHERE account_id = ? AND balance >= ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            BigDecimal decimal = Money.toDecimal(amount);
+            pstmt.setBigDecimal(1, decimal);
+            pstmt.setInt(2, accountId);
+            pstmt.setBigDecimal(3, decimal);
+            return StatementTimers.executeUpdate(pstmt, DEBIT) == 1;
+        }
+    }
+
+    // --- Balance snapshots ---
+
+    /**
+     * The account's balance in cents as of {@code asOf}: its latest snapshot at or before that
+     * time plus the ledger rows after the snapshot, so the cost grows with the activity since
+     * the last snapshot rather than with the account's whole history.
+     */
+    public long getBalanceAsOf(int accountId, Timestamp asOf) throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            BalanceSnapshot snapshot = findSnapshot(conn, accountId, asOf);
+            long base = snapshot != null ? snapshot.balance() : 0;
+            Timestamp after = snapshot != null ? snapshot.snapshotAt() : null;
+            return base + transactionDAO.getNetMovement(conn, accountId, after, asOf);
+        }
+    }
+
+    // The latest snapshot at or before asOf, or null if there is none
+    public BalanceSnapshot findSnapshot(Connection conn, int accountId, Timestamp asOf) throws SQLException {
+        String sql = "SELECT account_id, snapshot_at, balance FROM balance_snapshots"
+                + " WHERE account_id = ? AND snapshot_at <= ? ORDER BY snapshot_at DESC LIMIT 1";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, accountId);
+            pstmt.setTimestamp(2, asOf);
+            try (ResultSet rs = StatementTimers.executeQuery(pstmt, FIND_SNAPSHOT)) {
+                if (!rs.next()) return null;
+                return new BalanceSnapshot(rs.getInt(1), rs.getTimestamp(2), Money.fromDecimal(rs.getBigDecimal(3)));
+            }
+        }
+    }
+
+    // Time of the most recent snapshot run, or null if none has run yet
+    public LocalDateTime getLatestSnapshotTime(Connection conn) throws SQLException {
+        String sql = "SELECT MAX(snapshot_at) FROM balance_snapshots";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            return rs.getObject(1, LocalDateTime.class);
+        }
+    }
+
+    /**
+     * Writes a snapshot as of {@code cutoff} for every account with ledger rows in
+     * {@code (previous, cutoff]}: its previous snapshot plus that delta, in one set-based
+     * INSERT ... SELECT. Accounts without activity keep their older snapshot, which is still
+     * exact. Returns the number of snapshots written. The times are the columns' zone-less
+     * values (see {@link DatabaseClock}).
+     */
+    public int takeBalanceSnapshots(Connection conn, LocalDateTime previous, LocalDateTime cutoff) throws SQLException {
+        String sql = "INSERT INTO balance_snapshots (account_id, snapshot_at, balance)"
+                + " SELECT d.account_id, ?, d.net + COALESCE((SELECT s.balance FROM balance_snapshots s"
+                + "     WHERE s.account_id = d.account_id AND s.snapshot_at <= ?"
+                + "     ORDER BY s.snapshot_at DESC LIMIT 1), 0)"
+                + " FROM (SELECT m.account_id, SUM(m.amount) AS net FROM ("
+                + "     SELECT to_account AS account_id, amount FROM transactions"
+                + "         WHERE to_account IS NOT NULL AND transaction_date > ? AND transaction_date <= ?"
+                + "     UNION ALL"
+                + "     SELECT from_account AS account_id, -amount FROM transactions"
+                + "         WHERE from_account IS NOT NULL AND transaction_date > ? AND transaction_date <= ?"
+                + " ) m GROUP BY m.account_id) d";
+        LocalDateTime from = previous != null ? previous : TransactionDAO.BEGINNING.toLocalDateTime();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setObject(1, cutoff);
+            pstmt.setObject(2, from);
+            pstmt.setObject(3, from);
+            pstmt.setObject(4, cutoff);
+            pstmt.setObject(5, from);
+            pstmt.setObject(6, cutoff);
+            return pstmt.executeUpdate();
         }
     }
-}
\ No newline at end of file
+}
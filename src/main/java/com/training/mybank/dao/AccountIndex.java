@@ -0,0 +1,328 @@
+package com.training.mybank.dao;
+
+import com.training.mybank.config.AppConfig;
+import com.training.mybank.model.Account;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+/**
+ * Off-heap index of every account's owner and balance, keyed by account_id, so ownership checks
+ * and balance reads need neither a database round-trip nor an Account object.
+ *
+ * Entries live in direct memory: an open-addressing table of 16-byte slots (account_id, owner
+ * handle, balance in cents) split into 64 MB chunks, so tens of millions of accounts add nothing
+ * for the garbage collector to trace. Each owner is interned once to an int handle (on heap, one
+ * entry per user rather than per account), and an ownership check compares two ints.
+ *
+ * {@link #load} reads every account at startup; accounts opened later are read from the database
+ * the first time they are looked up. Ownership never changes, so ownership answers are exact.
+ * Balances are kept current by the callers that change them: they bracket the transaction with
+ * {@link #beginWrite} and {@link #endWrite}, and the change is applied once it has committed. A
+ * balance read from the database is only kept if no write to that account began or ended while it
+ * was read; otherwise, or after a write whose outcome is unknown, the balance is marked unknown
+ * and the next read of it goes to the database.
+ *
+ * Lookups take no lock. Balance changes share a read lock; adding an account and growing the table
+ * take the write lock. As with the ledger engines, balances are only correct if this process is
+ * the only writer of balances.
+ */
+public final class AccountIndex {
+    private static final Logger log = Logger.getLogger(AccountIndex.class.getName());
+
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    // Slot layout: account_id (0 = free), owner handle, balance
+    private static final int SLOT_BYTES = 16;
+    private static final int OWNER_OFFSET = 4;
+    private static final int BALANCE_OFFSET = 8;
+    private static final int CHUNK_SHIFT = 22; // 4M slots, 64 MB per direct buffer
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final double MAX_LOAD = 0.7;
+    private static final long UNKNOWN = Long.MIN_VALUE;
+    private static final int STRIPES = 4096;
+
+    private static AccountIndex shared;
+
+    private final AccountDAO accountDAO;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Table table;
+    private volatile int size; // changed under the write lock
+
+    private final ConcurrentHashMap<String, Integer> owners = new ConcurrentHashMap<>();
+    private final AtomicInteger nextOwner = new AtomicInteger(1);
+
+    // Per stripe of accounts: writes in progress, and a version bumped whenever one begins or ends
+    private final AtomicIntegerArray writers = new AtomicIntegerArray(STRIPES);
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+
+    private final LongAdder databaseReads = new LongAdder();
+
+    private static final class Table {
+        final ByteBuffer[] chunks;
+        final int mask;
+
+        Table(int capacity) {
+            int chunkSlots = Math.min(capacity, 1 << CHUNK_SHIFT);
+            chunks = new ByteBuffer[capacity / chunkSlots];
+            for (int i = 0; i < chunks.length; i++) {
+                // Zeroed, so every slot starts free; aligned for the atomic long accesses
+                chunks[i] = ByteBuffer.allocateDirect(chunkSlots * SLOT_BYTES + Long.BYTES).alignedSlice(Long.BYTES);
+            }
+            mask = capacity - 1;
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        ByteBuffer chunk(int slot) {
+            return chunks[slot >>> CHUNK_SHIFT];
+        }
+
+        static int offset(int slot) {
+            return (slot & ((1 << CHUNK_SHIFT) - 1)) * SLOT_BYTES;
+        }
+
+        int key(int slot) {
+            return (int) INT.getAcquire(chunk(slot), offset(slot));
+        }
+
+        // The slot holding the account, or the free slot where it would go
+        int slot(int accountId) {
+            int i = mix(accountId) & mask;
+            int key;
+            while ((key = key(i)) != 0 && key != accountId) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+    }
+
+    public AccountIndex(AccountDAO accountDAO, int expectedAccounts) {
+        this.accountDAO = accountDAO;
+        int capacity = 1024;
+        while (capacity < MAX_CAPACITY && capacity * MAX_LOAD < expectedAccounts) capacity <<= 1;
+        this.table = new Table(capacity);
+    }
+
+    /**
+     * Returns the process-wide index if mybank.account-index.enabled is true, otherwise null.
+     * The first call loads every account.
+     */
+    public static synchronized AccountIndex sharedFromConfig() {
+        if (!AppConfig.getBoolean("mybank.account-index.enabled", false)) return null;
+        if (shared == null) {
+            AccountIndex index = new AccountIndex(new AccountDAO(),
+                    AppConfig.getInt("mybank.account-index.expected-accounts", 1_000_000));
+            try {
+                long count = index.load(AppConfig.getInt("mybank.reconcile.fetch-size", 10_000));
+                log.info(String.format("Account index loaded %d accounts of %d owners into %d MB off-heap",
+                        count, index.getOwnerCount(), index.getOffHeapBytes() >> 20));
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not load the account index", e);
+            }
+            shared = index;
+        }
+        return shared;
+    }
+
+    /**
+     * Adds every account in the database, {@code fetchSize} rows per round-trip, and returns how many
+     * there were. Meant for startup: balance changes wait until it is done.
+     */
+    public long load(int fetchSize) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            return accountDAO.forEachAccount(fetchSize,
+                    (accountId, userId, balance) -> insert(accountId, handleOf(userId), balance));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * True if the account exists and belongs to {@code userId}.
+     */
+    public boolean isOwner(int accountId, String userId) throws SQLException {
+        if (accountId <= 0) return false;
+        Table t = table;
+        int slot = t.slot(accountId);
+        if (t.key(slot) == accountId) {
+            Integer owner = owners.get(userId);
+            return owner != null && owner == (int) INT.get(t.chunk(slot), Table.offset(slot) + OWNER_OFFSET);
+        }
+        Account account = readThrough(accountId);
+        return account != null && account.userId().equals(userId);
+    }
+
+    /**
+     * The account's balance in cents.
+     *
+     * @throws SQLException also if there is no such account
+     */
+    public long getBalance(int accountId) throws SQLException {
+        Table t = table;
+        int slot = t.slot(accountId);
+        if (accountId > 0 && t.key(slot) == accountId) {
+            long balance = (long) LONG.getVolatile(t.chunk(slot), Table.offset(slot) + BALANCE_OFFSET);
+            if (balance != UNKNOWN) return balance;
+        }
+        Account account = readThrough(accountId);
+        if (account == null) throw new SQLException("Account not found: " + accountId);
+        return account.balance();
+    }
+
+    /** Call before a transaction that changes the account's balance. */
+    public void beginWrite(int accountId) {
+        int stripe = stripe(accountId);
+        writers.incrementAndGet(stripe);
+        versions.incrementAndGet(stripe);
+    }
+
+    /**
+     * Call once the transaction begun with {@link #beginWrite} is over, with the change it committed
+     * (0 if it rolled back), or with {@code known} false if it is not known whether it committed.
+     */
+    public void endWrite(int accountId, long delta, boolean known) {
+        if (!known) {
+            setUnknown(accountId);
+        } else if (delta != 0) {
+            addToBalance(accountId, delta);
+        }
+        int stripe = stripe(accountId);
+        writers.decrementAndGet(stripe);
+        versions.incrementAndGet(stripe);
+    }
+
+    // Reads the account from the database and keeps what it can; null if there is no such account
+    private Account readThrough(int accountId) throws SQLException {
+        databaseReads.increment();
+        int stripe = stripe(accountId);
+        long version = versions.get(stripe);
+        boolean quiet = writers.get(stripe) == 0;
+        Account account = accountDAO.getAccountById(accountId);
+        if (account == null) return null;
+
+        int owner = handleOf(account.userId());
+        long balance = quiet ? account.balance() : UNKNOWN;
+        lock.writeLock().lock();
+        try {
+            Table t = table;
+            int slot = t.slot(accountId);
+            if (t.key(slot) != accountId) {
+                insert(accountId, owner, balance);
+            } else if (balance != UNKNOWN) {
+                LONG.compareAndSet(t.chunk(slot), Table.offset(slot) + BALANCE_OFFSET, UNKNOWN, balance);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // A write that began or ended meanwhile may or may not be in what was read
+        if (quiet && versions.get(stripe) != version) setUnknown(accountId);
+        return account;
+    }
+
+    private int handleOf(String userId) {
+        return owners.computeIfAbsent(userId, u -> nextOwner.getAndIncrement());
+    }
+
+    // Under the write lock, for an account not in the table yet. The account_id is written last,
+    // so lookups never see a half-written slot
+    private void insert(int accountId, int owner, long balance) {
+        Table t = table;
+        int slot = t.slot(accountId);
+        ByteBuffer chunk = t.chunk(slot);
+        int offset = Table.offset(slot);
+        LONG.setVolatile(chunk, offset + BALANCE_OFFSET, balance);
+        INT.set(chunk, offset + OWNER_OFFSET, owner);
+        INT.setRelease(chunk, offset, accountId);
+        size++;
+        if (size > t.capacity() * MAX_LOAD) grow(t);
+    }
+
+    private void grow(Table old) {
+        if (old.capacity() >= MAX_CAPACITY) throw new IllegalStateException("Account index is full");
+        Table grown = new Table(old.capacity() << 1);
+        for (int i = 0; i < old.capacity(); i++) {
+            int accountId = old.key(i);
+            if (accountId == 0) continue;
+            ByteBuffer from = old.chunk(i);
+            int slot = grown.slot(accountId);
+            ByteBuffer to = grown.chunk(slot);
+            int offset = Table.offset(slot);
+            INT.set(to, offset + OWNER_OFFSET, (int) INT.get(from, Table.offset(i) + OWNER_OFFSET));
+            LONG.set(to, offset + BALANCE_OFFSET, (long) LONG.getVolatile(from, Table.offset(i) + BALANCE_OFFSET));
+            INT.set(to, offset, accountId);
+        }
+        table = grown; // the volatile write publishes the copied slots
+    }
+
+    private void addToBalance(int accountId, long delta) {
+        lock.readLock().lock();
+        try {
+            Table t = table;
+            int slot = t.slot(accountId);
+            if (t.key(slot) != accountId) return; // not loaded yet; its first read sees the change
+            ByteBuffer chunk = t.chunk(slot);
+            int offset = Table.offset(slot) + BALANCE_OFFSET;
+            long balance;
+            do {
+                balance = (long) LONG.getVolatile(chunk, offset);
+                if (balance == UNKNOWN) return;
+            } while (!LONG.compareAndSet(chunk, offset, balance, balance + delta));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void setUnknown(int accountId) {
+        lock.readLock().lock();
+        try {
+            Table t = table;
+            int slot = t.slot(accountId);
+            if (t.key(slot) == accountId) LONG.setVolatile(t.chunk(slot), Table.offset(slot) + BALANCE_OFFSET, UNKNOWN);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static int stripe(int accountId) {
+        return mix(accountId) & (STRIPES - 1);
+    }
+
+    // Sequential ids would otherwise fill runs of adjacent slots
+    private static int mix(int accountId) {
+        int h = accountId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // --- Metrics ---
+
+    public int getAccountCount() {
+        return size;
+    }
+
+    public int getOwnerCount() {
+        return owners.size();
+    }
+
+    public long getOffHeapBytes() {
+        return (long) table.capacity() * SLOT_BYTES;
+    }
+
+    public long getDatabaseReadCount() {
+        return databaseReads.sum();
+    }
+}
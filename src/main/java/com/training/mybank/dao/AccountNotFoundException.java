@@ -0,0 +1,22 @@
+package com.training.mybank.dao;
+
+import java.sql.SQLException;
+
+/**
+ * Thrown when a balance change names an account that does not exist, e.g. the destination of a
+ * transfer. A client error rather than a database failure, so it is never worth retrying.
+ */
+public class AccountNotFoundException extends SQLException {
+    private static final String NO_DATA = "02000";
+
+    private final int accountId;
+
+    public AccountNotFoundException(int accountId) {
+        super("Account not found: " + accountId, NO_DATA);
+        this.accountId = accountId;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+}
@@ -0,0 +1,65 @@
+package com.training.mybank.dao;
+
+import com.training.mybank.model.Account;
+import com.training.mybank.util.IntLongHashMap;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Read-through {@link AccountCache} in front of {@link AccountDAO}.
+ *
+ * Lookups by id are served from the cache when possible. Every balance change made
+ * through this DAO evicts the account, and so does {@link #afterCommit} once the change has
+ * committed: until then readers still see the old committed row, and one of them may have
+ * cached it. A row read before an eviction is never cached after it (see
+ * {@link AccountCache#putIfUnchanged}), so once the owner of the transaction has called
+ * afterCommit, the next read returns the new balance.
+ * Misses are never cached, so a newly created account needs no invalidation.
+ * Ownership (user_id) never changes, so ownership checks are always exact.
+ */
+public class CachingAccountDAO extends AccountDAO {
+    private final AccountCache cache;
+
+    public CachingAccountDAO(AccountCache cache) {
+        this.cache = cache;
+    }
+
+    public AccountCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public Account getAccountById(int accountId) throws SQLException {
+        Account account = cache.get(accountId);
+        if (account == null) {
+            long version = cache.version(accountId);
+            account = super.getAccountById(accountId);
+            if (account != null) cache.putIfUnchanged(account, version);
+        }
+        return account;
+    }
+
+    @Override
+    public void afterCommit(int accountId) {
+        cache.invalidate(accountId);
+    }
+
+    @Override
+    public void updateBalance(Connection conn, int accountId, long amount) throws SQLException {
+        cache.invalidate(accountId);
+        super.updateBalance(conn, accountId, amount);
+    }
+
+    @Override
+    public void adjustBalances(Connection conn, IntLongHashMap deltas) throws SQLException {
+        deltas.forEach((accountId, delta) -> cache.invalidate(accountId));
+        super.adjustBalances(conn, deltas);
+    }
+
+    @Override
+    public boolean debitIfSufficient(Connection conn, int accountId, long amount) throws SQLException {
+        cache.invalidate(accountId);
+        return super.debitIfSufficient(conn, accountId, amount);
+    }
+}
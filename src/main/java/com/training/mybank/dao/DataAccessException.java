@@ -0,0 +1,18 @@
+package com.training.mybank.dao;
+
+import java.sql.SQLException;
+
+/**
+ * Unchecked wrapper for a SQLException raised while a stream is being consumed,
+ * where lambdas and Stream methods cannot throw checked exceptions.
+ */
+public class DataAccessException extends RuntimeException {
+    public DataAccessException(SQLException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -0,0 +1,28 @@
+package com.training.mybank.dao;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+
+/**
+ * The database's local clock. transaction_date, created_at and the other TIMESTAMP columns are
+ * filled from CURRENT_TIMESTAMP in the session time zone (connection-init-sql), which need not be
+ * the JVM's. Cutoffs compared against those columns are therefore taken from this clock and bound
+ * with {@code setObject(LocalDateTime)}, which the drivers pass on without shifting it by a zone.
+ */
+public final class DatabaseClock {
+
+    private DatabaseClock() {
+    }
+
+    /** LOCALTIMESTAMP on the connection: the start of its current transaction, in the session zone. */
+    public static LocalDateTime now(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT LOCALTIMESTAMP")) {
+            rs.next();
+            return rs.getObject(1, LocalDateTime.class);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.training.mybank.dao;
+
+import com.training.mybank.model.Transaction;
+
+import java.sql.Timestamp;
+
+/**
+ * Keyset position in a transaction history that is ordered newest first by
+ * (transaction_date, transaction_id). A page or stream started from a cursor
+ * returns only rows strictly older than it.
+ */
+public record HistoryCursor(Timestamp timestamp, int transactionId) {
+
+    /** Position before the newest row, i.e. start from the beginning of the history. */
+    public static final HistoryCursor START =
+            new HistoryCursor(Timestamp.valueOf("9999-12-31 23:59:59"), Integer.MAX_VALUE);
+
+    /** Cursor that continues after the given row, typically the last row of a page. */
+    public static HistoryCursor after(Transaction last) {
+        return new HistoryCursor(last.timestamp(), last.transactionId());
+    }
+}
@@ -0,0 +1,53 @@
+package com.training.mybank.dao;
+
+import com.training.mybank.config.DatabaseConfig;
+import com.training.mybank.metrics.Timer;
+
+import java.sql.*;
+import java.time.Duration;
+
+public class IdempotencyDAO {
+    private static final Timer CLAIM = StatementTimers.timer("IdempotencyDAO.claim");
+    private static final Timer FIND = StatementTimers.timer("IdempotencyDAO.findFingerprint");
+
+    /**
+     * Inserts the key in the caller's transaction. Returns false if the key already exists
+     * (or was committed by a concurrent transaction this one waited for).
+     */
+    public boolean claim(Connection conn, String userId, String key, String fingerprint) throws SQLException {
+        String sql = "INSERT INTO idempotency_keys (user_id, idempotency_key, request_fingerprint) VALUES (?, ?, ?)"
+                + " ON CONFLICT DO NOTHING";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, userId);
+            pstmt.setString(2, key);
+            pstmt.setString(3, fingerprint);
+            return StatementTimers.executeUpdate(pstmt, CLAIM) == 1;
+        }
+    }
+
+    // Returns the fingerprint of the request that used this key, or null if the key is unknown
+    public String findFingerprint(String userId, String key) throws SQLException {
+        String sql = "SELECT request_fingerprint FROM idempotency_keys WHERE user_id = ? AND idempotency_key = ?";
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, userId);
+            pstmt.setString(2, key);
+            try (ResultSet rs = StatementTimers.executeQuery(pstmt, FIND)) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    /**
+     * Deletes keys created more than {@code retentionMillis} ago by the database's clock.
+     * Retries older than that are treated as new requests.
+     */
+    public int purgeOlderThan(long retentionMillis) throws SQLException {
+        String sql = "DELETE FROM idempotency_keys WHERE created_at < ?";
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setObject(1, DatabaseClock.now(conn).minus(Duration.ofMillis(retentionMillis)));
+            return pstmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.training.mybank.dao;
+
+import com.training.mybank.config.DatabaseConfig;
+
+import java.sql.*;
+
+public class JournalCheckpointDAO {
+
+    // Sequence number of the last journal record applied to the database, 0 if none
+    public long getAppliedSeq(String journalId) throws SQLException {
+        String sql = "SELECT applied_seq FROM journal_checkpoints WHERE journal_id = ?";
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, journalId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Records the applied position in the caller's transaction, so it commits together with
+     * the effects of the records it covers.
+     */
+    public void saveAppliedSeq(Connection conn, String journalId, long appliedSeq) throws SQLException {
+        String update = "UPDATE journal_checkpoints SET applied_seq = ?, updated_at = CURRENT_TIMESTAMP WHERE journal_id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(update)) {
+            pstmt.setLong(1, appliedSeq);
+            pstmt.setString(2, journalId);
+            if (pstmt.executeUpdate() == 1) return;
+        }
+        String insert = "INSERT INTO journal_checkpoints (journal_id, applied_seq) VALUES (?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(insert)) {
+            pstmt.setString(1, journalId);
+            pstmt.setLong(2, appliedSeq);
+            pstmt.executeUpdate();
+        }
+    }
+}
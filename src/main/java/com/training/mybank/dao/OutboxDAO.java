@@ -0,0 +1,117 @@
+package com.training.mybank.dao;
+
+import com.training.mybank.config.DatabaseConfig;
+import com.training.mybank.metrics.Timer;
+import com.training.mybank.model.LedgerEntry;
+import com.training.mybank.model.LedgerEvent;
+import com.training.mybank.model.Money;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ledger_outbox table, which {@link TransactionDAO} fills in the same transaction as the
+ * ledger rows, and the outbox_offsets each consumer's relay keeps.
+ */
+public class OutboxDAO {
+    private static final Timer APPEND = StatementTimers.timer("OutboxDAO.append");
+    private static final Timer READ = StatementTimers.timer("OutboxDAO.readAfter");
+
+    // Columns of a LedgerEvent, in the order EVENT_ROW reads them
+    static final String EVENT_COLUMNS = "event_id, transaction_id, event_type, from_account, to_account, amount, created_at";
+    static final RowMapper<LedgerEvent> EVENT_ROW = rs -> new LedgerEvent(
+            rs.getLong(1),
+            rs.getInt(2),
+            LedgerEvent.Type.valueOf(rs.getString(3)),
+            (Integer) rs.getObject(4),
+            (Integer) rs.getObject(5),
+            Money.fromDecimal(rs.getBigDecimal(6)),
+            rs.getTimestamp(7));
+
+    /**
+     * Appends one event per ledger row on the caller's connection/transaction, in the order given.
+     * {@code transactionIds[i]} is the transaction_id of {@code entries.get(i)}.
+     */
+    public void append(Connection conn, int[] transactionIds, List<LedgerEntry> entries) throws SQLException {
+        String sql = "INSERT INTO ledger_outbox (transaction_id, event_type, from_account, to_account, amount)"
+                + " VALUES (?, ?, ?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < transactionIds.length; i++) {
+                LedgerEntry entry = entries.get(i);
+                pstmt.setInt(1, transactionIds[i]);
+                pstmt.setString(2, LedgerEvent.Type.of(entry.fromAccount(), entry.toAccount()).name());
+                if (entry.fromAccount() != null) pstmt.setInt(3, entry.fromAccount());
+                else pstmt.setNull(3, Types.INTEGER);
+                if (entry.toAccount() != null) pstmt.setInt(4, entry.toAccount());
+                else pstmt.setNull(4, Types.INTEGER);
+                pstmt.setBigDecimal(5, Money.toDecimal(entry.amount()));
+                pstmt.addBatch();
+            }
+            StatementTimers.executeBatch(pstmt, APPEND);
+        }
+    }
+
+    /**
+     * Up to {@code limit} events with event_id above {@code afterEventId}, in event_id order.
+     */
+    public List<LedgerEvent> readAfter(long afterEventId, int limit) throws SQLException {
+        String sql = "SELECT " + EVENT_COLUMNS + " FROM ledger_outbox WHERE event_id > ? ORDER BY event_id LIMIT ?";
+        List<LedgerEvent> events = new ArrayList<>();
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, afterEventId);
+            pstmt.setInt(2, limit);
+            try (ResultSet rs = StatementTimers.executeQuery(pstmt, READ)) {
+                while (rs.next()) {
+                    events.add(EVENT_ROW.map(rs));
+                }
+            }
+        }
+        return events;
+    }
+
+    // The last event_id delivered to the consumer, 0 if none
+    public long getDeliveredEventId(String consumer) throws SQLException {
+        String sql = "SELECT delivered_event_id FROM outbox_offsets WHERE consumer = ?";
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, consumer);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    public void saveDeliveredEventId(String consumer, long eventId) throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            String update = "UPDATE outbox_offsets SET delivered_event_id = ?, updated_at = CURRENT_TIMESTAMP WHERE consumer = ?";
+            try (PreparedStatement pstmt = conn.prepareStatement(update)) {
+                pstmt.setLong(1, eventId);
+                pstmt.setString(2, consumer);
+                if (pstmt.executeUpdate() == 1) return;
+            }
+            String insert = "INSERT INTO outbox_offsets (consumer, delivered_event_id) VALUES (?, ?)";
+            try (PreparedStatement pstmt = conn.prepareStatement(insert)) {
+                pstmt.setString(1, consumer);
+                pstmt.setLong(2, eventId);
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Deletes the events every consumer in outbox_offsets has had delivered. Returns how many.
+     */
+    public int purgeDelivered() throws SQLException {
+        String sql = "DELETE FROM ledger_outbox WHERE event_id <= (SELECT MIN(delivered_event_id) FROM outbox_offsets)";
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            return pstmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.training.mybank.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of a result set to an object, reading columns by position.
+ *
+ * Each mapper is a constant next to the column list it expects (e.g. {@code AccountDAO.ACCOUNT_COLUMNS}
+ * and {@code AccountDAO.ACCOUNT_ROW}); queries select exactly that list, so the positions hold and
+ * the driver never has to look a column up by name.
+ */
+@FunctionalInterface
+interface RowMapper<T> {
+    T map(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,58 @@
+package com.training.mybank.dao;
+
+import com.training.mybank.metrics.MetricsRegistry;
+import com.training.mybank.metrics.Timer;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Times DAO statements into the {@code mybank_dao_seconds} metric, one {@link Timer} per
+ * statement, held in a static field of the DAO. Only the execute call is timed: borrowing the
+ * connection shows up in the pool metrics and reading the rows in the caller's own timer.
+ */
+final class StatementTimers {
+    private StatementTimers() {
+    }
+
+    static Timer timer(String statement) {
+        return MetricsRegistry.shared().timer("mybank_dao_seconds", "DAO statement execution latency", statement);
+    }
+
+    static ResultSet executeQuery(PreparedStatement pstmt, Timer timer) throws SQLException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            ResultSet rs = pstmt.executeQuery();
+            ok = true;
+            return rs;
+        } finally {
+            timer.record(start, ok);
+        }
+    }
+
+    static int executeUpdate(PreparedStatement pstmt, Timer timer) throws SQLException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            int rows = pstmt.executeUpdate();
+            ok = true;
+            return rows;
+        } finally {
+            timer.record(start, ok);
+        }
+    }
+
+    static int[] executeBatch(PreparedStatement pstmt, Timer timer) throws SQLException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            int[] counts = pstmt.executeBatch();
+            ok = true;
+            return counts;
+        } finally {
+            timer.record(start, ok);
+        }
+    }
+}
@@ -1,24 +1,405 @@
 package com.training.mybank.dao;
 
+import com.training.mybank.config.AppConfig;
+import com.training.mybank.config.DatabaseConfig;
+import com.training.mybank.metrics.Timer;
+import com.training.mybank.model.LedgerEntry;
+import com.training.mybank.model.Money;
+import com.training.mybank.model.Transaction;
+import com.training.mybank.util.IntLongHashMap;
+
 import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class TransactionDAO {
+    private static final Timer RECORD = StatementTimers.timer("TransactionDAO.recordTransaction");
+    private static final Timer RECORD_BATCH = StatementTimers.timer("TransactionDAO.recordTransactions");
+    private static final Timer ACCOUNT_HISTORY = StatementTimers.timer("TransactionDAO.accountHistory");
+    private static final Timer USER_HISTORY = StatementTimers.timer("TransactionDAO.userHistory");
+    private static final Timer NET_MOVEMENT = StatementTimers.timer("TransactionDAO.getNetMovement");
+
+    private static final String INSERT_SQL = "INSERT INTO transactions (from_account, to_account, amount) VALUES (?, ?, ?)";
+    // Every ledger row is also appended to ledger_outbox, in the same transaction
+    private static final boolean OUTBOX = AppConfig.getBoolean("mybank.outbox.enabled", false);
+    // Columns of a Transaction, in the order TRANSACTION_ROW reads them. Null account columns stay null.
+    static final String TRANSACTION_COLUMNS = "transaction_id, from_account, to_account, amount, transaction_date";
+    static final RowMapper<Transaction> TRANSACTION_ROW = rs -> new Transaction(
+            rs.getInt(1),
+            rs.getObject(2, Integer.class),
+            rs.getObject(3, Integer.class),
+            Money.fromDecimal(rs.getBigDecimal(4)),
+            rs.getTimestamp(5));
+
+    private static final String NEWEST_FIRST = " ORDER BY transaction_date DESC, transaction_id DESC";
+    private static final String OLDER_THAN_CURSOR = " AND (transaction_date, transaction_id) < (?, ?)";
+
+    // Two index-ordered branches (debits, credits) merged newest first; self-transfers appear once.
+    // Each branch can walk its (account, transaction_date, transaction_id) index, so the first rows
+    // come back without sorting the account's whole history.
+    private static final String ACCOUNT_HISTORY_SQL =
+            "SELECT " + TRANSACTION_COLUMNS + " FROM ("
+                    + "(SELECT " + TRANSACTION_COLUMNS + " FROM transactions WHERE from_account = ?" + OLDER_THAN_CURSOR + NEWEST_FIRST + " LIMIT ?)"
+                    + " UNION ALL "
+                    + "(SELECT " + TRANSACTION_COLUMNS + " FROM transactions WHERE to_account = ? AND from_account IS DISTINCT FROM ?"
+                    + OLDER_THAN_CURSOR + NEWEST_FIRST + " LIMIT ?)"
+                    + ") h" + NEWEST_FIRST + " LIMIT ?";
+
+    private static final String USER_HISTORY_SQL =
+            "SELECT " + TRANSACTION_COLUMNS + " FROM transactions"
+                    + " WHERE (from_account IN (SELECT account_id FROM accounts WHERE user_id = ?)"
+                    + " OR to_account IN (SELECT account_id FROM accounts WHERE user_id = ?))"
+                    + OLDER_THAN_CURSOR + NEWEST_FIRST + " LIMIT ?";
+
+    // Earlier than any transaction_date
+    static final Timestamp BEGINNING = Timestamp.valueOf("1900-01-01 00:00:00");
+
+    private static final int DEFAULT_FETCH_SIZE = AppConfig.getInt("mybank.history.fetch-size", 500);
+
+    private final OutboxDAO outboxDAO = new OutboxDAO();
 
     /**
-     * Records a log of the transaction.
+     * Records a log of the transaction. The amount is in cents.
      * Use Integer for IDs to allow 'null' values (e.g., for external deposits/withdrawals).
      */
-    public void recordTransaction(Connection conn, Integer fromAcc, Integer toAcc, double amount) throws SQLException {
-        String sql = "INSERT INTO transactions (from_account, to_account, amount) VALUES (?, ?, ?)";
+    public void recordTransaction(Connection conn, Integer fromAcc, Integer toAcc, long amount) throws SQLException {
+        try (PreparedStatement pstmt = prepareInsert(conn)) {
+            bind(pstmt, fromAcc, toAcc, amount);
+            StatementTimers.executeUpdate(pstmt, RECORD);
+            if (OUTBOX) outboxDAO.append(conn, generatedIds(pstmt, 1), List.of(new LedgerEntry(fromAcc, toAcc, amount)));
+        }
+    }
+
+    /**
+     * Inserts many ledger rows with one JDBC batch on the caller's connection/transaction.
+     */
+    public void recordTransactions(Connection conn, List<LedgerEntry> entries) throws SQLException {
+        if (entries.isEmpty()) return;
+        try (PreparedStatement pstmt = prepareInsert(conn)) {
+            for (LedgerEntry entry : entries) {
+                bind(pstmt, entry.fromAccount(), entry.toAccount(), entry.amount());
+                pstmt.addBatch();
+            }
+            StatementTimers.executeBatch(pstmt, RECORD_BATCH);
+            if (OUTBOX) outboxDAO.append(conn, generatedIds(pstmt, entries.size()), entries);
+        }
+    }
+
+    private static PreparedStatement prepareInsert(Connection conn) throws SQLException {
+        return OUTBOX ? conn.prepareStatement(INSERT_SQL, new String[] {"transaction_id"}) : conn.prepareStatement(INSERT_SQL);
+    }
+
+    private static int[] generatedIds(PreparedStatement pstmt, int count) throws SQLException {
+        int[] ids = new int[count];
+        try (ResultSet keys = pstmt.getGeneratedKeys()) {
+            for (int i = 0; i < count; i++) {
+                if (!keys.next()) throw new SQLException("Fewer transaction_ids generated than ledger rows inserted");
+                ids[i] = keys.getInt(1);
+            }
+        }
+        return ids;
+    }
+
+    private static void bind(PreparedStatement pstmt, Integer fromAcc, Integer toAcc, long amount) throws SQLException {
+        if (fromAcc != null) pstmt.setInt(1, fromAcc);
+        else pstmt.setNull(1, Types.INTEGER);
+
+        if (toAcc != null) pstmt.setInt(2, toAcc);
+        else pstmt.setNull(2, Types.INTEGER);
+
+        pstmt.setBigDecimal(3, Money.toDecimal(amount));
+    }
+
+    // --- History ---
+
+    /**
+     * One page of an account's history, newest first, strictly older than {@code after}.
+     * Pass {@link HistoryCursor#START} for the first page and {@link HistoryCursor#after} of the
+     * last row for the next one.
+     */
+    public List<Transaction> getAccountHistoryPage(int accountId, HistoryCursor after, int pageSize) throws SQLException {
+        List<Transaction> page = new ArrayList<>(pageSize);
+        try (Stream<Transaction> rows = streamAccountHistory(accountId, after, pageSize, pageSize)) {
+            rows.forEach(page::add);
+        } catch (DataAccessException e) {
+            throw e.getCause();
+        }
+        return page;
+    }
+
+    public List<Transaction> getUserHistoryPage(String userId, HistoryCursor after, int pageSize) throws SQLException {
+        List<Transaction> page = new ArrayList<>(pageSize);
+        try (Stream<Transaction> rows = streamUserHistory(userId, after, pageSize, pageSize)) {
+            rows.forEach(page::add);
+        } catch (DataAccessException e) {
+            throw e.getCause();
+        }
+        return page;
+    }
+
+    /**
+     * Hands every transaction of the account, newest first, to {@code consumer} without
+     * materialising the history. Returns the number of rows delivered.
+     */
+    public long forEachAccountTransaction(int accountId, HistoryCursor after, Consumer<Transaction> consumer) throws SQLException {
+        long count = 0;
+        try (Stream<Transaction> rows = streamAccountHistory(accountId, after, Long.MAX_VALUE, DEFAULT_FETCH_SIZE)) {
+            for (var it = rows.iterator(); it.hasNext(); count++) {
+                consumer.accept(it.next());
+            }
+        } catch (DataAccessException e) {
+            throw e.getCause();
+        }
+        return count;
+    }
+
+    /**
+     * Lazily streams an account's history, newest first, reading {@code fetchSize} rows per
+     * round-trip through a server-side cursor. The stream holds a pooled connection until it
+     * is closed, so always use it in try-with-resources. Database errors while consuming are
+     * thrown as {@link DataAccessException}.
+     */
+    public Stream<Transaction> streamAccountHistory(int accountId, HistoryCursor after, long limit, int fetchSize) throws SQLException {
+        return openStream(ACCOUNT_HISTORY_SQL, ACCOUNT_HISTORY, fetchSize, pstmt -> {
+            pstmt.setInt(1, accountId);
+            pstmt.setTimestamp(2, after.timestamp());
+            pstmt.setInt(3, after.transactionId());
+            pstmt.setLong(4, limit);
+            pstmt.setInt(5, accountId);
+            pstmt.setInt(6, accountId);
+            pstmt.setTimestamp(7, after.timestamp());
+            pstmt.setInt(8, after.transactionId());
+            pstmt.setLong(9, limit);
+            pstmt.setLong(10, limit);
+        });
+    }
+
+    /**
+     * Lazily streams the history of all of a user's accounts, newest first. Same contract as
+     * {@link #streamAccountHistory}.
+     */
+    public Stream<Transaction> streamUserHistory(String userId, HistoryCursor after, long limit, int fetchSize) throws SQLException {
+        return openStream(USER_HISTORY_SQL, USER_HISTORY, fetchSize, pstmt -> {
+            pstmt.setString(1, userId);
+            pstmt.setString(2, userId);
+            pstmt.setTimestamp(3, after.timestamp());
+            pstmt.setInt(4, after.transactionId());
+            pstmt.setLong(5, limit);
+        });
+    }
+
+    // --- Reconciliation ---
+
+    /** One ledger row; an account of 0 means none (deposits have no from, withdrawals no to). */
+    @FunctionalInterface
+    public interface LedgerRowHandler {
+        void accept(int fromAccount, int toAccount, long amount);
+    }
+
+    // Lowest and highest transaction_id, or null if the ledger is empty
+    public long[] getTransactionIdRange() throws SQLException {
+        String sql = "SELECT MIN(transaction_id), MAX(transaction_id) FROM transactions";
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            long min = rs.getLong(1);
+            return rs.wasNull() ? null : new long[] {min, rs.getLong(2)};
+        }
+    }
+
+    /**
+     * Hands every ledger row with {@code fromId <= transaction_id < toId} to {@code handler},
+     * reading {@code fetchSize} rows per round-trip. Amounts arrive as cents computed by the
+     * database, so no BigDecimal is created per row. Returns the number of rows.
+     */
+    public long forEachLedgerRow(long fromId, long toId, int fetchSize, LedgerRowHandler handler) throws SQLException {
+        String sql = "SELECT from_account, to_account, CAST(amount * 100 AS BIGINT) FROM transactions"
+                + " WHERE transaction_id >= ? AND transaction_id < ?";
+        long count = 0;
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            // PostgreSQL only honours the fetch size (server-side cursor) inside a transaction
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setFetchSize(fetchSize);
+                pstmt.setLong(1, fromId);
+                pstmt.setLong(2, toId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    for (; rs.next(); count++) {
+                        // getInt returns 0 for NULL, which is what the handler expects
+                        handler.accept(rs.getInt(1), rs.getInt(2), rs.getLong(3));
+                    }
+                }
+            } finally {
+                conn.rollback();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * One ledger row as seen from one account: the other account (0 = none, i.e. a deposit or
+     * withdrawal) and the amount in cents, positive for money in and negative for money out.
+     */
+    @FunctionalInterface
+    public interface AccountRowHandler {
+        void accept(int accountId, int transactionId, LocalDateTime date, int counterparty, long amount);
+    }
+
+    /**
+     * Credits minus debits since {@code since} (inclusive) per account, for the accounts with
+     * {@code fromId <= account_id < toId} that have any, on the caller's connection. Times here
+     * and in {@link #forEachAccountRow} are transaction_date's zone-less values (see {@link DatabaseClock}).
+     */
+    public IntLongHashMap getNetMovementSince(Connection conn, long fromId, long toId, LocalDateTime since) throws SQLException {
+        String sql = "SELECT account_id, SUM(amount) FROM ("
+                + " SELECT to_account AS account_id, CAST(amount * 100 AS BIGINT) AS amount FROM transactions"
+                + "  WHERE to_account >= ? AND to_account < ? AND transaction_date >= ?"
+                + " UNION ALL"
+                + " SELECT from_account, -CAST(amount * 100 AS BIGINT) FROM transactions"
+                + "  WHERE from_account >= ? AND from_account < ? AND transaction_date >= ?"
+                + ") moves GROUP BY account_id";
+        IntLongHashMap net = new IntLongHashMap();
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            if (fromAcc != null) pstmt.setInt(1, fromAcc);
-            else pstmt.setNull(1, Types.INTEGER);
+            for (int i = 0; i < 2; i++) {
+                pstmt.setLong(3 * i + 1, fromId);
+                pstmt.setLong(3 * i + 2, toId);
+                pstmt.setObject(3 * i + 3, since);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    net.put(rs.getInt(1), rs.getLong(2));
+                }
+            }
+        }
+        return net;
+    }
+
+    /**
+     * Hands the ledger rows with {@code from <= transaction_date < to} of every account with
+     * {@code fromId <= account_id < toId} to {@code handler}, ordered by account, then oldest first,
+     * on the caller's connection. A transfer between two such accounts is handed over once for
+     * each. Reads {@code fetchSize} rows per round-trip; returns the number of rows.
+     */
+    public long forEachAccountRow(Connection conn, long fromId, long toId, LocalDateTime from, LocalDateTime to, int fetchSize,
+                                  AccountRowHandler handler) throws SQLException {
+        String sql = "SELECT account_id, transaction_id, transaction_date, counterparty, amount FROM ("
+                + " SELECT to_account AS account_id, transaction_id, transaction_date, from_account AS counterparty,"
+                + "        CAST(amount * 100 AS BIGINT) AS amount FROM transactions"
+                + "  WHERE to_account >= ? AND to_account < ? AND transaction_date >= ? AND transaction_date < ?"
+                + " UNION ALL"
+                + " SELECT from_account, transaction_id, transaction_date, to_account, -CAST(amount * 100 AS BIGINT)"
+                + "  FROM transactions"
+                + "  WHERE from_account >= ? AND from_account < ? AND transaction_date >= ? AND transaction_date < ?"
+                + ") moves ORDER BY account_id, transaction_date, transaction_id";
+        long count = 0;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setFetchSize(fetchSize);
+            for (int i = 0; i < 2; i++) {
+                pstmt.setLong(4 * i + 1, fromId);
+                pstmt.setLong(4 * i + 2, toId);
+                pstmt.setObject(4 * i + 3, from);
+                pstmt.setObject(4 * i + 4, to);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                for (; rs.next(); count++) {
+                    // getInt returns 0 for NULL, which is what the handler expects
+                    handler.accept(rs.getInt(1), rs.getInt(2), rs.getObject(3, LocalDateTime.class), rs.getInt(4), rs.getLong(5));
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Credits minus debits of one account over the whole ledger, in cents, on the caller's
+     * connection.
+     */
+    public long getNetMovement(Connection conn, int accountId) throws SQLException {
+        String sql = "SELECT COALESCE(SUM(CASE WHEN to_account = ? THEN amount ELSE 0 END), 0)"
+                + " - COALESCE(SUM(CASE WHEN from_account = ? THEN amount ELSE 0 END), 0)"
+                + " FROM transactions WHERE to_account = ? OR from_account = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 1; i <= 4; i++) pstmt.setInt(i, accountId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return Money.fromDecimal(rs.getBigDecimal(1));
+            }
+        }
+    }
+
+    /**
+     * Credits minus debits of one account for rows with {@code after < transaction_date <= upTo},
+     * in cents, on the caller's connection. A null {@code after} means from the beginning.
+     * Each side is a range scan on the (account, transaction_date) indexes, so the cost is
+     * proportional to the rows in the interval.
+     */
+    public long getNetMovement(Connection conn, int accountId, Timestamp after, Timestamp upTo) throws SQLException {
+        String sql = "SELECT (SELECT COALESCE(SUM(amount), 0) FROM transactions"
+                + "         WHERE to_account = ? AND transaction_date > ? AND transaction_date <= ?)"
+                + "     - (SELECT COALESCE(SUM(amount), 0) FROM transactions"
+                + "         WHERE from_account = ? AND transaction_date > ? AND transaction_date <= ?)";
+        Timestamp from = after != null ? after : BEGINNING;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, accountId);
+            pstmt.setTimestamp(2, from);
+            pstmt.setTimestamp(3, upTo);
+            pstmt.setInt(4, accountId);
+            pstmt.setTimestamp(5, from);
+            pstmt.setTimestamp(6, upTo);
+            try (ResultSet rs = StatementTimers.executeQuery(pstmt, NET_MOVEMENT)) {
+                rs.next();
+                return Money.fromDecimal(rs.getBigDecimal(1));
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Binder {
+        void bind(PreparedStatement pstmt) throws SQLException;
+    }
 
-            if (toAcc != null) pstmt.setInt(2, toAcc);
-            else pstmt.setNull(2, Types.INTEGER);
+    private Stream<Transaction> openStream(String sql, Timer timer, int fetchSize, Binder binder) throws SQLException {
+        Connection conn = DatabaseConfig.getConnection();
+        try {
+            // PostgreSQL only honours the fetch size (server-side cursor) inside a transaction
+            conn.setAutoCommit(false);
+            PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(fetchSize);
+            binder.bind(pstmt);
+            ResultSet rs = StatementTimers.executeQuery(pstmt, timer);
 
-            pstmt.setDouble(3, amount);
-            pstmt.executeUpdate();
+            Spliterator<Transaction> rows = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                    Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super Transaction> action) {
+                    try {
+                        if (!rs.next()) return false;
+                        action.accept(TRANSACTION_ROW.map(rs));
+                        return true;
+                    } catch (SQLException e) {
+                        throw new DataAccessException(e);
+                    }
+                }
+            };
+            return StreamSupport.stream(rows, false).onClose(() -> {
+                try (conn) {
+                    rs.close();
+                    pstmt.close();
+                    conn.rollback(); // read-only; ends the transaction that held the cursor
+                } catch (SQLException e) {
+                    throw new DataAccessException(e);
+                }
+            });
+        } catch (SQLException | RuntimeException e) {
+            conn.close();
+            throw e;
         }
     }
-}
\ No newline at end of file
+}
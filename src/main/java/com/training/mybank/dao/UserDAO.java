@@ -1,26 +1,63 @@
 package com.training.mybank.dao;
 
 import com.training.mybank.config.DatabaseConfig;
+import com.training.mybank.metrics.Timer;
 import com.training.mybank.model.User;
 
 import java.sql.*;
+import java.util.List;
 
 public class UserDAO {
+    private static final Timer GET_BY_ID = StatementTimers.timer("UserDAO.getUserById");
+    private static final Timer GET_PASSWORD = StatementTimers.timer("UserDAO.getPasswordHash");
+    private static final Timer UPDATE_PASSWORD = StatementTimers.timer("UserDAO.updatePassword");
+
+    // Columns of a User, in the order USER_ROW reads them
+    static final String USER_COLUMNS = "user_id, password";
+    static final RowMapper<User> USER_ROW = rs -> new User(rs.getString(1), rs.getString(2));
+
     public User getUserById(String userId) throws SQLException {
-        String sql = "SELECT * FROM users WHERE user_id = ?";
+        String sql = "SELECT " + USER_COLUMNS + " FROM users WHERE user_id = ?";
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, userId);
-            try (ResultSet rs = pstmt.executeQuery()) {
+            try (ResultSet rs = StatementTimers.executeQuery(pstmt, GET_BY_ID)) {
                 if (rs.next()) {
-                    return new User(rs.getString("user_id"), rs.getString("password"));
+                    return USER_ROW.map(rs);
                 }
             }
         }
         return null;
     }
 
+    // Only the stored password hash, for the login path; null if the user does not exist
+    public String getPasswordHash(String userId) throws SQLException {
+        String sql = "SELECT password FROM users WHERE user_id = ?";
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, userId);
+            try (ResultSet rs = StatementTimers.executeQuery(pstmt, GET_PASSWORD)) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    /**
+     * Replaces the stored password hash, but only if it still equals {@code expected}.
+     * Returns false if it had changed in the meantime.
+     */
+    public boolean updatePassword(String userId, String expected, String newHash) throws SQLException {
+        String sql = "UPDATE users SET password = ? WHERE user_id = ? AND password = ?";
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, newHash);
+            pstmt.setString(2, userId);
+            pstmt.setString(3, expected);
+            return StatementTimers.executeUpdate(pstmt, UPDATE_PASSWORD) == 1;
+        }
+    }
+
     public void createUser(User user) throws SQLException {
         String sql = "INSERT INTO users (user_id, password) VALUES (?, ?)";
         try (Connection conn = DatabaseConfig.getConnection();
@@ -30,4 +67,21 @@ public class UserDAO {
             pstmt.executeUpdate();
         }
     }
+
+    /**
+     * Inserts many users with one JDBC batch on the caller's connection/transaction.
+     * Users that already exist are left unchanged.
+     */
+    public void createUsers(Connection conn, List<User> users) throws SQLException {
+        if (users.isEmpty()) return;
+        String sql = "INSERT INTO users (user_id, password) VALUES (?, ?) ON CONFLICT DO NOTHING";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (User user : users) {
+                pstmt.setString(1, user.userId());
+                pstmt.setString(2, user.password());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
 }
@@ -0,0 +1,11 @@
+package com.training.mybank.fraud;
+
+/**
+ * Money about to leave {@code accountId}: a withdrawal when {@code payee} is 0, otherwise a
+ * transfer to the account {@code payee}. The amount is in cents.
+ */
+public record Debit(int accountId, int payee, long amount) {
+    public boolean isTransfer() {
+        return payee != 0;
+    }
+}
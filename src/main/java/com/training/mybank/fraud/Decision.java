@@ -0,0 +1,12 @@
+package com.training.mybank.fraud;
+
+/**
+ * Outcome of screening a debit, from least to most severe. The most severe rule outcome wins.
+ */
+public enum Decision {
+    ALLOW,
+    /** Allowed, but logged and counted for a person to look at. */
+    REVIEW,
+    /** Refused before any money moves. */
+    DECLINE
+}
@@ -0,0 +1,24 @@
+package com.training.mybank.fraud;
+
+/**
+ * One check in the {@link FraudScreen}. A rule may keep state per account (e.g. recent debits),
+ * which the screen creates with {@link #newState} the first time the account debits, and hands
+ * back on every later check of that account, with the account's lock held. So a rule needs no
+ * synchronization of its own, and a check never goes to the database.
+ *
+ * Times are nanoseconds on a clock that starts at 0 and only moves forward.
+ *
+ * @param <S> the per-account state; {@code Void} (and a null state) for stateless rules
+ */
+public interface FraudRule<S> {
+
+    /** Names the rule in metrics and logs. */
+    String name();
+
+    S newState();
+
+    Decision check(S state, Debit debit, long now);
+
+    /** Called for every debit the screen allowed, after all rules have checked it. */
+    void record(S state, Debit debit, long now);
+}
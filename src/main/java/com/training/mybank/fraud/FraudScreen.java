@@ -0,0 +1,217 @@
+package com.training.mybank.fraud;
+
+import com.training.mybank.config.AppConfig;
+import com.training.mybank.metrics.MetricsRegistry;
+import com.training.mybank.metrics.Timer;
+import com.training.mybank.model.Money;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Screens withdrawals and transfers against {@link FraudRule}s before any money moves. Every rule
+ * checks the debit, and the most severe decision wins: DECLINE throws
+ * {@link TransactionDeclinedException}, REVIEW lets the debit through but logs it. Unless it was
+ * declined, the debit is then recorded in every rule's state for the account.
+ *
+ * Rule state lives in memory, one set per account that has debited, so a check is a map lookup,
+ * an uncontended lock and a few array scans, and never a database round-trip. The state is per
+ * process: with several instances each one sees only its own share of an account's debits. A
+ * debit the rules allowed counts even if it then fails, e.g. for insufficient funds, as repeated
+ * failed attempts are worth counting too. Accounts that have not debited for {@code idleNanos}
+ * are forgotten, which must be longer than the longest velocity window.
+ */
+public final class FraudScreen {
+    private static final Logger log = Logger.getLogger(FraudScreen.class.getName());
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int RULE_TIMING_SAMPLE = 64;
+    private static final Timer SCREEN = timer("all");
+
+    private static FraudScreen shared;
+
+    private final FraudRule<Object>[] rules;
+    private final Timer[] ruleTimers;
+    private final long idleNanos;
+    private final long origin = System.nanoTime();
+    private final ConcurrentHashMap<Integer, Activity> accounts = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong();
+
+    private final LongAdder[] decisions = new LongAdder[Decision.values().length];
+    private final LongAdder[] ruleHits;
+
+    // One account's rule states, guarded by its own lock
+    private static final class Activity {
+        final Object[] states;
+        long lastDebit;
+        boolean removed; // swept while a debit was about to use it; that debit looks it up again
+
+        Activity(Object[] states) {
+            this.states = states;
+        }
+    }
+
+    public FraudScreen(List<? extends FraudRule<?>> rules, long idleNanos) {
+        // Unchecked but safe: each rule is only ever handed back the state it created itself
+        @SuppressWarnings("unchecked")
+        FraudRule<Object>[] all = (FraudRule<Object>[]) rules.toArray(new FraudRule<?>[0]);
+        this.rules = all;
+        this.ruleTimers = new Timer[this.rules.length];
+        this.ruleHits = new LongAdder[this.rules.length];
+        for (int i = 0; i < this.rules.length; i++) {
+            ruleTimers[i] = timer(this.rules[i].name());
+            ruleHits[i] = new LongAdder();
+        }
+        for (int i = 0; i < decisions.length; i++) decisions[i] = new LongAdder();
+        this.idleNanos = idleNanos;
+    }
+
+    /**
+     * Returns the process-wide screen with the rules in mybank.fraud.* if mybank.fraud.enabled is
+     * true, otherwise null.
+     */
+    public static synchronized FraudScreen sharedFromConfig() {
+        if (!AppConfig.getBoolean("mybank.fraud.enabled", false)) return null;
+        if (shared == null) {
+            List<FraudRule<?>> rules = rulesFromConfig();
+            shared = new FraudScreen(rules, TimeUnit.MINUTES.toNanos(AppConfig.getLong("mybank.fraud.idle-minutes", 1440)));
+            log.info("Fraud rules: " + rules);
+        }
+        return shared;
+    }
+
+    // The rules listed in mybank.fraud.rules: velocity-<name>, large-amount and new-payee
+    private static List<FraudRule<?>> rulesFromConfig() {
+        List<FraudRule<?>> rules = new ArrayList<>();
+        for (String rule : AppConfig.get("mybank.fraud.rules", "").split(",")) {
+            rule = rule.trim();
+            if (rule.isEmpty()) continue;
+            String prefix = "mybank.fraud." + rule;
+            if (rule.startsWith("velocity-")) {
+                rules.add(new VelocityRule(rule.replace('-', '_'),
+                        TimeUnit.SECONDS.toNanos(AppConfig.getLong(prefix + ".window-seconds", 60)),
+                        AppConfig.getInt(prefix + ".buckets", 12),
+                        AppConfig.getInt(prefix + ".max-count", Integer.MAX_VALUE),
+                        Money.parse(AppConfig.get(prefix + ".max-amount", "9999999999999.99"))));
+            } else if (rule.equals("large-amount")) {
+                rules.add(new LargeAmountRule(Money.parse(AppConfig.get(prefix + ".review-at", "10000")),
+                        Money.parse(AppConfig.get(prefix + ".decline-at", "100000"))));
+            } else if (rule.equals("new-payee")) {
+                rules.add(new NewPayeeRule(Money.parse(AppConfig.get(prefix + ".review-at", "1000")),
+                        AppConfig.getInt(prefix + ".remembered", 16)));
+            } else {
+                throw new IllegalStateException("Unknown fraud rule in mybank.fraud.rules: " + rule);
+            }
+        }
+        return rules;
+    }
+
+    /** Publishes the decision and rule counters as mybank_fraud_* metrics. */
+    public void registerMetrics(MetricsRegistry metrics) {
+        metrics.counterFamily("mybank_fraud_decisions_total", "Debits screened by the fraud rules, by decision", "decision",
+                this::getDecisionCounts);
+        metrics.counterFamily("mybank_fraud_rule_hits_total", "Debits a fraud rule sent to review or declined", "rule",
+                this::getRuleHitCounts);
+        metrics.gauge("mybank_fraud_tracked_accounts", "Accounts with fraud rule state in memory", accounts::size);
+    }
+
+    /**
+     * Screens a debit of {@code amount} cents from {@code accountId} to {@code payee} (0 for a
+     * withdrawal) and records it unless it is declined.
+     *
+     * @throws TransactionDeclinedException if a rule declines it
+     */
+    public Decision screen(int accountId, int payee, long amount) {
+        long start = System.nanoTime();
+        long now = start - origin;
+        Debit debit = new Debit(accountId, payee, amount);
+        Decision decision = Decision.ALLOW;
+        FraudRule<?> decidedBy = null;
+        while (true) {
+            Activity activity = accounts.computeIfAbsent(accountId, id -> new Activity(newStates()));
+            synchronized (activity) {
+                if (activity.removed) continue;
+                // Reading the clock costs about as much as a rule, so single rules are timed on a sample
+                boolean timed = ThreadLocalRandom.current().nextInt(RULE_TIMING_SAMPLE) == 0;
+                long ruleStart = start;
+                for (int i = 0; i < rules.length; i++) {
+                    Decision d = rules[i].check(activity.states[i], debit, now);
+                    if (timed) {
+                        long ruleEnd = System.nanoTime();
+                        ruleTimers[i].recordNanos(ruleEnd - ruleStart, true);
+                        ruleStart = ruleEnd;
+                    }
+                    if (d == Decision.ALLOW) continue;
+                    ruleHits[i].increment();
+                    if (d.compareTo(decision) > 0) {
+                        decision = d;
+                        decidedBy = rules[i];
+                    }
+                }
+                if (decision != Decision.DECLINE) {
+                    for (int i = 0; i < rules.length; i++) rules[i].record(activity.states[i], debit, now);
+                    activity.lastDebit = now;
+                }
+            }
+            break;
+        }
+        decisions[decision.ordinal()].increment();
+        SCREEN.record(start, true);
+        sweepIfDue(now);
+
+        if (decision == Decision.ALLOW) return decision;
+        log.info(String.format("Fraud rule %s: %s of %s from account %d%s", decidedBy.name(), decision,
+                Money.format(amount), accountId, debit.isTransfer() ? " to account " + payee : ""));
+        if (decision == Decision.DECLINE) throw new TransactionDeclinedException(decidedBy.name());
+        return decision;
+    }
+
+    private Object[] newStates() {
+        Object[] states = new Object[rules.length];
+        for (int i = 0; i < rules.length; i++) states[i] = rules[i].newState();
+        return states;
+    }
+
+    // About once a minute, one caller forgets the accounts idle for longer than idleNanos
+    private void sweepIfDue(long now) {
+        long last = lastSweep.get();
+        if (now - last < SWEEP_INTERVAL_NANOS || !lastSweep.compareAndSet(last, now)) return;
+        accounts.forEach((accountId, activity) -> {
+            synchronized (activity) {
+                if (now - activity.lastDebit > idleNanos && accounts.remove(accountId, activity)) {
+                    activity.removed = true;
+                }
+            }
+        });
+    }
+
+    private static Timer timer(String rule) {
+        return MetricsRegistry.shared().timer("mybank_fraud_check_seconds",
+                "Fraud screen latency (operation all) and per rule, sampled 1 in " + RULE_TIMING_SAMPLE, rule);
+    }
+
+    // --- Metrics ---
+
+    public Map<String, Long> getDecisionCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Decision d : Decision.values()) counts.put(d.name().toLowerCase(), decisions[d.ordinal()].sum());
+        return counts;
+    }
+
+    public Map<String, Long> getRuleHitCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < rules.length; i++) counts.put(rules[i].name(), ruleHits[i].sum());
+        return counts;
+    }
+
+    public int getTrackedAccountCount() {
+        return accounts.size();
+    }
+}
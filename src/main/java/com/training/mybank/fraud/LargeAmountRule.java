@@ -0,0 +1,35 @@
+package com.training.mybank.fraud;
+
+/**
+ * Sends a single debit of {@code reviewAt} cents or more to review, and declines one of
+ * {@code declineAt} or more.
+ */
+public class LargeAmountRule implements FraudRule<Void> {
+    private final long reviewAt;
+    private final long declineAt;
+
+    public LargeAmountRule(long reviewAt, long declineAt) {
+        this.reviewAt = reviewAt;
+        this.declineAt = declineAt;
+    }
+
+    @Override
+    public String name() {
+        return "large_amount";
+    }
+
+    @Override
+    public Void newState() {
+        return null;
+    }
+
+    @Override
+    public Decision check(Void state, Debit debit, long now) {
+        if (debit.amount() >= declineAt) return Decision.DECLINE;
+        return debit.amount() >= reviewAt ? Decision.REVIEW : Decision.ALLOW;
+    }
+
+    @Override
+    public void record(Void state, Debit debit, long now) {
+    }
+}
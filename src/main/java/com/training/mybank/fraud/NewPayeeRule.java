@@ -0,0 +1,57 @@
+package com.training.mybank.fraud;
+
+/**
+ * Sends a transfer of {@code reviewAt} cents or more to review when the account has not
+ * transferred to that payee recently. Each account remembers its last {@code remembered} distinct
+ * payees, in memory only, so after a restart every payee is new again until it has been paid once.
+ */
+public class NewPayeeRule implements FraudRule<NewPayeeRule.Payees> {
+    private final long reviewAt;
+    private final int remembered;
+
+    /** The account's recent payees, a ring overwritten oldest first. */
+    public static final class Payees {
+        final int[] accounts;
+        int next;
+
+        Payees(int size) {
+            accounts = new int[size];
+        }
+
+        boolean contains(int payee) {
+            for (int account : accounts) {
+                if (account == payee) return true;
+            }
+            return false;
+        }
+    }
+
+    public NewPayeeRule(long reviewAt, int remembered) {
+        if (remembered < 1) throw new IllegalArgumentException("remembered must be at least 1");
+        this.reviewAt = reviewAt;
+        this.remembered = remembered;
+    }
+
+    @Override
+    public String name() {
+        return "new_payee";
+    }
+
+    @Override
+    public Payees newState() {
+        return new Payees(remembered);
+    }
+
+    @Override
+    public Decision check(Payees payees, Debit debit, long now) {
+        if (!debit.isTransfer() || debit.amount() < reviewAt) return Decision.ALLOW;
+        return payees.contains(debit.payee()) ? Decision.ALLOW : Decision.REVIEW;
+    }
+
+    @Override
+    public void record(Payees payees, Debit debit, long now) {
+        if (!debit.isTransfer() || payees.contains(debit.payee())) return;
+        payees.accounts[payees.next] = debit.payee();
+        payees.next = (payees.next + 1) % payees.accounts.length;
+    }
+}
@@ -0,0 +1,68 @@
+package com.training.mybank.fraud;
+
+import java.util.Arrays;
+
+/**
+ * Count and sum of the amounts added during the last {@code window} nanoseconds, kept in a ring
+ * of fixed-width time buckets with running totals. As time moves on, the buckets that fall out of
+ * the window are subtracted from the totals and reused, so reading the totals costs no scan and
+ * adding never allocates; each bucket is expired once. The window slides one bucket at a time: an
+ * amount counts for between {@code window - window/buckets} and {@code window} nanoseconds.
+ *
+ * Not thread-safe; rules use it as per-account state, which the {@link FraudScreen} only hands
+ * out under the account's lock.
+ */
+public final class SlidingWindow {
+    private final long bucketNanos;
+    private final int buckets;
+    private final long[] ring; // per bucket: count, then sum, so both are on one cache line
+    private long headEpoch;    // the bucket-width interval the newest bucket holds
+    private long count;
+    private long sum;
+
+    public SlidingWindow(long windowNanos, int buckets) {
+        this.bucketNanos = Math.max(1, windowNanos / buckets);
+        this.buckets = buckets;
+        this.ring = new long[2 * buckets];
+    }
+
+    public void add(long now, long amount) {
+        advance(now);
+        // A caller whose clock reading is slightly older than the head adds to the head
+        int slot = 2 * (int) (headEpoch % buckets);
+        ring[slot]++;
+        ring[slot + 1] += amount;
+        count++;
+        sum += amount;
+    }
+
+    public long count(long now) {
+        advance(now);
+        return count;
+    }
+
+    public long sum(long now) {
+        advance(now);
+        return sum;
+    }
+
+    // Expires the buckets between the head and now's bucket
+    private void advance(long now) {
+        long epoch = now / bucketNanos;
+        if (epoch <= headEpoch) return;
+        if (epoch - headEpoch >= buckets) {
+            Arrays.fill(ring, 0);
+            count = 0;
+            sum = 0;
+        } else {
+            for (long e = headEpoch + 1; e <= epoch; e++) {
+                int slot = 2 * (int) (e % buckets);
+                count -= ring[slot];
+                sum -= ring[slot + 1];
+                ring[slot] = 0;
+                ring[slot + 1] = 0;
+            }
+        }
+        headEpoch = epoch;
+    }
+}
@@ -0,0 +1,18 @@
+package com.training.mybank.fraud;
+
+/**
+ * Thrown when a fraud rule declines a withdrawal or transfer. Nothing has been changed. The
+ * message does not say which rule; {@link #getRule} is for logs.
+ */
+public class TransactionDeclinedException extends RuntimeException {
+    private final String rule;
+
+    public TransactionDeclinedException(String rule) {
+        super("Transaction declined.");
+        this.rule = rule;
+    }
+
+    public String getRule() {
+        return rule;
+    }
+}
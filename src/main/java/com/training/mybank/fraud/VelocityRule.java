@@ -0,0 +1,54 @@
+package com.training.mybank.fraud;
+
+import com.training.mybank.model.Money;
+
+/**
+ * Declines a debit that would take the account above {@code maxCount} debits, or above
+ * {@code maxAmount} cents debited, within the sliding window. Withdrawals and transfers count alike.
+ * The window moves in steps of {@code windowNanos / buckets}; each account's window takes about
+ * 16 bytes per bucket.
+ */
+public class VelocityRule implements FraudRule<SlidingWindow> {
+    private final String name;
+    private final long windowNanos;
+    private final int maxCount;
+    private final long maxAmount;
+    private final int buckets;
+
+    public VelocityRule(String name, long windowNanos, int buckets, int maxCount, long maxAmount) {
+        if (windowNanos <= 0) throw new IllegalArgumentException("The window of " + name + " must be positive");
+        if (buckets < 1) throw new IllegalArgumentException("The window of " + name + " needs at least 1 bucket");
+        this.name = name;
+        this.windowNanos = windowNanos;
+        this.maxCount = maxCount;
+        this.maxAmount = maxAmount;
+        this.buckets = buckets;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public SlidingWindow newState() {
+        return new SlidingWindow(windowNanos, buckets);
+    }
+
+    @Override
+    public Decision check(SlidingWindow window, Debit debit, long now) {
+        if (window.count(now) + 1 > maxCount) return Decision.DECLINE;
+        return window.sum(now) + debit.amount() > maxAmount ? Decision.DECLINE : Decision.ALLOW;
+    }
+
+    @Override
+    public void record(SlidingWindow window, Debit debit, long now) {
+        window.add(now, debit.amount());
+    }
+
+    @Override
+    public String toString() {
+        return name + ": at most " + maxCount + " debits and " + Money.format(maxAmount) + " per "
+                + windowNanos / 1_000_000_000 + " s";
+    }
+}
@@ -0,0 +1,393 @@
+package com.training.mybank.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.training.mybank.config.AppConfig;
+import com.training.mybank.dao.AccountNotFoundException;
+import com.training.mybank.fraud.TransactionDeclinedException;
+import com.training.mybank.metrics.MetricsRegistry;
+import com.training.mybank.model.Account;
+import com.training.mybank.model.Money;
+import com.training.mybank.security.LoginThrottledException;
+import com.training.mybank.service.AsyncBankingService;
+import com.training.mybank.service.InsufficientFundsException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * HTTP/JSON front end for the banking operations, built on the JDK's HttpServer.
+ *
+ * <pre>
+ *   POST /api/login                  {"userId": "...", "password": "..."}  -> {"token": "..."}
+ *   POST /api/logout
+ *   GET  /api/accounts                                                    -> [{"accountId": 1, "balance": 10.00}]
+ *   POST /api/accounts               {"initialDeposit": 100.00}            -> {"accountId": 3}
+ *   GET  /api/accounts/{id}/balance                                       -> {"accountId": 1, "balance": 10.00}
+ *   GET  /api/accounts/{id}/balance?asOf=2026-01-31T18:30:00Z             (balance at that instant)
+ *   POST /api/accounts/{id}/deposit  {"amount": 12.50}
+ *   POST /api/accounts/{id}/withdraw {"amount": 12.50}
+ *   POST /api/transfers              {"fromAccountId": 1, "toAccountId": 2, "amount": 12.50}
+ *   GET  /metrics                                                         (Prometheus text format)
+ * </pre>
+ * Every call except login and metrics needs {@code Authorization: Bearer <token>}.
+ *
+ * Deposit, withdraw and transfer accept an {@code Idempotency-Key} header. A retry with the same
+ * key and body does not move money again; its response carries {@code "replayed": true}.
+ *
+ * Dispatcher threads only parse the request and hand it to {@link AsyncBankingService}; the
+ * response is written when the future completes, so a slow database never blocks them.
+ * Connections are kept alive between requests. At most {@code maxInFlight} requests are
+ * accepted at a time (running plus waiting for a database slot); beyond that the server
+ * answers 429 straight away instead of letting the queue and latency grow without bound.
+ */
+public class BankingHttpServer implements AutoCloseable {
+    private static final Logger log = Logger.getLogger(BankingHttpServer.class.getName());
+    private static final int MAX_BODY_BYTES = 16 * 1024;
+
+    private static final Pattern ACCOUNT_ACTION = Pattern.compile("^/api/accounts/(\\d+)/(balance|deposit|withdraw)$");
+
+    private final AsyncBankingService banking;
+    private final HttpServer server;
+    private final ExecutorService dispatchers;
+    private final Semaphore inFlight;
+    private final SessionStore sessions;
+
+    private final LongAdder served = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private record Response(int status, String body) {
+    }
+
+    // A request error with its HTTP status
+    private static final class HttpError extends RuntimeException {
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    public BankingHttpServer(AsyncBankingService banking, int port, int dispatchThreads,
+                             int maxInFlight, long sessionTtlMinutes) throws IOException {
+        this.banking = banking;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.sessions = new SessionStore(sessionTtlMinutes);
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.dispatchers = Executors.newFixedThreadPool(dispatchThreads);
+        this.server.setExecutor(dispatchers);
+        this.server.createContext("/api/", this::handle);
+        if (AppConfig.getBoolean("mybank.metrics.endpoint.enabled", true)) {
+            this.server.createContext("/metrics", this::metrics);
+        }
+        MetricsRegistry metrics = MetricsRegistry.shared();
+        metrics.counter("mybank_http_requests_total", "HTTP API requests answered", served::sum);
+        metrics.counter("mybank_http_rejected_total", "HTTP API requests refused with 429", rejected::sum);
+        metrics.gauge("mybank_http_in_flight", "HTTP API requests being processed",
+                () -> maxInFlight - inFlight.availablePermits());
+    }
+
+    public static BankingHttpServer fromConfig(AsyncBankingService banking) throws IOException {
+        return new BankingHttpServer(banking,
+                AppConfig.getInt("mybank.http.port", 8080),
+                AppConfig.getInt("mybank.http.dispatch-threads", Runtime.getRuntime().availableProcessors()),
+                AppConfig.getInt("mybank.http.max-in-flight", 1_000),
+                AppConfig.getLong("mybank.http.session-ttl-minutes", 30));
+    }
+
+    public static void main(String[] args) throws IOException {
+        AsyncBankingService banking = new AsyncBankingService();
+        BankingHttpServer server = fromConfig(banking);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            banking.close();
+        }));
+        server.start();
+    }
+
+    public void start() {
+        server.start();
+        log.info("Banking HTTP API listening on port " + getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public long getServedCount() {
+        return served.sum();
+    }
+
+    /** Requests answered with 429 because the server was saturated. */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(1);
+        dispatchers.shutdown();
+    }
+
+    // --- Request handling ---
+
+    private void handle(HttpExchange exchange) {
+        if (!inFlight.tryAcquire()) {
+            rejected.increment();
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            send(exchange, 429, error("Server is busy, retry later."));
+            return;
+        }
+
+        CompletableFuture<Response> response;
+        try {
+            response = route(exchange);
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.whenComplete((r, err) -> {
+            try {
+                if (err == null) send(exchange, r.status(), r.body());
+                else sendError(exchange, err);
+            } finally {
+                inFlight.release();
+                served.increment();
+            }
+        });
+    }
+
+    // Served on the dispatcher thread: rendering reads only in-memory counters
+    private void metrics(HttpExchange exchange) {
+        byte[] bytes = MetricsRegistry.shared().writePrometheus().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            log.log(Level.FINE, "Client went away before the metrics were written", e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private CompletableFuture<Response> route(HttpExchange exchange) {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+
+        if (path.equals("/api/login")) {
+            requireMethod(method, "POST");
+            return login(readBody(exchange), exchange.getRemoteAddress().getAddress().getHostAddress());
+        }
+
+        String token = bearerToken(exchange);
+        String userId = sessions.userFor(token);
+        if (userId == null) throw new HttpError(401, "Login required.");
+
+        if (path.equals("/api/logout")) {
+            requireMethod(method, "POST");
+            sessions.remove(token);
+            return CompletableFuture.completedFuture(ok());
+        }
+        if (path.equals("/api/accounts")) {
+            if (method.equals("GET")) {
+                return banking.getAccounts(userId).thenApply(accounts -> new Response(200, accountsJson(accounts)));
+            }
+            requireMethod(method, "POST");
+            long initialDeposit = amount(readBody(exchange), "initialDeposit");
+            if (initialDeposit < 0) throw new IllegalArgumentException("initialDeposit must not be negative.");
+            return banking.createAccount(userId, initialDeposit).thenApply(BankingHttpServer::created);
+        }
+        if (path.equals("/api/transfers")) {
+            requireMethod(method, "POST");
+            Map<String, String> body = readBody(exchange);
+            return banking.transferFunds(userId, intField(body, "fromAccountId"), intField(body, "toAccountId"),
+                    amount(body, "amount"), idempotencyKey(exchange)).thenApply(BankingHttpServer::applied);
+        }
+
+        Matcher m = ACCOUNT_ACTION.matcher(path);
+        if (m.matches()) {
+            int accountId = Integer.parseInt(m.group(1));
+            switch (m.group(2)) {
+                case "balance" -> {
+                    requireMethod(method, "GET");
+                    Timestamp asOf = asOfParameter(exchange);
+                    CompletableFuture<Long> balance = asOf == null
+                            ? banking.getBalance(userId, accountId)
+                            : banking.getBalanceAsOf(userId, accountId, asOf);
+                    return balance.thenApply(b -> new Response(200,
+                            "{\"accountId\":" + accountId + ",\"balance\":" + Money.format(b) + "}"));
+                }
+                case "deposit" -> {
+                    requireMethod(method, "POST");
+                    return banking.deposit(userId, accountId, amount(readBody(exchange), "amount"),
+                            idempotencyKey(exchange)).thenApply(BankingHttpServer::applied);
+                }
+                default -> {
+                    requireMethod(method, "POST");
+                    return banking.withdraw(userId, accountId, amount(readBody(exchange), "amount"),
+                            idempotencyKey(exchange)).thenApply(BankingHttpServer::applied);
+                }
+            }
+        }
+        throw new HttpError(404, "No such endpoint: " + path);
+    }
+
+    private CompletableFuture<Response> login(Map<String, String> body, String source) {
+        String userId = field(body, "userId");
+        String password = field(body, "password");
+        return banking.login(userId, password, source).thenApply(valid -> valid
+                ? new Response(200, "{\"token\":" + Json.quote(sessions.create(userId)) + "}")
+                : new Response(401, error("Invalid credentials.")));
+    }
+
+    // --- Helpers ---
+
+    private static void requireMethod(String actual, String expected) {
+        if (!actual.equals(expected)) throw new HttpError(405, "Use " + expected + ".");
+    }
+
+    private static String bearerToken(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.startsWith("Bearer ")) return null;
+        return header.substring("Bearer ".length()).trim();
+    }
+
+    // ?asOf=<ISO-8601 instant>, e.g. 2026-01-31T18:30:00Z; null if absent
+    private static Timestamp asOfParameter(HttpExchange exchange) {
+        String query = exchange.getRequestURI().getQuery();
+        if (query == null) return null;
+        for (String param : query.split("&")) {
+            if (param.startsWith("asOf=")) {
+                try {
+                    return Timestamp.from(Instant.parse(param.substring("asOf=".length())));
+                } catch (DateTimeParseException e) {
+                    throw new IllegalArgumentException("asOf must be an ISO-8601 instant, e.g. 2026-01-31T18:30:00Z.");
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String idempotencyKey(HttpExchange exchange) {
+        String key = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+        return key == null || key.isBlank() ? null : key.trim();
+    }
+
+    private static Map<String, String> readBody(HttpExchange exchange) {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) throw new HttpError(413, "Request body too large.");
+            return Json.parseObject(new String(bytes, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new HttpError(400, "Could not read request body.");
+        }
+    }
+
+    private static String field(Map<String, String> body, String name) {
+        String value = body.get(name);
+        if (value == null || value.isBlank()) throw new IllegalArgumentException("Missing field: " + name);
+        return value;
+    }
+
+    private static int intField(Map<String, String> body, String name) {
+        try {
+            return Integer.parseInt(field(body, name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Field " + name + " must be an integer.");
+        }
+    }
+
+    private static long amount(Map<String, String> body, String name) {
+        return Money.parse(field(body, name));
+    }
+
+    private static String accountsJson(List<Account> accounts) {
+        StringBuilder sb = new StringBuilder("[");
+        for (Account account : accounts) {
+            if (sb.length() > 1) sb.append(',');
+            sb.append("{\"accountId\":").append(account.accountId())
+                    .append(",\"balance\":").append(Money.format(account.balance())).append('}');
+        }
+        return sb.append(']').toString();
+    }
+
+    private static Response ok() {
+        return new Response(200, "{\"status\":\"ok\"}");
+    }
+
+    private static Response applied(boolean appliedNow) {
+        return new Response(200, "{\"status\":\"ok\",\"replayed\":" + !appliedNow + "}");
+    }
+
+    private static Response created(int accountId) {
+        return new Response(201, "{\"status\":\"created\",\"accountId\":" + accountId + "}");
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + Json.quote(message) + "}";
+    }
+
+    private static void sendError(HttpExchange exchange, Throwable err) {
+        while ((err instanceof CompletionException || err instanceof ExecutionException) && err.getCause() != null) {
+            err = err.getCause();
+        }
+        int status;
+        if (err instanceof HttpError httpError) status = httpError.status;
+        else if (err instanceof InsufficientFundsException) status = 409;
+        // A payee named in a transfer body is a bad request; an account named in the path is not found
+        else if (err instanceof AccountNotFoundException) {
+            status = exchange.getRequestURI().getPath().equals("/api/transfers") ? 400 : 404;
+        }
+        else if (err instanceof TransactionDeclinedException) status = 403;
+        else if (err instanceof LoginThrottledException throttled) {
+            status = 429;
+            exchange.getResponseHeaders().set("Retry-After", Long.toString(throttled.getRetryAfterSeconds()));
+        }
+        else if (err instanceof SecurityException) status = 403;
+        else if (err instanceof IllegalArgumentException) status = 400;
+        else {
+            log.log(Level.WARNING, "Request failed: " + exchange.getRequestURI(), err);
+            send(exchange, 500, error("Internal error."));
+            return;
+        }
+        send(exchange, status, error(err.getMessage()));
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        try (OutputStream out = exchange.getResponseBody()) {
+            // A fixed length keeps the connection reusable (HTTP/1.1 keep-alive)
+            exchange.sendResponseHeaders(status, bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            log.log(Level.FINE, "Client went away before the response was written", e);
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.training.mybank.http;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bearer tokens issued at login, mapped to the user they authenticate.
+ * Tokens expire a fixed time after they were issued.
+ */
+final class SessionStore {
+    private static final int SWEEP_EVERY = 1024;
+
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger issued = new AtomicInteger();
+    private final long ttlNanos;
+
+    private record Session(String userId, long expiresAt) {
+    }
+
+    SessionStore(long ttlMinutes) {
+        this.ttlNanos = TimeUnit.MINUTES.toNanos(ttlMinutes);
+    }
+
+    String create(String userId) {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, new Session(userId, System.nanoTime() + ttlNanos));
+
+        if (issued.incrementAndGet() % SWEEP_EVERY == 0) {
+            long now = System.nanoTime();
+            sessions.values().removeIf(s -> s.expiresAt() - now <= 0);
+        }
+        return token;
+    }
+
+    /**
+     * Returns the user for a valid token, or null if it is unknown or expired.
+     */
+    String userFor(String token) {
+        if (token == null) return null;
+        Session session = sessions.get(token);
+        if (session == null) return null;
+        if (session.expiresAt() - System.nanoTime() <= 0) {
+            sessions.remove(token);
+            return null;
+        }
+        return session.userId();
+    }
+
+    void remove(String token) {
+        if (token != null) sessions.remove(token);
+    }
+}
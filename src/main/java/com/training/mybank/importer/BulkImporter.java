@@ -0,0 +1,405 @@
+package com.training.mybank.importer;
+
+import com.training.mybank.config.AppConfig;
+import com.training.mybank.config.DatabaseConfig;
+import com.training.mybank.dao.AccountCache;
+import com.training.mybank.dao.AccountDAO;
+import com.training.mybank.dao.AccountNotFoundException;
+import com.training.mybank.dao.CachingAccountDAO;
+import com.training.mybank.dao.TransactionDAO;
+import com.training.mybank.dao.UserDAO;
+import com.training.mybank.model.LedgerEntry;
+import com.training.mybank.model.Money;
+import com.training.mybank.model.NewAccount;
+import com.training.mybank.model.User;
+import com.training.mybank.security.PasswordHasher;
+import com.training.mybank.service.InsufficientFundsException;
+import com.training.mybank.util.IntLongHashMap;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Loads large CSV files of new accounts or payment instructions.
+ *
+ * The file is read in chunks of {@code chunkSize} rows. Chunks are validated and parsed in
+ * parallel (for accounts this includes hashing the passwords, the expensive part), while the
+ * chunks already parsed are loaded in file order, each in one transaction using JDBC batches.
+ * At most {@code 2 * parallelism} parsed chunks wait for the loader, so memory stays bounded
+ * however large the file is.
+ *
+ * Rows that fail validation or loading are skipped and written, with their line number and
+ * reason, to {@code <file>.errors.csv}; the rest of the chunk still loads. If the database
+ * rejects a whole chunk, every row in it is reported and the next chunk carries on.
+ *
+ * <pre>
+ *   accounts: user_id,password,initial_deposit     (one line per account; users are created once)
+ *   payments: from_account,to_account,amount        (empty from = deposit, empty to = withdrawal)
+ * </pre>
+ * A header line naming the first column is skipped.
+ *
+ * Payments write balances directly, so they are refused while the journal, sharded ledger or
+ * account index is enabled: those keep balances in memory and must be their only writer.
+ */
+public class BulkImporter {
+    private static final Logger log = Logger.getLogger(BulkImporter.class.getName());
+
+    private final UserDAO userDAO;
+    private final AccountDAO accountDAO;
+    private final TransactionDAO transactionDAO;
+    private final PasswordHasher hasher;
+    private final int chunkSize;
+    private final int parallelism;
+
+    private record Row<T>(long line, T value) {
+    }
+
+    private record RowError(long line, String reason) {
+    }
+
+    private record ParsedChunk<T>(int index, long firstLine, List<Row<T>> rows, List<RowError> errors) {
+    }
+
+    private record AccountRow(String userId, String passwordHash, long initialDeposit) {
+    }
+
+    @FunctionalInterface
+    private interface RowParser<T> {
+        // Throws IllegalArgumentException for an invalid row
+        T parse(List<String> fields);
+    }
+
+    @FunctionalInterface
+    private interface ChunkLoader<T> {
+        // Loads the rows inside the caller's transaction; returns the rows it skipped
+        List<RowError> load(Connection conn, List<Row<T>> rows) throws SQLException;
+    }
+
+    public BulkImporter() {
+        this(AppConfig.getInt("mybank.import.chunk-size", 5_000),
+                AppConfig.getInt("mybank.import.parallelism", 0),
+                new PasswordHasher(AppConfig.getInt("mybank.import.pbkdf2-iterations", 10_000)));
+    }
+
+    /**
+     * @param parallelism parser threads; 0 means one per core
+     * @param hasher      used for imported passwords. A cheaper cost than the login hasher keeps
+     *                    large imports fast; such hashes are upgraded on each user's first login.
+     */
+    public BulkImporter(int chunkSize, int parallelism, PasswordHasher hasher) {
+        if (chunkSize < 1) throw new IllegalArgumentException("chunkSize must be at least 1");
+        this.userDAO = new UserDAO();
+        this.accountDAO = AppConfig.getBoolean("mybank.account-cache.enabled", true)
+                ? new CachingAccountDAO(AccountCache.shared())
+                : new AccountDAO();
+        this.transactionDAO = new TransactionDAO();
+        this.hasher = hasher;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2 || !(args[0].equals("accounts") || args[0].equals("payments"))) {
+            System.err.println("Usage: BulkImporter accounts|payments <file.csv>");
+            System.exit(2);
+        }
+        BulkImporter importer = new BulkImporter();
+        Path file = Path.of(args[1]);
+        ImportReport report = args[0].equals("accounts") ? importer.importAccounts(file) : importer.importPayments(file);
+        System.out.println(report);
+        DatabaseConfig.close();
+    }
+
+    // --- Accounts ---
+
+    public ImportReport importAccounts(Path csv) throws IOException {
+        return run(csv, "user_id", this::parseAccount, this::loadAccounts, rows -> {
+        });
+    }
+
+    private AccountRow parseAccount(List<String> fields) {
+        requireColumns(fields, 3);
+        String userId = fields.get(0);
+        String password = fields.get(1);
+        if (userId.isEmpty() || userId.length() > 50) throw new IllegalArgumentException("user_id must be 1 to 50 characters");
+        if (password.isEmpty()) throw new IllegalArgumentException("password is empty");
+        long deposit = Money.parse(fields.get(2));
+        if (deposit < 0) throw new IllegalArgumentException("initial_deposit must not be negative");
+        // Already-hashed passwords (e.g. from another system of ours) are kept as they are
+        String hash = PasswordHasher.isHashed(password) ? password : hasher.hash(password);
+        return new AccountRow(userId, hash, deposit);
+    }
+
+    private List<RowError> loadAccounts(Connection conn, List<Row<AccountRow>> rows) throws SQLException {
+        Map<String, User> users = new LinkedHashMap<>();
+        List<NewAccount> accounts = new ArrayList<>(rows.size());
+        for (Row<AccountRow> row : rows) {
+            AccountRow account = row.value();
+            users.putIfAbsent(account.userId(), new User(account.userId(), account.passwordHash()));
+            accounts.add(new NewAccount(account.userId(), account.initialDeposit()));
+        }
+        userDAO.createUsers(conn, new ArrayList<>(users.values()));
+        int[] accountIds = accountDAO.createAccounts(conn, accounts);
+
+        // Opening deposits go to the ledger too, so balances reconcile with it
+        List<LedgerEntry> openings = new ArrayList<>();
+        for (int i = 0; i < accountIds.length; i++) {
+            long deposit = accounts.get(i).initialDeposit();
+            if (deposit > 0) openings.add(new LedgerEntry(null, accountIds[i], deposit));
+        }
+        transactionDAO.recordTransactions(conn, openings);
+        return List.of();
+    }
+
+    // --- Payments ---
+
+    /**
+     * @throws IllegalStateException if journal, sharded or account-index mode is enabled
+     */
+    public ImportReport importPayments(Path csv) throws IOException {
+        requireOnlyBalanceWriter();
+        return run(csv, "from_account", BulkImporter::parsePayment, this::loadPayments, this::evictPayments);
+    }
+
+    private static LedgerEntry parsePayment(List<String> fields) {
+        requireColumns(fields, 3);
+        Integer from = accountId(fields.get(0), "from_account");
+        Integer to = accountId(fields.get(1), "to_account");
+        if (from == null && to == null) throw new IllegalArgumentException("from_account and to_account are both empty");
+        if (from != null && from.equals(to)) throw new IllegalArgumentException("from_account and to_account are the same");
+        long amount = Money.parse(fields.get(2));
+        if (amount <= 0) throw new IllegalArgumentException("amount must be positive");
+        return new LedgerEntry(from, to, amount);
+    }
+
+    /**
+     * Payments are checked in file order, since each may depend on the balance left by the
+     * previous ones. The chunk's accounts are locked and read first, in one statement, and the
+     * checks (unknown account, insufficient funds) run against those balances in memory, so a
+     * failing payment is skipped without a savepoint. The accepted ones then go in as one batch
+     * of balance updates and one batch of ledger rows.
+     */
+    private List<RowError> loadPayments(Connection conn, List<Row<LedgerEntry>> rows) throws SQLException {
+        IntLongHashMap balances = accountDAO.lockBalances(conn, accountIds(rows));
+        IntLongHashMap deltas = new IntLongHashMap();
+        List<RowError> rejected = new ArrayList<>();
+        List<LedgerEntry> entries = new ArrayList<>(rows.size());
+        for (Row<LedgerEntry> row : rows) {
+            LedgerEntry payment = row.value();
+            Integer from = payment.fromAccount();
+            Integer to = payment.toAccount();
+            long amount = payment.amount();
+            if (from != null && !balances.containsKey(from)) {
+                rejected.add(new RowError(row.line(), new AccountNotFoundException(from).getMessage()));
+            } else if (to != null && !balances.containsKey(to)) {
+                rejected.add(new RowError(row.line(), new AccountNotFoundException(to).getMessage()));
+            } else if (from != null && balances.get(from) < amount) {
+                rejected.add(new RowError(row.line(), new InsufficientFundsException().getMessage()));
+            } else {
+                if (from != null) {
+                    balances.addTo(from, -amount);
+                    deltas.addTo(from, -amount);
+                }
+                if (to != null) {
+                    balances.addTo(to, amount);
+                    deltas.addTo(to, amount);
+                }
+                entries.add(payment);
+            }
+        }
+        accountDAO.adjustBalances(conn, deltas);
+        transactionDAO.recordTransactions(conn, entries);
+        return rejected;
+    }
+
+    // The distinct accounts the payments name, in ascending order
+    private static int[] accountIds(List<Row<LedgerEntry>> rows) {
+        return rows.stream()
+                .flatMap(row -> Stream.of(row.value().fromAccount(), row.value().toAccount()))
+                .filter(Objects::nonNull)
+                .mapToInt(Integer::intValue)
+                .distinct()
+                .sorted()
+                .toArray();
+    }
+
+    // Runs once a chunk's transaction has ended, whether it committed or not
+    private void evictPayments(List<Row<LedgerEntry>> rows) {
+        for (Row<LedgerEntry> row : rows) {
+            if (row.value().fromAccount() != null) accountDAO.afterCommit(row.value().fromAccount());
+            if (row.value().toAccount() != null) accountDAO.afterCommit(row.value().toAccount());
+        }
+    }
+
+    // The journal, sharded ledger and account index keep balances in memory, so they require their
+    // process to be the only writer of balances; payments imported behind their back would be lost
+    // to them (and theirs to the import)
+    private static void requireOnlyBalanceWriter() {
+        for (String mode : List.of("mybank.journal.enabled", "mybank.sharded.enabled", "mybank.account-index.enabled")) {
+            if (AppConfig.getBoolean(mode, false)) {
+                throw new IllegalStateException("Payments cannot be imported while " + mode + " is true;"
+                        + " the process that holds the balances in memory must be the only writer of balances.");
+            }
+        }
+    }
+
+    // --- Pipeline ---
+
+    private <T> ImportReport run(Path csv, String headerColumn, RowParser<T> parser, ChunkLoader<T> loader,
+                                 Consumer<List<Row<T>>> afterChunk) throws IOException {
+        long start = System.nanoTime();
+        Path errorFile = csv.resolveSibling(csv.getFileName() + ".errors.csv");
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService parsers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "bulk-import-parser-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        Deque<Future<ParsedChunk<T>>> pending = new ArrayDeque<>();
+        List<ImportReport.ChunkResult> results = new ArrayList<>();
+        long[] totals = new long[3]; // read, loaded, rejected
+
+        try (BufferedReader in = Files.newBufferedReader(csv);
+             BufferedWriter errors = Files.newBufferedWriter(errorFile)) {
+            errors.write("chunk,line,error");
+            errors.newLine();
+
+            List<Row<String>> lines = new ArrayList<>(chunkSize);
+            int chunkIndex = 0;
+            long lineNumber = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (lineNumber == 1 && line.startsWith(headerColumn))) continue;
+                lines.add(new Row<>(lineNumber, line));
+                if (lines.size() == chunkSize) {
+                    pending.add(submitParse(parsers, chunkIndex++, lines, parser));
+                    lines = new ArrayList<>(chunkSize);
+                    // Back-pressure: do not read further ahead than the loader can keep up with
+                    if (pending.size() >= 2 * parallelism) {
+                        results.add(loadChunk(await(pending.poll()), loader, afterChunk, errors, totals));
+                    }
+                }
+            }
+            if (!lines.isEmpty()) pending.add(submitParse(parsers, chunkIndex, lines, parser));
+            while (!pending.isEmpty()) {
+                results.add(loadChunk(await(pending.poll()), loader, afterChunk, errors, totals));
+            }
+        } finally {
+            parsers.shutdownNow();
+        }
+
+        if (totals[2] == 0) Files.deleteIfExists(errorFile);
+        ImportReport report = new ImportReport(csv, errorFile, totals[0], totals[1], totals[2], results,
+                (System.nanoTime() - start) / 1_000_000);
+        log.info(report.toString());
+        return report;
+    }
+
+    private <T> Future<ParsedChunk<T>> submitParse(ExecutorService parsers, int index, List<Row<String>> lines,
+                                                   RowParser<T> parser) {
+        return parsers.submit(() -> {
+            List<Row<T>> rows = new ArrayList<>(lines.size());
+            List<RowError> errors = new ArrayList<>();
+            for (Row<String> line : lines) {
+                try {
+                    rows.add(new Row<>(line.line(), parser.parse(Csv.split(line.value()))));
+                } catch (RuntimeException e) {
+                    errors.add(new RowError(line.line(), e.getMessage()));
+                }
+            }
+            return new ParsedChunk<>(index, lines.get(0).line(), rows, errors);
+        });
+    }
+
+    private static <T> ParsedChunk<T> await(Future<ParsedChunk<T>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a parsed chunk", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Parsing a chunk failed", e.getCause());
+        }
+    }
+
+    private <T> ImportReport.ChunkResult loadChunk(ParsedChunk<T> chunk, ChunkLoader<T> loader, Consumer<List<Row<T>>> afterChunk,
+                                                   BufferedWriter errorWriter, long[] totals) throws IOException {
+        List<RowError> errors = new ArrayList<>(chunk.errors());
+        int loaded = 0;
+        if (!chunk.rows().isEmpty()) {
+            try (Connection conn = DatabaseConfig.getConnection()) {
+                try {
+                    conn.setAutoCommit(false);
+                    List<RowError> skipped = loader.load(conn, chunk.rows());
+                    conn.commit();
+                    errors.addAll(skipped);
+                    loaded = chunk.rows().size() - skipped.size();
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    afterChunk.accept(chunk.rows());
+                }
+            } catch (SQLException | RuntimeException e) {
+                String reason = "chunk " + chunk.index() + " rolled back: " + e.getMessage();
+                for (Row<T> row : chunk.rows()) errors.add(new RowError(row.line(), reason));
+            }
+        }
+
+        errors.sort(Comparator.comparingLong(RowError::line));
+        for (RowError error : errors) {
+            errorWriter.write(chunk.index() + "," + error.line() + "," + csvQuote(error.reason()));
+            errorWriter.newLine();
+        }
+        int rowCount = chunk.rows().size() + chunk.errors().size();
+        totals[0] += rowCount;
+        totals[1] += loaded;
+        totals[2] += errors.size();
+        return new ImportReport.ChunkResult(chunk.index(), chunk.firstLine(), loaded, errors.size());
+    }
+
+    // --- Helpers ---
+
+    private static void requireColumns(List<String> fields, int expected) {
+        if (fields.size() != expected) {
+            throw new IllegalArgumentException("expected " + expected + " columns, found " + fields.size());
+        }
+    }
+
+    private static Integer accountId(String field, String name) {
+        if (field.isEmpty()) return null;
+        try {
+            return Integer.valueOf(field);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " is not an account id: " + field);
+        }
+    }
+
+    private static String csvQuote(String value) {
+        if (value == null) return "";
+        return '"' + value.replace("\"", "\"\"").replace('\n', ' ') + '"';
+    }
+}
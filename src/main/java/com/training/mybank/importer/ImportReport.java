@@ -0,0 +1,29 @@
+package com.training.mybank.importer;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Outcome of one import file. Rejected rows are listed, chunk by chunk, in {@code errorFile}.
+ */
+public record ImportReport(
+        Path file,
+        Path errorFile,
+        long rowsRead,
+        long rowsLoaded,
+        long rowsRejected,
+        List<ChunkResult> chunks,
+        long elapsedMillis
+) {
+
+    // One chunk = one database transaction
+    public record ChunkResult(int chunk, long firstLine, int loaded, int rejected) {
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d rows read, %d loaded, %d rejected in %d chunks (%d ms)%s",
+                file, rowsRead, rowsLoaded, rowsRejected, chunks.size(), elapsedMillis,
+                rowsRejected > 0 ? "; errors in " + errorFile : "");
+    }
+}
@@ -0,0 +1,232 @@
+package com.training.mybank.jdbc;
+
+import com.training.mybank.metrics.MetricsRegistry;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Wraps a {@link DataSource} so that every statement run through its connections is counted
+ * per SQL shape ({@link StatementStats}), and any execution taking longer than a threshold is
+ * written to the {@code com.training.mybank.jdbc.slow} logger. The slow-query log shows the
+ * statement and the types of its bound parameters, never their values.
+ *
+ * Connections, statements and result sets are JDK dynamic proxies around the pool's own
+ * objects, so the wrapper works with any driver and pool. Shapes are keyed by the statement text
+ * with string and number literals replaced by {@code ?}, comments dropped and whitespace collapsed, so statements
+ * built with inline literals still group together; after {@value #MAX_SHAPES} distinct shapes the
+ * rest are counted under {@value #OTHER}.
+ */
+public final class ProfilingDataSource implements DataSource, SqlStatisticsMXBean {
+    private static final Logger slowLog = Logger.getLogger("com.training.mybank.jdbc.slow");
+
+    private static final int MAX_SHAPES = 500;
+    private static final int MAX_CACHED_TEXTS = 10_000;
+    private static final String OTHER = "(other)";
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.$])-?\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern LINE_COMMENT = Pattern.compile("--[^\n]*");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final DataSource delegate;
+    private final long slowThresholdNanos;
+    private final ConcurrentMap<String, StatementStats> byShape = new ConcurrentHashMap<>();
+    // Statement text as written by the caller -> its shape's stats, so constant SQL is normalised once
+    private final ConcurrentMap<String, StatementStats> byText = new ConcurrentHashMap<>();
+    private final LongAdder slowQueries = new LongAdder();
+
+    public ProfilingDataSource(DataSource delegate, long slowThresholdMillis) {
+        this.delegate = delegate;
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+    }
+
+    /** Publishes the statistics as an MBean and as the {@code mybank_sql_*} Prometheus counters. */
+    public void registerMetrics(MetricsRegistry registry) {
+        registry.registerMBean("SqlStatistics", this, SqlStatisticsMXBean.class);
+        registry.counter("mybank_sql_slow_queries_total", "Statements slower than the slow-query threshold", slowQueries::sum);
+        registry.counterFamily("mybank_sql_executions_total", "Statement executions by SQL shape", "sql",
+                () -> sample(s -> s.getExecutionCount()));
+        registry.counterFamily("mybank_sql_rows_total", "Rows read or updated by SQL shape", "sql",
+                () -> sample(s -> s.getRowCount()));
+        registry.counterFamily("mybank_sql_errors_total", "Failed statement executions by SQL shape", "sql",
+                () -> sample(s -> s.getErrorCount()));
+        registry.counterFamily("mybank_sql_time_seconds_total", "Time spent in the driver by SQL shape", "sql",
+                () -> sample(s -> s.snapshot().getTotalNanos() / 1e9));
+    }
+
+    private Map<String, Number> sample(Function<StatementStats, Number> value) {
+        Map<String, Number> values = new HashMap<>();
+        byShape.values().forEach(s -> values.put(s.getSql(), value.apply(s)));
+        return values;
+    }
+
+    @Override
+    public List<StatementStats> getStatements() {
+        List<StatementStats> statements = new ArrayList<>(byShape.values());
+        statements.sort(Comparator.comparingLong((StatementStats s) -> s.snapshot().getTotalNanos()).reversed());
+        return statements;
+    }
+
+    @Override
+    public long getSlowQueryThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos);
+    }
+
+    @Override
+    public long getSlowQueryCount() {
+        return slowQueries.sum();
+    }
+
+    /** Logs the {@code limit} statements that took the most time in total, e.g. on shutdown. */
+    public void logSummary(int limit) {
+        List<StatementStats> statements = getStatements();
+        if (statements.isEmpty()) return;
+        StringBuilder summary = new StringBuilder("SQL statements by total time:");
+        for (StatementStats s : statements.subList(0, Math.min(limit, statements.size()))) {
+            summary.append(String.format("%n  %10.1f ms  %8d executions  %10d rows  %s",
+                    s.getTotalMillis(), s.getExecutionCount(), s.getRowCount(), s.getSql()));
+        }
+        Logger.getLogger(ProfilingDataSource.class.getName()).info(summary.toString());
+    }
+
+    StatementStats stats(String sql) {
+        StatementStats stats = byText.get(sql);
+        if (stats != null) return stats;
+        String shape = shapeOf(sql);
+        stats = byShape.get(shape);
+        if (stats == null) {
+            if (byShape.size() >= MAX_SHAPES) shape = OTHER;
+            stats = byShape.computeIfAbsent(shape, StatementStats::new);
+        }
+        if (byText.size() < MAX_CACHED_TEXTS) byText.putIfAbsent(sql, stats);
+        return stats;
+    }
+
+    static String shapeOf(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = LINE_COMMENT.matcher(shape).replaceAll("");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+
+    boolean isSlow(long nanos) {
+        return nanos >= slowThresholdNanos;
+    }
+
+    // Logs the shape of the statement actually run, so inline literals are redacted too
+    void slowQuery(String sql, long nanos, long rows, boolean success, String parameters) {
+        slowQueries.increment();
+        slowLog.warning(String.format("Slow SQL (%d ms, %d rows%s): %s [parameters: %s]",
+                TimeUnit.NANOSECONDS.toMillis(nanos), rows, success ? "" : ", failed", shapeOf(sql), parameters));
+    }
+
+    // --- DataSource ---
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(delegate.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(delegate.getConnection(username, password));
+    }
+
+    private Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(ProfilingDataSource.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, new ConnectionHandler(connection));
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return delegate.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        delegate.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        delegate.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return delegate.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return delegate.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : delegate.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || delegate.isWrapperFor(iface);
+    }
+
+    /** Wraps the statements a connection creates; everything else goes straight to the connection. */
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Profiling" + target;
+                default:
+                    break;
+            }
+            Object result = StatementHandler.call(target, method, args);
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return StatementHandler.wrap(ProfilingDataSource.this, (Connection) proxy, (Statement) result,
+                            PreparedStatement.class, (String) args[0]);
+                case "prepareCall":
+                    return StatementHandler.wrap(ProfilingDataSource.this, (Connection) proxy, (Statement) result,
+                            CallableStatement.class, (String) args[0]);
+                case "createStatement":
+                    return StatementHandler.wrap(ProfilingDataSource.this, (Connection) proxy, (Statement) result,
+                            Statement.class, null);
+                default:
+                    return result;
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.training.mybank.jdbc;
+
+import java.util.List;
+
+/**
+ * JMX view of {@link ProfilingDataSource}, registered as {@code com.training.mybank:type=SqlStatistics}.
+ */
+public interface SqlStatisticsMXBean {
+
+    /** Every SQL shape seen so far, the most time-consuming first. */
+    List<StatementStats> getStatements();
+
+    long getSlowQueryThresholdMillis();
+
+    long getSlowQueryCount();
+}
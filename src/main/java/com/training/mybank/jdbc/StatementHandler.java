@@ -0,0 +1,247 @@
+package com.training.mybank.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Times the executions of one statement and counts their rows for {@link ProfilingDataSource}.
+ *
+ * For a query the measurement stays open while its result set is read: every {@code next()} is
+ * timed and counted, and the execution is recorded when the result set or the statement is closed,
+ * or the statement is executed again. Parameter setters only note the parameter's type, which is
+ * what the slow-query log prints in place of the value.
+ *
+ * Like the statement it wraps, a handler is used by one thread at a time.
+ */
+final class StatementHandler implements InvocationHandler {
+    private static final String[] NO_PARAMETERS = new String[0];
+
+    private final ProfilingDataSource owner;
+    private final Connection connection;
+    private final Statement target;
+    // Set for prepared statements; plain statements look up the shape of each SQL string they run
+    private final String preparedSql;
+    private final StatementStats preparedStats;
+    private String[] parameterTypes = NO_PARAMETERS;
+    private int batchSize;
+    private String lastBatchSql;
+
+    // The query whose result set is still being read
+    private StatementStats openStats;
+    private String openSql;
+    private long openNanos;
+    private long openRows;
+    private ResultSet openResultSet;
+
+    private StatementHandler(ProfilingDataSource owner, Connection connection, Statement target, String preparedSql) {
+        this.owner = owner;
+        this.connection = connection;
+        this.target = target;
+        this.preparedSql = preparedSql;
+        this.preparedStats = preparedSql == null ? null : owner.stats(preparedSql);
+    }
+
+    /** Wraps a statement; {@code preparedSql} is the SQL it was prepared with, null for a plain statement. */
+    static Object wrap(ProfilingDataSource owner, Connection connection, Statement target,
+                       Class<? extends Statement> type, String preparedSql) {
+        return Proxy.newProxyInstance(StatementHandler.class.getClassLoader(), new Class<?>[] {type},
+                new StatementHandler(owner, connection, target, preparedSql));
+    }
+
+    static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        switch (name) {
+            case "executeQuery":
+            case "executeUpdate":
+            case "executeLargeUpdate":
+            case "execute":
+            case "executeBatch":
+            case "executeLargeBatch":
+                return execute(proxy, method, args);
+            case "getResultSet":
+                return resultSet(proxy, (ResultSet) call(target, method, args));
+            case "addBatch":
+                batchSize++;
+                if (args != null) lastBatchSql = (String) args[0];
+                return call(target, method, args);
+            case "clearBatch":
+                batchSize = 0;
+                return call(target, method, args);
+            case "clearParameters":
+                Arrays.fill(parameterTypes, null);
+                return call(target, method, args);
+            case "close":
+                finishQuery();
+                return call(target, method, args);
+            case "getConnection":
+                return connection;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "Profiling" + target;
+            default:
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                    noteParameter(index, name, args[1]);
+                }
+                return call(target, method, args);
+        }
+    }
+
+    private Object execute(Object proxy, Method method, Object[] args) throws Throwable {
+        finishQuery();
+        String name = method.getName();
+        boolean batch = name.endsWith("Batch");
+        String sql = preparedSql;
+        if (sql == null) {
+            sql = args != null && args.length > 0 ? (String) args[0] : batch ? lastBatchSql : null;
+            if (sql == null) sql = "";
+        }
+        StatementStats stats = preparedStats != null ? preparedStats : owner.stats(sql);
+
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = call(target, method, args);
+        } catch (Throwable e) {
+            complete(stats, sql, System.nanoTime() - start, 0, false);
+            if (batch) batchSize = 0;
+            throw e;
+        }
+        long nanos = System.nanoTime() - start;
+
+        if (result instanceof ResultSet rs) {
+            openQuery(stats, sql, nanos);
+            return resultSet(proxy, rs);
+        }
+        if (result instanceof Boolean hasResultSet) {
+            if (hasResultSet) {
+                openQuery(stats, sql, nanos);
+            } else {
+                complete(stats, sql, nanos, Math.max(0, target.getUpdateCount()), true);
+            }
+            return result;
+        }
+        long rows = 0;
+        if (result instanceof int[] counts) {
+            for (int count : counts) rows += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(0, count);
+        } else if (result instanceof long[] counts) {
+            for (long count : counts) rows += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(0, count);
+        } else if (result instanceof Number count) {
+            rows = count.longValue();
+        }
+        complete(stats, sql, nanos, rows, true);
+        if (batch) batchSize = 0;
+        return result;
+    }
+
+    private void openQuery(StatementStats stats, String sql, long nanos) {
+        openStats = stats;
+        openSql = sql;
+        openNanos = nanos;
+        openRows = 0;
+        openResultSet = null;
+    }
+
+    private Object resultSet(Object statement, ResultSet rs) {
+        if (rs == null || openStats == null) return rs;
+        if (openResultSet == null) {
+            openResultSet = (ResultSet) Proxy.newProxyInstance(StatementHandler.class.getClassLoader(),
+                    new Class<?>[] {ResultSet.class}, new ResultSetHandler(statement, rs));
+        }
+        return openResultSet;
+    }
+
+    private void finishQuery() {
+        if (openStats == null) return;
+        StatementStats stats = openStats;
+        openStats = null;
+        openResultSet = null;
+        complete(stats, openSql, openNanos, openRows, true);
+    }
+
+    private void complete(StatementStats stats, String sql, long nanos, long rows, boolean success) {
+        boolean slow = owner.isSlow(nanos);
+        stats.record(nanos, rows, success, slow);
+        if (slow) owner.slowQuery(sql, nanos, rows, success, describeParameters());
+    }
+
+    private void noteParameter(int index, String setter, Object value) {
+        if (preparedStats == null || index < 1 || index > 10_000) return;
+        if (index > parameterTypes.length) {
+            parameterTypes = Arrays.copyOf(parameterTypes, Math.max(index, parameterTypes.length * 2));
+        }
+        String type = setter.substring(3);
+        if (setter.equals("setObject")) type = value == null ? "null" : value.getClass().getSimpleName();
+        else if (setter.equals("setNull")) type = "null";
+        parameterTypes[index - 1] = type;
+    }
+
+    // Parameter types only; the values never leave the driver
+    private String describeParameters() {
+        StringBuilder out = new StringBuilder();
+        int last = parameterTypes.length;
+        while (last > 0 && parameterTypes[last - 1] == null) last--;
+        for (int i = 0; i < last; i++) {
+            if (i > 0) out.append(", ");
+            out.append('$').append(i + 1).append("=<").append(parameterTypes[i] == null ? "unset" : parameterTypes[i]).append('>');
+        }
+        if (batchSize > 1) out.append(out.length() == 0 ? "" : "; ").append("batch of ").append(batchSize);
+        return out.length() == 0 ? "none" : out.toString();
+    }
+
+    /** Times and counts {@code next()}; closing the result set records the query. */
+    private final class ResultSetHandler implements InvocationHandler {
+        private final Object statement;
+        private final ResultSet target;
+
+        ResultSetHandler(Object statement, ResultSet target) {
+            this.statement = statement;
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next": {
+                    long start = System.nanoTime();
+                    Object hasRow = call(target, method, args);
+                    if (openResultSet == proxy) {
+                        openNanos += System.nanoTime() - start;
+                        if ((Boolean) hasRow) openRows++;
+                    }
+                    return hasRow;
+                }
+                case "close":
+                    if (openResultSet == proxy) finishQuery();
+                    return call(target, method, args);
+                case "getStatement":
+                    return statement;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Profiling" + target;
+                default:
+                    return call(target, method, args);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.training.mybank.jdbc;
+
+import com.training.mybank.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Executions, rows and time of one SQL shape, i.e. one statement text with its literals and
+ * whitespace normalised. Rows are those read from a query's result set, or the update count of
+ * an INSERT/UPDATE/DELETE (summed over a batch). Time runs from execute until the result set is
+ * closed but only counts the calls into the driver, not the caller's work between rows.
+ */
+public final class StatementStats {
+    private final String sql;
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder slow = new LongAdder();
+    private final LatencyHistogram time = new LatencyHistogram();
+
+    StatementStats(String sql) {
+        this.sql = sql;
+    }
+
+    void record(long nanos, long rowCount, boolean success, boolean slowQuery) {
+        executions.increment();
+        rows.add(rowCount);
+        time.record(nanos);
+        if (!success) errors.increment();
+        if (slowQuery) slow.increment();
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public long getExecutionCount() {
+        return executions.sum();
+    }
+
+    public long getRowCount() {
+        return rows.sum();
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    public long getSlowCount() {
+        return slow.sum();
+    }
+
+    public double getTotalMillis() {
+        return time.snapshot().getTotalNanos() / 1e6;
+    }
+
+    public double getMeanMillis() {
+        return time.snapshot().getMeanNanos() / 1e6;
+    }
+
+    public double get99thPercentileMillis() {
+        return time.snapshot().getValueAtPercentile(99) / 1e6;
+    }
+
+    public double getMaxMillis() {
+        return time.snapshot().getMaxNanos() / 1e6;
+    }
+
+    LatencyHistogram.Snapshot snapshot() {
+        return time.snapshot();
+    }
+}
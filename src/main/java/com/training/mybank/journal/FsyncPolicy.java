@@ -0,0 +1,19 @@
+package com.training.mybank.journal;
+
+/**
+ * When appended journal records are forced to disk, and so when an append is acknowledged.
+ */
+public enum FsyncPolicy {
+    /** Every append forces the journal before it is acknowledged. Slowest, nothing acknowledged is ever lost. */
+    PER_WRITE,
+    /**
+     * Appends wait for a background syncer that forces once for everything appended since its
+     * last force. Nothing acknowledged is lost, and concurrent appends share one fsync.
+     */
+    GROUP,
+    /**
+     * Appends are acknowledged at once and the journal is forced every interval. A power
+     * failure (not a process crash) can lose up to one interval of acknowledged appends.
+     */
+    INTERVAL
+}
@@ -0,0 +1,412 @@
+package com.training.mybank.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Append-only, checksummed write-ahead journal of {@link JournalEvent}s in a local directory.
+ *
+ * Records go into memory-mapped segment files of a fixed size; when a record no longer fits, a
+ * new segment is started. Appending is a copy into the mapping under one lock, so it takes
+ * microseconds; when the record reaches the disk depends on the {@link FsyncPolicy}, and
+ * {@link #awaitDurable} waits for that.
+ *
+ * Opening a journal recovers it: every record is checked for its CRC and for consecutive
+ * sequence numbers. A torn record at the end of the last segment (a crash in the middle of an
+ * append) is discarded together with anything after it, and a last segment without a header
+ * (a crash in the middle of a rotation) is deleted; damage anywhere else is an error. What
+ * survives is forced to disk before the journal is used.
+ *
+ * There is one reader, a {@link Cursor}, which follows the appends once they are durable, so
+ * nothing read from the journal can be lost from it in a crash. Segments it has fully consumed
+ * are removed with {@link #deleteThrough}.
+ */
+public class Journal implements AutoCloseable {
+    private static final Logger log = Logger.getLogger(Journal.class.getName());
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final FsyncPolicy policy;
+    private final long intervalNanos;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    private Segment active;   // guarded by this
+    private long nextSeq;     // guarded by this
+    private volatile long publishedSeq;  // records up to here are complete and readable
+    private volatile long durableSeq;    // records up to here have been forced to disk
+    private final Object durableLock = new Object();
+    private final Thread syncer; // null for PER_WRITE
+    private volatile boolean open = true;
+
+    private final LongAdder appends = new LongAdder();
+    private final LongAdder forces = new LongAdder();
+
+    /**
+     * Opens (and recovers) the journal in {@code dir}, creating it if needed.
+     *
+     * @param startSeq lowest sequence number the next record may get. A journal that ends before
+     *                 it (one that lost records its reader had already consumed) is cleared and
+     *                 starts again at {@code startSeq}; otherwise it continues after its last record.
+     */
+    public Journal(Path dir, int segmentBytes, FsyncPolicy policy, long fsyncIntervalMillis, long startSeq) throws IOException {
+        if (segmentBytes < 4096) throw new IllegalArgumentException("segmentBytes must be at least 4096");
+        if (startSeq < 1) throw new IllegalArgumentException("startSeq must be at least 1");
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.policy = policy;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, fsyncIntervalMillis));
+
+        Files.createDirectories(dir);
+        recover(startSeq);
+        durableSeq = publishedSeq;
+
+        if (policy == FsyncPolicy.PER_WRITE) {
+            syncer = null;
+        } else {
+            syncer = new Thread(policy == FsyncPolicy.GROUP ? this::runGroupSyncer : this::runIntervalSyncer, "journal-sync");
+            syncer.setDaemon(true);
+            syncer.start();
+        }
+    }
+
+    // --- Recovery ---
+
+    private void recover(long startSeq) throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = new ArrayList<>(list.filter(Segment::isSegment).sorted().toList());
+        }
+        long firstSeq = startSeq;
+        if (!files.isEmpty() && !Segment.hasHeader(files.get(files.size() - 1))) {
+            // A crash while rotating, before the new segment's header reached the disk. Nothing was
+            // appended to it yet (the header is forced first), so the journal ends in the one before
+            Path torn = files.remove(files.size() - 1);
+            log.warning("Deleting journal segment " + torn + " left without a header by an interrupted rotation");
+            Files.delete(torn);
+            firstSeq = Segment.parseFirstSeq(torn);
+        }
+        if (files.isEmpty()) {
+            startAt(Math.max(firstSeq, startSeq));
+            return;
+        }
+
+        long expected = -1;
+        for (int i = 0; i < files.size(); i++) {
+            Segment segment = Segment.open(files.get(i));
+            boolean last = i == files.size() - 1;
+            if (expected != -1 && segment.firstSeq != expected) {
+                throw new IOException("Journal segment " + segment.path + " starts at " + segment.firstSeq
+                        + ", expected " + expected);
+            }
+            segments.put(segment.firstSeq, segment);
+            expected = scan(segment, last);
+            if (last) active = segment;
+        }
+        if (expected < startSeq) {
+            // Every record left is below startSeq, so the reader already has them
+            log.warning("Journal " + dir + " ends at record " + (expected - 1) + ", before " + startSeq
+                    + "; starting again at " + startSeq);
+            for (Segment segment : segments.values()) {
+                segment.delete();
+            }
+            segments.clear();
+            startAt(startSeq);
+            return;
+        }
+        // The previous process may have crashed before forcing its last appends
+        active.force();
+        nextSeq = expected;
+        publishedSeq = expected - 1;
+        log.info("Journal " + dir + " recovered: " + segments.size() + " segment(s), last seq " + publishedSeq);
+    }
+
+    private void startAt(long firstSeq) throws IOException {
+        active = Segment.create(dir, firstSeq, segmentBytes);
+        segments.put(firstSeq, active);
+        nextSeq = firstSeq;
+        publishedSeq = firstSeq - 1;
+    }
+
+    // Validates a segment's records and leaves its position after the last good one. Returns the next seq.
+    private static long scan(Segment segment, boolean last) throws IOException {
+        MappedByteBuffer buffer = segment.buffer;
+        int limit = buffer.capacity();
+        int pos = Segment.HEADER_BYTES;
+        long seq = segment.firstSeq;
+        while (pos + Segment.RECORD_HEADER_BYTES <= limit) {
+            int length = buffer.getInt(pos);
+            if (length == 0) break;
+            boolean intact = length > 0
+                    && length <= limit - pos - Segment.RECORD_HEADER_BYTES
+                    && buffer.getLong(pos + 8) == seq
+                    && buffer.getInt(pos + 4) == Segment.crc(buffer, pos, length);
+            if (!intact) {
+                if (!last) throw new IOException("Corrupt journal record " + seq + " in " + segment.path);
+                log.warning("Discarding torn journal tail at record " + seq + " in " + segment.path);
+                break;
+            }
+            pos += Segment.RECORD_HEADER_BYTES + length;
+            seq++;
+        }
+        if (last) zeroFrom(buffer, pos);
+        buffer.position(pos);
+        return seq;
+    }
+
+    // Clears leftovers of a torn append, so they can never be mistaken for records later
+    private static void zeroFrom(MappedByteBuffer buffer, int pos) {
+        boolean dirty = false;
+        for (int i = pos; i < buffer.capacity(); i++) {
+            if (buffer.get(i) != 0) {
+                buffer.put(i, (byte) 0);
+                dirty = true;
+            }
+        }
+        if (dirty) buffer.force();
+    }
+
+    // --- Appending ---
+
+    /**
+     * Appends the event and returns its sequence number. The record is durable, and readable,
+     * after {@link #awaitDurable}.
+     *
+     * @throws UncheckedIOException if a new segment could not be created
+     */
+    public long append(JournalEvent event) {
+        byte[] payload = event.encode();
+        int recordBytes = Segment.RECORD_HEADER_BYTES + payload.length;
+        if (recordBytes > segmentBytes - Segment.HEADER_BYTES) {
+            throw new IllegalArgumentException("Journal record larger than a segment");
+        }
+        long seq;
+        synchronized (this) {
+            if (!open) throw new IllegalStateException("Journal is closed.");
+            // Keep 4 zero bytes after the record as the end marker
+            if (active.buffer.remaining() < recordBytes + 4) rotate();
+            MappedByteBuffer buffer = active.buffer;
+            int pos = buffer.position();
+            seq = nextSeq++;
+            buffer.putLong(pos + 8, seq);
+            buffer.put(pos + Segment.RECORD_HEADER_BYTES, payload);
+            buffer.putInt(pos + 4, Segment.crc(buffer, pos, payload.length));
+            buffer.putInt(pos, payload.length); // written last: a nonzero length means a complete record
+            buffer.position(pos + recordBytes);
+            publishedSeq = seq;
+        }
+        appends.increment();
+        if (policy == FsyncPolicy.GROUP) LockSupport.unpark(syncer);
+        return seq;
+    }
+
+    private void rotate() {
+        // A full segment is forced before the next one starts, so only the last segment can ever be torn
+        active.force();
+        try {
+            Segment next = Segment.create(dir, nextSeq, segmentBytes);
+            segments.put(next.firstSeq, next);
+            active = next;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start a new journal segment", e);
+        }
+    }
+
+    /**
+     * Blocks until record {@code seq} is on disk as the fsync policy defines it. Returns at once
+     * under {@link FsyncPolicy#INTERVAL}.
+     */
+    public void awaitDurable(long seq) {
+        switch (policy) {
+            case INTERVAL -> {
+            }
+            case PER_WRITE -> {
+                if (durableSeq < seq) forceThrough(seq);
+            }
+            case GROUP -> {
+                if (durableSeq >= seq) return;
+                boolean interrupted = false;
+                synchronized (durableLock) {
+                    while (durableSeq < seq && open) {
+                        try {
+                            durableLock.wait();
+                        } catch (InterruptedException e) {
+                            interrupted = true; // the record is already in the journal; finish waiting
+                        }
+                    }
+                }
+                if (interrupted) Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Forces every segment holding records in (durableSeq, seq]
+    private void forceThrough(long seq) {
+        long from = durableSeq + 1;
+        Map.Entry<Long, Segment> first = segments.floorEntry(from);
+        Long fromKey = first != null ? first.getKey() : from;
+        for (Segment segment : segments.subMap(fromKey, true, seq, true).values()) {
+            segment.force();
+        }
+        forces.increment();
+        synchronized (durableLock) {
+            if (seq > durableSeq) durableSeq = seq;
+            durableLock.notifyAll();
+        }
+    }
+
+    private void runGroupSyncer() {
+        while (open || durableSeq < publishedSeq) {
+            long target = publishedSeq;
+            if (target > durableSeq) {
+                forceThrough(target);
+            } else {
+                LockSupport.parkNanos(this, intervalNanos);
+            }
+        }
+    }
+
+    private void runIntervalSyncer() {
+        while (open || durableSeq < publishedSeq) {
+            LockSupport.parkNanos(this, intervalNanos);
+            long target = publishedSeq;
+            if (target > durableSeq) forceThrough(target);
+        }
+    }
+
+    // --- Reading and cleanup ---
+
+    /**
+     * A cursor positioned at {@code seq}. The journal must still contain that record durably
+     * (or be exactly at it, if nothing has been made durable since).
+     */
+    public Cursor cursor(long seq) {
+        return new Cursor(seq);
+    }
+
+    /**
+     * Deletes the segments whose records are all at or below {@code seq}. The segment being
+     * appended to is always kept, so the sequence continues after a restart.
+     */
+    public synchronized int deleteThrough(long seq) throws IOException {
+        int deleted = 0;
+        for (Map.Entry<Long, Segment> entry : segments.entrySet()) {
+            Map.Entry<Long, Segment> next = segments.higherEntry(entry.getKey());
+            if (next == null || next.getKey() > seq + 1) break;
+            segments.remove(entry.getKey());
+            entry.getValue().delete();
+            deleted++;
+        }
+        return deleted;
+    }
+
+    /** Sequence number of the last appended record; 0 or the start sequence minus one if none. */
+    public long getLastSeq() {
+        return publishedSeq;
+    }
+
+    public long getDurableSeq() {
+        return durableSeq;
+    }
+
+    public FsyncPolicy getPolicy() {
+        return policy;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public long getAppendCount() {
+        return appends.sum();
+    }
+
+    public long getForceCount() {
+        return forces.sum();
+    }
+
+    /**
+     * Forces whatever is still unsynced, stops the syncer and closes the segment files.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (!open) return;
+            open = false;
+        }
+        if (syncer != null) {
+            LockSupport.unpark(syncer);
+            try {
+                syncer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (durableSeq < publishedSeq) forceThrough(publishedSeq);
+        synchronized (durableLock) {
+            durableLock.notifyAll();
+        }
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+    }
+
+    /**
+     * Reads records in order, following the appends up to the last durable one. Not thread-safe;
+     * meant for a single reader.
+     */
+    public final class Cursor {
+        private Segment segment;
+        private int position;
+        private long nextSeq;
+
+        private Cursor(long seq) {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(seq);
+            if (entry == null) {
+                throw new IllegalStateException("Journal no longer contains record " + seq);
+            }
+            segment = entry.getValue();
+            position = Segment.HEADER_BYTES;
+            nextSeq = segment.firstSeq;
+            while (nextSeq < seq) {
+                if (next() == null) throw new IllegalStateException("Journal does not reach record " + seq);
+            }
+        }
+
+        /** The next record, or null if it has not been appended or is not durable yet. */
+        public JournalEvent next() {
+            if (nextSeq > durableSeq) return null; // the volatile read also makes the record visible
+            MappedByteBuffer buffer = segment.buffer;
+            int length = position + 4 <= buffer.capacity() ? buffer.getInt(position) : 0;
+            if (length == 0) {
+                // The writer moved on to a new segment, starting with this record
+                segment = segments.get(nextSeq);
+                if (segment == null) throw new IllegalStateException("Journal segment for record " + nextSeq + " is missing");
+                buffer = segment.buffer;
+                position = Segment.HEADER_BYTES;
+                length = buffer.getInt(position);
+            }
+            JournalEvent event = JournalEvent.decode(nextSeq,
+                    buffer.slice(position + Segment.RECORD_HEADER_BYTES, length));
+            position += Segment.RECORD_HEADER_BYTES + length;
+            nextSeq++;
+            return event;
+        }
+
+        /** Sequence number of the record {@link #next} returns next. */
+        public long getNextSeq() {
+            return nextSeq;
+        }
+    }
+}
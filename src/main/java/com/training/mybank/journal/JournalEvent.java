@@ -0,0 +1,72 @@
+package com.training.mybank.journal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One money movement in the journal. Account 0 means none: {@code fromAccount == 0} is a
+ * deposit, {@code toAccount == 0} a withdrawal, otherwise a transfer.
+ *
+ * The idempotency fields are null unless the caller supplied a key; they are claimed when the
+ * event is applied to the database.
+ */
+public record JournalEvent(
+        long seq,           // assigned by Journal.append; 0 before that
+        int fromAccount,
+        int toAccount,
+        long amount,        // in cents
+        String userId,
+        String idempotencyKey,
+        String fingerprint
+) {
+    public JournalEvent withSeq(long seq) {
+        return new JournalEvent(seq, fromAccount, toAccount, amount, userId, idempotencyKey, fingerprint);
+    }
+
+    // Payload layout: from, to, amount, then userId, key, fingerprint as (short length, UTF-8); length -1 = null
+    byte[] encode() {
+        byte[] user = utf8(userId);
+        byte[] key = utf8(idempotencyKey);
+        byte[] print = utf8(fingerprint);
+        ByteBuffer out = ByteBuffer.allocate(16 + 6 + length(user) + length(key) + length(print));
+        out.putInt(fromAccount).putInt(toAccount).putLong(amount);
+        putString(out, user);
+        putString(out, key);
+        putString(out, print);
+        return out.array();
+    }
+
+    static JournalEvent decode(long seq, ByteBuffer payload) {
+        int from = payload.getInt();
+        int to = payload.getInt();
+        long amount = payload.getLong();
+        return new JournalEvent(seq, from, to, amount, getString(payload), getString(payload), getString(payload));
+    }
+
+    private static byte[] utf8(String value) {
+        if (value == null) return null;
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) throw new IllegalArgumentException("Journal field too long");
+        return bytes;
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putString(ByteBuffer out, byte[] bytes) {
+        if (bytes == null) {
+            out.putShort((short) -1);
+        } else {
+            out.putShort((short) bytes.length).put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getShort();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
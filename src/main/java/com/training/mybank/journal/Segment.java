@@ -0,0 +1,108 @@
+package com.training.mybank.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * One fixed-size, memory-mapped journal file, named after the sequence number of its first record.
+ *
+ * Layout: an 8-byte header (magic, version) followed by records of
+ * {@code [int payloadLength][int crc32c][long seq][payload]}, where the CRC covers seq and
+ * payload. The file is zero-filled when created, so a length of 0 marks the end of the data.
+ */
+final class Segment {
+    static final int MAGIC = 0x4D424A4C; // "MBJL"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    static final int RECORD_HEADER_BYTES = 16;
+    static final String SUFFIX = ".journal";
+
+    final long firstSeq;
+    final Path path;
+    private final FileChannel channel;
+    final MappedByteBuffer buffer;
+
+    private Segment(long firstSeq, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.firstSeq = firstSeq;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static Segment create(Path dir, long firstSeq, int size) throws IOException {
+        Path path = dir.resolve(fileName(firstSeq));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.putInt(0, MAGIC).putInt(4, VERSION);
+        buffer.position(HEADER_BYTES);
+        buffer.force();
+        channel.force(true); // the new file's size and directory entry
+        return new Segment(firstSeq, path, channel, buffer);
+    }
+
+    static Segment open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException("Not a journal segment: " + path);
+        }
+        buffer.position(HEADER_BYTES);
+        return new Segment(parseFirstSeq(path), path, channel, buffer);
+    }
+
+    /**
+     * Whether the file starts with a valid segment header. A crash while a segment is being
+     * created can leave a file that is empty or all zeros.
+     */
+    static boolean hasHeader(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) return false;
+            }
+            return header.getInt(0) == MAGIC && header.getInt(4) == VERSION;
+        }
+    }
+
+    static String fileName(long firstSeq) {
+        return String.format("%020d%s", firstSeq, SUFFIX);
+    }
+
+    static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.length() == 20 + SUFFIX.length() && name.endsWith(SUFFIX);
+    }
+
+    static long parseFirstSeq(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    static int crc(ByteBuffer buffer, int recordStart, int payloadLength) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(recordStart + 8, 8 + payloadLength));
+        return (int) crc.getValue();
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    // The mapping itself is released when the buffer is garbage collected
+    void close() throws IOException {
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+}
@@ -0,0 +1,10 @@
+package com.training.mybank.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of every counter and gauge in the {@link MetricsRegistry}, by metric name.
+ */
+public interface GaugesMXBean {
+    Map<String, Long> getValues();
+}
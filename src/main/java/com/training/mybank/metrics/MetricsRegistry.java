@@ -0,0 +1,180 @@
+package com.training.mybank.metrics;
+
+import com.training.mybank.config.AppConfig;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Process-wide registry of {@link Timer}s, counters and gauges, exposed through JMX
+ * (domain {@code com.training.mybank}) and as Prometheus text ({@link #writePrometheus}).
+ *
+ * Timers are looked up once, when the instrumented class is loaded, and kept in static fields,
+ * so the hot path never touches this registry. Counters and gauges are read from the components
+ * that already keep them (LongAdders, pool statistics) only when metrics are scraped.
+ *
+ * Timer names end in {@code _seconds}; each timer is a Prometheus summary labelled with its
+ * operation, plus a {@code <name>_errors_total} counter.
+ */
+public final class MetricsRegistry {
+    private static final Logger log = Logger.getLogger(MetricsRegistry.class.getName());
+    private static final String JMX_DOMAIN = "com.training.mybank";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static MetricsRegistry shared;
+
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Sampled> sampled = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Family> families = new ConcurrentHashMap<>();
+    private final Map<String, String> help = new ConcurrentHashMap<>();
+    private final MBeanServer mbeanServer;
+
+    // A counter or gauge read on demand
+    private record Sampled(String name, String type, LongSupplier value) {
+    }
+
+    // Counters sharing a name, one per value of a label, read on demand
+    private record Family(String name, String label, Supplier<Map<String, ? extends Number>> values) {
+    }
+
+    public MetricsRegistry(boolean jmxEnabled) {
+        this.mbeanServer = jmxEnabled ? ManagementFactory.getPlatformMBeanServer() : null;
+        register("type=Gauges", this::sampleAll, GaugesMXBean.class);
+    }
+
+    public static synchronized MetricsRegistry shared() {
+        if (shared == null) {
+            shared = new MetricsRegistry(AppConfig.getBoolean("mybank.metrics.jmx.enabled", true));
+        }
+        return shared;
+    }
+
+    /**
+     * The timer for {@code operation} under the metric {@code name}, created on first use.
+     */
+    public Timer timer(String name, String help, String operation) {
+        if (!name.endsWith("_seconds")) throw new IllegalArgumentException("Timer names must end in _seconds: " + name);
+        this.help.putIfAbsent(name, help);
+        return timers.computeIfAbsent(name + '{' + operation + '}', k -> {
+            Timer timer = new Timer(name, operation);
+            register("type=Timer,name=" + name + ",operation=" + ObjectName.quote(operation), timer, TimerMXBean.class);
+            return timer;
+        });
+    }
+
+    /** A monotonically increasing count, read from {@code value} when scraped. Replaces an earlier one of that name. */
+    public void counter(String name, String help, LongSupplier value) {
+        this.help.put(name, help);
+        sampled.put(name, new Sampled(name, "counter", value));
+    }
+
+    /** A value that can go up and down, read from {@code value} when scraped. Replaces an earlier one of that name. */
+    public void gauge(String name, String help, LongSupplier value) {
+        this.help.put(name, help);
+        sampled.put(name, new Sampled(name, "gauge", value));
+    }
+
+    /**
+     * A set of counters sharing one name, one per value of {@code label}, read from {@code values}
+     * when scraped. Only exposed as Prometheus text; the owner publishes its own MBean if needed.
+     */
+    public void counterFamily(String name, String help, String label, Supplier<Map<String, ? extends Number>> values) {
+        this.help.put(name, help);
+        families.put(name, new Family(name, label, values));
+    }
+
+    /** Registers {@code mbean} as {@code com.training.mybank:type=<type>}, replacing an earlier one. */
+    public <T> void registerMBean(String type, T mbean, Class<T> mbeanInterface) {
+        register("type=" + type, mbean, mbeanInterface);
+    }
+
+    private Map<String, Long> sampleAll() {
+        Map<String, Long> values = new TreeMap<>();
+        sampled.values().forEach(s -> values.put(s.name(), s.value().getAsLong()));
+        return values;
+    }
+
+    private <T> void register(String properties, T mbean, Class<T> type) {
+        if (mbeanServer == null) return;
+        try {
+            ObjectName name = new ObjectName(JMX_DOMAIN + ":" + properties);
+            if (mbeanServer.isRegistered(name)) mbeanServer.unregisterMBean(name);
+            mbeanServer.registerMBean(new StandardMBean(mbean, type, true), name);
+        } catch (JMException e) {
+            log.log(Level.WARNING, "Could not register MBean " + properties, e);
+        }
+    }
+
+    // --- Prometheus text format (version 0.0.4) ---
+
+    public String writePrometheus() {
+        StringBuilder out = new StringBuilder(8192);
+        Map<String, List<Timer>> byName = new TreeMap<>();
+        timers.values().forEach(t -> byName.computeIfAbsent(t.getName(), k -> new ArrayList<>()).add(t));
+
+        for (Map.Entry<String, List<Timer>> entry : byName.entrySet()) {
+            String name = entry.getKey();
+            List<Timer> family = entry.getValue();
+            family.sort((a, b) -> a.getOperation().compareTo(b.getOperation()));
+
+            header(out, name, help.get(name), "summary");
+            for (Timer timer : family) {
+                LatencyHistogram.Snapshot snapshot = timer.snapshot();
+                String op = "operation=\"" + escape(timer.getOperation()) + '"';
+                for (double q : QUANTILES) {
+                    out.append(name).append('{').append(op).append(",quantile=\"").append(q).append("\"} ")
+                            .append(seconds(snapshot.getValueAtPercentile(q * 100))).append('\n');
+                }
+                out.append(name).append("_sum{").append(op).append("} ").append(seconds(snapshot.getTotalNanos())).append('\n');
+                out.append(name).append("_count{").append(op).append("} ").append(snapshot.getCount()).append('\n');
+            }
+
+            String errors = name.substring(0, name.length() - "_seconds".length()) + "_errors_total";
+            header(out, errors, "Failed calls of " + name, "counter");
+            for (Timer timer : family) {
+                out.append(errors).append("{operation=\"").append(escape(timer.getOperation())).append("\"} ")
+                        .append(timer.getErrorCount()).append('\n');
+            }
+        }
+
+        for (Sampled s : new TreeMap<>(sampled).values()) {
+            header(out, s.name(), help.get(s.name()), s.type());
+            out.append(s.name()).append(' ').append(s.value().getAsLong()).append('\n');
+        }
+
+        for (Family f : new TreeMap<>(families).values()) {
+            header(out, f.name(), help.get(f.name()), "counter");
+            for (Map.Entry<String, ? extends Number> e : new TreeMap<>(f.values().get()).entrySet()) {
+                out.append(f.name()).append('{').append(f.label()).append("=\"").append(escape(e.getKey())).append("\"} ")
+                        .append(e.getValue()).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        if (help != null) out.append("# HELP ").append(name).append(' ').append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,56 @@
+package com.training.mybank.metrics;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Feeds a Hikari pool's timings into the {@link MetricsRegistry}: how long callers wait to
+ * borrow a connection, how long they hold it, and how often the wait times out, plus the
+ * pool's active, idle, total and waiting counts as gauges.
+ */
+public final class PoolMetricsTracker implements IMetricsTracker {
+    private final Timer acquire;
+    private final Timer usage;
+    private final Timer creation;
+    private final LongAdder timeouts = new LongAdder();
+
+    private PoolMetricsTracker(MetricsRegistry registry, String poolName, PoolStats stats) {
+        this.acquire = registry.timer("mybank_pool_acquire_seconds", "Time spent waiting to borrow a connection", poolName);
+        this.usage = registry.timer("mybank_pool_usage_seconds", "Time a borrowed connection was held", poolName);
+        this.creation = registry.timer("mybank_pool_connection_create_seconds", "Time to open a new physical connection", poolName);
+        registry.counter("mybank_pool_acquire_timeouts_total", "Borrow attempts that timed out", timeouts::sum);
+        registry.gauge("mybank_pool_active_connections", "Connections in use", stats::getActiveConnections);
+        registry.gauge("mybank_pool_idle_connections", "Connections idle in the pool", stats::getIdleConnections);
+        registry.gauge("mybank_pool_total_connections", "Open connections", stats::getTotalConnections);
+        registry.gauge("mybank_pool_pending_threads", "Threads waiting for a connection", stats::getPendingThreads);
+        registry.gauge("mybank_pool_max_connections", "Maximum pool size", stats::getMaxConnections);
+    }
+
+    public static MetricsTrackerFactory factory(MetricsRegistry registry) {
+        return (poolName, stats) -> new PoolMetricsTracker(registry, poolName, stats);
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        acquire.recordNanos(elapsedAcquiredNanos, true);
+    }
+
+    @Override
+    public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+        usage.recordNanos(TimeUnit.MILLISECONDS.toNanos(elapsedBorrowedMillis), true);
+    }
+
+    @Override
+    public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+        creation.recordNanos(TimeUnit.MILLISECONDS.toNanos(connectionCreatedMillis), true);
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeouts.increment();
+    }
+}
@@ -0,0 +1,90 @@
+package com.training.mybank.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and error count of one operation, e.g. one service method or one DAO statement.
+ *
+ * Hold the timer in a field and time calls with
+ * <pre>
+ *   long start = System.nanoTime();
+ *   boolean ok = false;
+ *   try {
+ *       ...
+ *       ok = true;
+ *   } finally {
+ *       TIMER.record(start, ok);
+ *   }
+ * </pre>
+ * Recording allocates nothing. Failed calls are timed too and also counted as errors.
+ */
+public final class Timer implements TimerMXBean {
+    private final String name;
+    private final String operation;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    Timer(String name, String operation) {
+        this.name = name;
+        this.operation = operation;
+    }
+
+    /** Records a call that started at {@code startNanos} (a {@link System#nanoTime} value) and ends now. */
+    public void record(long startNanos, boolean success) {
+        recordNanos(System.nanoTime() - startNanos, success);
+    }
+
+    public void recordNanos(long nanos, boolean success) {
+        histogram.record(nanos);
+        if (!success) errors.increment();
+    }
+
+    public LatencyHistogram.Snapshot snapshot() {
+        return histogram.snapshot();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getOperation() {
+        return operation;
+    }
+
+    @Override
+    public long getCount() {
+        return histogram.snapshot().getCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return histogram.snapshot().getMeanNanos() / 1_000.0;
+    }
+
+    @Override
+    public double get50thPercentileMicros() {
+        return histogram.snapshot().getValueAtPercentile(50) / 1_000.0;
+    }
+
+    @Override
+    public double get99thPercentileMicros() {
+        return histogram.snapshot().getValueAtPercentile(99) / 1_000.0;
+    }
+
+    @Override
+    public double get999thPercentileMicros() {
+        return histogram.snapshot().getValueAtPercentile(99.9) / 1_000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return histogram.snapshot().getMaxNanos() / 1_000.0;
+    }
+}
@@ -0,0 +1,24 @@
+package com.training.mybank.metrics;
+
+/**
+ * JMX view of a {@link Timer}. Latencies are in microseconds.
+ */
+public interface TimerMXBean {
+    String getName();
+
+    String getOperation();
+
+    long getCount();
+
+    long getErrorCount();
+
+    double getMeanMicros();
+
+    double get50thPercentileMicros();
+
+    double get99thPercentileMicros();
+
+    double get999thPercentileMicros();
+
+    double getMaxMicros();
+}
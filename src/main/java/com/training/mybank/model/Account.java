@@ -6,9 +6,9 @@ import java.util.Objects;
 public final class Account {
     private final int accountId;
     private final String userId;
-    private final double balance;
+    private final long balance; // in cents
 
-    public Account(int accountId, String userId, double balance) {
+    public Account(int accountId, String userId, long balance) {
         this.accountId = accountId;
         this.userId = userId;
         this.balance = balance;
@@ -22,7 +22,7 @@ public final class Account {
         return userId;
     }
 
-    public double balance() {
+    public long balance() {
         return balance;
     }
 
@@ -33,7 +33,7 @@ public final class Account {
         var that = (Account) obj;
         return this.accountId == that.accountId &&
                 Objects.equals(this.userId, that.userId) &&
-                Double.doubleToLongBits(this.balance) == Double.doubleToLongBits(that.balance);
+                this.balance == that.balance;
     }
 
     @Override
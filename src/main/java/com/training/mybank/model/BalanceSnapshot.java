@@ -0,0 +1,11 @@
+package com.training.mybank.model;
+
+import java.sql.Timestamp;
+
+// Represents the balance_snapshots table: the ledger balance of an account as of snapshotAt
+public record BalanceSnapshot(
+        int accountId,
+        Timestamp snapshotAt,
+        long balance // in cents
+) {
+}
@@ -0,0 +1,9 @@
+package com.training.mybank.model;
+
+// A transactions row that has not been inserted yet
+public record LedgerEntry(
+        Integer fromAccount, // null for deposits
+        Integer toAccount,   // null for withdrawals
+        long amount          // in cents
+) {
+}
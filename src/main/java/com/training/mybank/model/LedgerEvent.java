@@ -0,0 +1,24 @@
+package com.training.mybank.model;
+
+import java.sql.Timestamp;
+
+// Represents the ledger_outbox table: a committed transactions row as published to downstream consumers
+public record LedgerEvent(
+        long eventId,         // position in the stream; increases with every event
+        int transactionId,    // the transactions row, for consumers that deduplicate
+        Type type,
+        Integer fromAccount,  // null for deposits
+        Integer toAccount,    // null for withdrawals
+        long amount,          // in cents
+        Timestamp createdAt
+) {
+
+    public enum Type {
+        DEPOSIT, WITHDRAWAL, TRANSFER;
+
+        public static Type of(Integer fromAccount, Integer toAccount) {
+            if (fromAccount == null) return DEPOSIT;
+            return toAccount == null ? WITHDRAWAL : TRANSFER;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.training.mybank.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Monetary amounts are carried as {@code long} minor units (cents) everywhere in the
+ * application: exact, cheap to compare and add, and never boxed on the hot path.
+ * This class converts at the edges: user input, display, and the NUMERIC(15, 2) columns.
+ */
+public final class Money {
+    public static final int SCALE = 2;
+    private static final long CENTS_PER_UNIT = 100;
+
+    private Money() {
+    }
+
+    /**
+     * Parses a decimal amount such as "12", "12.5" or "12.50" into cents.
+     * Rejects more than two decimal places instead of rounding.
+     */
+    public static long parse(String amount) {
+        try {
+            return fromDecimal(new BigDecimal(amount.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a valid amount: " + amount);
+        }
+    }
+
+    /** Formats cents as a plain decimal string, e.g. 123456 -> "1234.56". */
+    public static String format(long cents) {
+        long abs = Math.abs(cents);
+        String text = (abs / CENTS_PER_UNIT) + "." + (abs % CENTS_PER_UNIT < 10 ? "0" : "") + (abs % CENTS_PER_UNIT);
+        return cents < 0 ? "-" + text : text;
+    }
+
+    /** Whole currency units to cents, e.g. 25 -> 2500. */
+    public static long ofUnits(long units) {
+        return Math.multiplyExact(units, CENTS_PER_UNIT);
+    }
+
+    /** For binding to a NUMERIC column. */
+    public static BigDecimal toDecimal(long cents) {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    /** From a NUMERIC column. Throws if the value has more than two decimal places or overflows a long. */
+    public static long fromDecimal(BigDecimal amount) {
+        try {
+            return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount must have at most two decimal places: " + amount);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.training.mybank.model;
+
+// An accounts row that has not been inserted yet (account_id is assigned by the database)
+public record NewAccount(
+        String userId,
+        long initialDeposit // in cents
+) {
+}
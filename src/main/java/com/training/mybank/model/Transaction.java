@@ -8,14 +8,14 @@ public final class Transaction {
     private final int transactionId;
     private final Integer fromAccount;
     private final Integer toAccount;
-    private final double amount;
+    private final long amount; // in cents
     private final Timestamp timestamp;
 
     public Transaction(
             int transactionId,
             Integer fromAccount, // Integer allows null for deposits
             Integer toAccount,   // Integer allows null for withdrawals
-            double amount,
+            long amount,         // in cents
             Timestamp timestamp
     ) {
         this.transactionId = transactionId;
@@ -37,7 +37,7 @@ public final class Transaction {
         return toAccount;
     }
 
-    public double amount() {
+    public long amount() {
         return amount;
     }
 
@@ -53,7 +53,7 @@ public final class Transaction {
         return this.transactionId == that.transactionId &&
                 Objects.equals(this.fromAccount, that.fromAccount) &&
                 Objects.equals(this.toAccount, that.toAccount) &&
-                Double.doubleToLongBits(this.amount) == Double.doubleToLongBits(that.amount) &&
+                this.amount == that.amount &&
                 Objects.equals(this.timestamp, that.timestamp);
     }
 
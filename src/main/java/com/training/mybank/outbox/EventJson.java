@@ -0,0 +1,34 @@
+package com.training.mybank.outbox;
+
+import com.training.mybank.model.LedgerEvent;
+import com.training.mybank.model.Money;
+
+import java.time.format.DateTimeFormatter;
+
+/**
+ * One event as a line of JSON, the format of the file and socket sinks, e.g.
+ * <pre>
+ *   {"eventId":42,"transactionId":1007,"type":"TRANSFER","fromAccount":3,"toAccount":9,"amount":12.50,"createdAt":"2026-10-18T09:15:02.123"}
+ * </pre>
+ */
+final class EventJson {
+
+    private EventJson() {
+    }
+
+    static void appendLine(StringBuilder out, LedgerEvent event) {
+        out.append("{\"eventId\":").append(event.eventId())
+                .append(",\"transactionId\":").append(event.transactionId())
+                .append(",\"type\":\"").append(event.type().name())
+                .append("\",\"fromAccount\":").append(event.fromAccount())
+                .append(",\"toAccount\":").append(event.toAccount())
+                .append(",\"amount\":").append(Money.format(event.amount()))
+                .append(",\"createdAt\":");
+        if (event.createdAt() == null) {
+            out.append("null");
+        } else {
+            out.append('"').append(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(event.createdAt().toLocalDateTime())).append('"');
+        }
+        out.append("}\n");
+    }
+}
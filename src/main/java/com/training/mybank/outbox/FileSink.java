@@ -0,0 +1,42 @@
+package com.training.mybank.outbox;
+
+import com.training.mybank.model.LedgerEvent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends events to a local file, one JSON line each (see {@link EventJson}). A batch is forced
+ * to disk before it counts as delivered.
+ */
+public class FileSink implements OutboxSink {
+    private final FileChannel channel;
+    private final StringBuilder lines = new StringBuilder(16 * 1024);
+
+    public FileSink(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void deliver(List<LedgerEvent> events) throws IOException {
+        lines.setLength(0);
+        for (LedgerEvent event : events) {
+            EventJson.appendLine(lines, event);
+        }
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(lines.toString());
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,214 @@
+package com.training.mybank.outbox;
+
+import com.training.mybank.config.AppConfig;
+import com.training.mybank.config.DatabaseConfig;
+import com.training.mybank.dao.OutboxDAO;
+import com.training.mybank.metrics.MetricsRegistry;
+import com.training.mybank.model.LedgerEvent;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tails ledger_outbox in event_id order for one consumer and delivers the events to its
+ * {@link OutboxSink} in batches, at least once: the consumer's position in outbox_offsets is
+ * only advanced after the sink has taken a batch, so a failed or interrupted delivery is repeated.
+ *
+ * event_ids are handed out when an event is inserted, but the inserting transactions may commit
+ * in a different order, so a lower event_id can become visible after a higher one. The relay
+ * therefore only delivers up to the first missing event_id, and waits for it. A missing event_id
+ * that does not appear within {@code gapTimeoutMillis} belongs to a transaction that rolled back,
+ * and is skipped; the timeout must be longer than any transaction that writes ledger rows.
+ * Events of the same account are always in order, because their transactions lock the account row.
+ *
+ * About once a minute the relay deletes the events that every consumer has had delivered. A
+ * consumer that is retired should be removed from outbox_offsets, or the outbox keeps growing.
+ */
+public class OutboxRelay implements AutoCloseable {
+    private static final Logger log = Logger.getLogger(OutboxRelay.class.getName());
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final long PURGE_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final String consumer;
+    private final OutboxSink sink;
+    private final OutboxDAO outboxDAO;
+    private final int batchSize;
+    private final long pollMillis;
+    private final long gapTimeoutNanos;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private volatile long deliveredEventId;
+    // The first missing event_id being waited for, and since when
+    private long gapEventId;
+    private long gapSince;
+    // The highest event_id already skipped, so a batch that is retried does not count it again
+    private long skippedThrough;
+    private long lastPurge = System.nanoTime();
+
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    /**
+     * Starts relaying from the consumer's saved position (from the oldest event still in the outbox for a new consumer).
+     */
+    public OutboxRelay(String consumer, OutboxSink sink, OutboxDAO outboxDAO, int batchSize, long pollMillis,
+                       long gapTimeoutMillis) throws SQLException {
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be at least 1");
+        this.consumer = consumer;
+        this.sink = sink;
+        this.outboxDAO = outboxDAO;
+        this.batchSize = batchSize;
+        this.pollMillis = pollMillis;
+        this.gapTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(gapTimeoutMillis);
+        this.deliveredEventId = outboxDAO.getDeliveredEventId(consumer);
+        this.thread = new Thread(this::run, "outbox-relay-" + consumer);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** A relay with the batch size, poll interval and gap timeout from mybank.outbox.* in application.properties. */
+    public static OutboxRelay fromConfig(String consumer, OutboxSink sink) throws SQLException {
+        return new OutboxRelay(consumer, sink, new OutboxDAO(),
+                AppConfig.getInt("mybank.outbox.batch-size", 500),
+                AppConfig.getLong("mybank.outbox.poll-ms", 200),
+                AppConfig.getLong("mybank.outbox.gap-timeout-ms", 10_000));
+    }
+
+    /**
+     * Runs a relay until the JVM is stopped: {@code OutboxRelay <consumer> file <path>} or
+     * {@code OutboxRelay <consumer> socket <host:port>}.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 3 || !(args[1].equals("file") || args[1].equals("socket"))) {
+            System.err.println("Usage: OutboxRelay <consumer> file <path> | OutboxRelay <consumer> socket <host:port>");
+            System.exit(2);
+        }
+        OutboxSink sink;
+        if (args[1].equals("file")) {
+            sink = new FileSink(Path.of(args[2]));
+        } else {
+            int colon = args[2].lastIndexOf(':');
+            sink = new SocketSink(args[2].substring(0, colon), Integer.parseInt(args[2].substring(colon + 1)));
+        }
+        OutboxRelay relay = fromConfig(args[0], sink);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            relay.close();
+            DatabaseConfig.close();
+        }));
+        log.info("Relaying ledger events to " + args[1] + " " + args[2] + " as " + args[0]);
+        relay.thread.join();
+    }
+
+    /** Publishes the relay's counters as mybank_outbox_* metrics. */
+    public void registerMetrics(MetricsRegistry metrics) {
+        metrics.gauge("mybank_outbox_delivered_event_id", "Last event_id delivered by the outbox relay", this::getDeliveredEventId);
+        metrics.counter("mybank_outbox_delivered_total", "Ledger events delivered by the outbox relay", delivered::sum);
+        metrics.counter("mybank_outbox_delivery_failures_total", "Outbox batches that failed and were retried", failures::sum);
+        metrics.counter("mybank_outbox_skipped_total", "Outbox event_ids skipped as rolled back", skipped::sum);
+    }
+
+    private void run() {
+        long backoff = pollMillis;
+        while (running) {
+            try {
+                List<LedgerEvent> events = deliverable(outboxDAO.readAfter(deliveredEventId, batchSize));
+                if (!events.isEmpty()) {
+                    sink.deliver(events);
+                    long last = events.get(events.size() - 1).eventId();
+                    outboxDAO.saveDeliveredEventId(consumer, last);
+                    deliveredEventId = last;
+                    delivered.add(events.size());
+                }
+                backoff = pollMillis;
+                if (System.nanoTime() - lastPurge > PURGE_INTERVAL_NANOS) {
+                    lastPurge = System.nanoTime();
+                    outboxDAO.purgeDelivered();
+                }
+                // A full batch means there is probably more to deliver straight away
+                if (events.size() < batchSize) pause(pollMillis);
+            } catch (SQLException | IOException | RuntimeException e) {
+                failures.increment();
+                log.log(Level.WARNING, "Outbox relay " + consumer + " failed after event_id " + deliveredEventId
+                        + "; retrying in " + backoff + " ms", e);
+                pause(backoff);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    // Parks rather than sleeps: interrupting the thread would close a sink's FileChannel
+    private void pause(long millis) {
+        if (running) LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    // The events up to the first event_id that is missing and not yet given up on
+    private List<LedgerEvent> deliverable(List<LedgerEvent> events) {
+        if (events.isEmpty()) return events;
+        // A new consumer starts at the oldest event still in the outbox; the event_ids before it
+        // were purged after the other consumers had them, and are not gaps to wait for
+        long expected = deliveredEventId == 0 ? events.get(0).eventId() : deliveredEventId + 1;
+        for (int i = 0; i < events.size(); i++) {
+            long eventId = events.get(i).eventId();
+            if (eventId != expected) {
+                long now = System.nanoTime();
+                if (gapEventId != expected) {
+                    gapEventId = expected;
+                    gapSince = now;
+                }
+                if (now - gapSince < gapTimeoutNanos) return events.subList(0, i);
+                if (eventId - 1 > skippedThrough) {
+                    skippedThrough = eventId - 1;
+                    log.warning("Outbox relay " + consumer + " skipping event_ids " + expected + " to " + (eventId - 1)
+                            + ", not committed after " + TimeUnit.NANOSECONDS.toMillis(gapTimeoutNanos) + " ms");
+                    skipped.add(eventId - expected);
+                }
+            }
+            expected = eventId + 1;
+        }
+        return events;
+    }
+
+    public String getConsumer() {
+        return consumer;
+    }
+
+    public long getDeliveredEventId() {
+        return deliveredEventId;
+    }
+
+    public long getDeliveredCount() {
+        return delivered.sum();
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public long getSkippedCount() {
+        return skipped.sum();
+    }
+
+    /** Stops after the batch in progress, if any, and closes the sink. */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+            sink.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.log(Level.WARNING, "Could not close the outbox sink of " + consumer, e);
+        }
+    }
+}
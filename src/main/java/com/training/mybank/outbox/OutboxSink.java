@@ -0,0 +1,23 @@
+package com.training.mybank.outbox;
+
+import com.training.mybank.model.LedgerEvent;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where an {@link OutboxRelay} delivers ledger events.
+ *
+ * A batch counts as delivered once {@link #deliver} returns; if it throws, the relay delivers the
+ * same batch again later. A batch can also be delivered again after a crash or a restart, so
+ * consumers must tolerate duplicates, e.g. by remembering the last event_id they processed.
+ */
+public interface OutboxSink extends AutoCloseable {
+
+    /** Hands over the events, in event_id order. */
+    void deliver(List<LedgerEvent> events) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+}
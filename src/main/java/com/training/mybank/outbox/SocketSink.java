@@ -0,0 +1,68 @@
+package com.training.mybank.outbox;
+
+import com.training.mybank.model.LedgerEvent;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes events as JSON lines (see {@link EventJson}) to a TCP endpoint, standing in for a
+ * message broker client. A batch counts as delivered once it is written and flushed; after a
+ * failure the connection is dropped and opened again for the retry.
+ */
+public class SocketSink implements OutboxSink {
+    private static final int CONNECT_TIMEOUT_MILLIS = 5_000;
+
+    private final String host;
+    private final int port;
+    private final StringBuilder lines = new StringBuilder(16 * 1024);
+    private Socket socket;
+    private OutputStream out;
+
+    public SocketSink(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    @Override
+    public void deliver(List<LedgerEvent> events) throws IOException {
+        lines.setLength(0);
+        for (LedgerEvent event : events) {
+            EventJson.appendLine(lines, event);
+        }
+        try {
+            if (socket == null) connect();
+            out.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void connect() throws IOException {
+        Socket s = new Socket();
+        try {
+            s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+            s.setTcpNoDelay(true);
+            out = new BufferedOutputStream(s.getOutputStream(), 64 * 1024);
+        } catch (IOException e) {
+            s.close();
+            throw e;
+        }
+        socket = s;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Socket s = socket;
+        socket = null;
+        out = null;
+        if (s != null) s.close();
+    }
+}
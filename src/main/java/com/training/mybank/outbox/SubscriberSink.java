@@ -0,0 +1,32 @@
+package com.training.mybank.outbox;
+
+import com.training.mybank.model.LedgerEvent;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Delivers events to subscribers in this process, on the relay's thread. If a subscriber throws,
+ * the batch is delivered again, to every subscriber.
+ */
+public class SubscriberSink implements OutboxSink {
+    private final List<Consumer<LedgerEvent>> subscribers = new CopyOnWriteArrayList<>();
+
+    public void subscribe(Consumer<LedgerEvent> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(Consumer<LedgerEvent> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    @Override
+    public void deliver(List<LedgerEvent> events) {
+        for (LedgerEvent event : events) {
+            for (Consumer<LedgerEvent> subscriber : subscribers) {
+                subscriber.accept(event);
+            }
+        }
+    }
+}
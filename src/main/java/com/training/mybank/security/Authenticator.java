@@ -0,0 +1,126 @@
+package com.training.mybank.security;
+
+import com.training.mybank.config.AppConfig;
+import com.training.mybank.dao.UserDAO;
+import com.training.mybank.model.User;
+
+import java.sql.SQLException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * The login path: throttle check, then the credential cache, then one narrow database read
+ * and a password hash verification.
+ *
+ * Every attempt is counted by the throttle before anything is read or hashed, so throttled
+ * attempts cost neither a query nor a hash, however many arrive at once. Repeat logins with a
+ * cached credential cost neither either. At most {@code maxConcurrentHashes} hashes run at once, so a
+ * login storm queues here instead of taking every core away from the rest of the application.
+ * Unknown users are checked against a dummy hash so they take as long as a wrong password.
+ *
+ * Legacy plaintext passwords and hashes made with an older cost are rehashed on the next
+ * successful login.
+ */
+public class Authenticator {
+    private static Authenticator shared;
+
+    private final UserDAO userDAO;
+    private final PasswordHasher hasher;
+    private final CredentialCache cache;
+    private final LoginThrottle throttle;
+    private final Semaphore hashPermits;
+    private final String dummyHash;
+
+    public Authenticator(UserDAO userDAO, PasswordHasher hasher, CredentialCache cache,
+                         LoginThrottle throttle, int maxConcurrentHashes) {
+        this.userDAO = userDAO;
+        this.hasher = hasher;
+        this.cache = cache;
+        this.throttle = throttle;
+        this.hashPermits = new Semaphore(maxConcurrentHashes);
+        this.dummyHash = hasher.hash("not-a-real-password");
+    }
+
+    public static synchronized Authenticator shared() {
+        if (shared == null) {
+            shared = new Authenticator(new UserDAO(), PasswordHasher.shared(),
+                    new CredentialCache(AppConfig.getLong("mybank.security.credential-cache.ttl-seconds", 300),
+                            AppConfig.getInt("mybank.security.credential-cache.max-entries", 100_000)),
+                    new LoginThrottle(AppConfig.getInt("mybank.security.login.max-failures-per-user", 5),
+                            AppConfig.getInt("mybank.security.login.max-failures-per-source", 50),
+                            AppConfig.getLong("mybank.security.login.window-seconds", 300)),
+                    AppConfig.getInt("mybank.security.max-concurrent-hashes", Runtime.getRuntime().availableProcessors()));
+        }
+        return shared;
+    }
+
+    /**
+     * Returns the user if the credentials are valid, otherwise null.
+     *
+     * @param source where the attempt came from (client address), or null if unknown
+     * @throws LoginThrottledException if the user or source has failed too often recently
+     */
+    public User authenticate(String userId, String password, String source) throws SQLException {
+        if (userId == null || password == null) return null;
+        LoginThrottle.Attempt attempt = throttle.tryAcquire(userId, source);
+
+        String cached = cache.lookup(userId, password);
+        if (cached != null) {
+            attempt.succeeded();
+            return new User(userId, cached);
+        }
+
+        String stored;
+        boolean valid;
+        try {
+            stored = userDAO.getPasswordHash(userId);
+            valid = verify(password, stored != null ? stored : dummyHash) && stored != null;
+        } catch (SQLException | RuntimeException e) {
+            attempt.abandoned();
+            throw e;
+        }
+        if (!valid) {
+            attempt.failed();
+            return null;
+        }
+        attempt.succeeded();
+
+        if (hasher.needsRehash(stored)) {
+            String upgraded = hash(password);
+            // Conditional on the old value, so a concurrent password change is not overwritten
+            if (userDAO.updatePassword(userId, stored, upgraded)) stored = upgraded;
+        }
+        cache.put(userId, password, stored);
+        return new User(userId, stored);
+    }
+
+    /** Drops any cached credential for the user, e.g. after a password change. */
+    public void invalidate(String userId) {
+        cache.invalidate(userId);
+    }
+
+    public String hash(String password) {
+        hashPermits.acquireUninterruptibly();
+        try {
+            return hasher.hash(password);
+        } finally {
+            hashPermits.release();
+        }
+    }
+
+    private boolean verify(String password, String stored) {
+        hashPermits.acquireUninterruptibly();
+        try {
+            return hasher.verify(password, stored);
+        } finally {
+            hashPermits.release();
+        }
+    }
+
+    public CredentialCache getCache() {
+        return cache;
+    }
+
+    public LoginThrottle getThrottle() {
+        return throttle;
+    }
+}
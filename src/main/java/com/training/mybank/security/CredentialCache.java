@@ -0,0 +1,96 @@
+package com.training.mybank.security;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers recently verified credentials so a repeat login skips the database read and the
+ * deliberately slow password hash.
+ *
+ * Only an HMAC-SHA256 fingerprint of (userId, password) is kept, under a random key that
+ * never leaves the process, so the cache holds nothing that could be replayed or brute-forced
+ * offline. Entries expire after a fixed TTL and are dropped when the password changes.
+ */
+public class CredentialCache {
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final SecretKeySpec key;
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private record Entry(byte[] fingerprint, String storedHash, long expiresAt) {
+    }
+
+    public CredentialCache(long ttlSeconds, int maxEntries) {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, MAC_ALGORITHM);
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the stored hash if these exact credentials were verified within the TTL, otherwise null.
+     */
+    public String lookup(String userId, String password) {
+        Entry entry = entries.get(userId);
+        if (entry == null || entry.expiresAt() - System.nanoTime() <= 0) {
+            misses.increment();
+            return null;
+        }
+        if (!MessageDigest.isEqual(entry.fingerprint(), fingerprint(userId, password))) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.storedHash();
+    }
+
+    public void put(String userId, String password, String storedHash) {
+        if (ttlNanos <= 0) return;
+        long now = System.nanoTime();
+        if (entries.size() >= maxEntries) {
+            entries.values().removeIf(e -> e.expiresAt() - now <= 0);
+            if (entries.size() >= maxEntries) return; // still full of live entries; skip rather than grow
+        }
+        entries.put(userId, new Entry(fingerprint(userId, password), storedHash, now + ttlNanos));
+    }
+
+    public void invalidate(String userId) {
+        entries.remove(userId);
+    }
+
+    private byte[] fingerprint(String userId, String password) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            mac.update(userId.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(MAC_ALGORITHM + " is not available", e);
+        }
+    }
+
+    // --- Metrics ---
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+}
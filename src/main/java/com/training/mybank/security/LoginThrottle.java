@@ -0,0 +1,145 @@
+package com.training.mybank.security;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts login attempts per user and per source (client address) in a fixed time window.
+ * Once either count reaches its limit, further attempts are refused until the window ends,
+ * before any database read or password hash is spent on them.
+ *
+ * An attempt is counted when it begins ({@link #tryAcquire}), in the same atomic step as the
+ * limit check, so a burst of concurrent guesses cannot all pass the check before the first of
+ * them fails: at most the limit are let through. A successful attempt clears the user's count
+ * and gives its slot back to the source, but the source's earlier failures stay, so an attacker
+ * cannot reset the source limit by logging in to an account of their own.
+ */
+public class LoginThrottle {
+    private static final int SWEEP_EVERY = 1024;
+
+    private final int maxFailuresPerUser;
+    private final int maxFailuresPerSource;
+    private final long windowNanos;
+
+    private final Map<String, Window> users = new ConcurrentHashMap<>();
+    private final Map<String, Window> sources = new ConcurrentHashMap<>();
+    private final AtomicInteger recorded = new AtomicInteger();
+
+    private final LongAdder throttled = new LongAdder();
+
+    // Attempts (failed or in progress) since startedAt; replaced by a fresh window once it has
+    // expired. attempts is only changed inside the map's compute functions, which lock the key
+    private static final class Window {
+        final long startedAt;
+        int attempts;
+
+        Window(long startedAt) {
+            this.startedAt = startedAt;
+        }
+    }
+
+    /**
+     * A login attempt let through by {@link #tryAcquire}. Call exactly one of its methods once the
+     * credentials have been checked.
+     */
+    public final class Attempt {
+        private final String userId;
+        private final Window user;
+        private final String source;
+        private final Window sourceWindow;
+
+        private Attempt(String userId, Window user, String source, Window sourceWindow) {
+            this.userId = userId;
+            this.user = user;
+            this.source = source;
+            this.sourceWindow = sourceWindow;
+        }
+
+        /** The credentials were valid: clears the user's count and gives back the source's slot. */
+        public void succeeded() {
+            users.remove(userId, user);
+            release(sources, source, sourceWindow);
+        }
+
+        /** The credentials were wrong: the attempt stays counted against the user and the source. */
+        public void failed() {
+            if (recorded.incrementAndGet() % SWEEP_EVERY == 0) {
+                long now = System.nanoTime();
+                users.values().removeIf(w -> expired(w, now));
+                sources.values().removeIf(w -> expired(w, now));
+            }
+        }
+
+        /** The check could not be made, e.g. the database failed: the attempt is not counted. */
+        public void abandoned() {
+            release(users, userId, user);
+            release(sources, source, sourceWindow);
+        }
+    }
+
+    public LoginThrottle(int maxFailuresPerUser, int maxFailuresPerSource, long windowSeconds) {
+        this.maxFailuresPerUser = maxFailuresPerUser;
+        this.maxFailuresPerSource = maxFailuresPerSource;
+        this.windowNanos = TimeUnit.SECONDS.toNanos(windowSeconds);
+    }
+
+    /**
+     * Counts an attempt for the user and the source (null if unknown).
+     *
+     * @throws LoginThrottledException if either is at its limit; nothing is counted then
+     */
+    public Attempt tryAcquire(String userId, String source) {
+        long now = System.nanoTime();
+        Window user = acquire(users, userId, maxFailuresPerUser, now);
+        Window sourceWindow;
+        try {
+            sourceWindow = acquire(sources, source, maxFailuresPerSource, now);
+        } catch (LoginThrottledException e) {
+            release(users, userId, user);
+            throw e;
+        }
+        return new Attempt(userId, user, source, sourceWindow);
+    }
+
+    // The key's current window with one more attempt in it, or throws if it is full
+    private Window acquire(Map<String, Window> windows, String key, int limit, long now) {
+        if (key == null) return null;
+        boolean[] admitted = new boolean[1];
+        Window w = windows.compute(key, (k, current) -> {
+            Window next = current == null || expired(current, now) ? new Window(now) : current;
+            if (next.attempts < limit) {
+                next.attempts++;
+                admitted[0] = true;
+            }
+            return next;
+        });
+        if (!admitted[0]) {
+            throttled.increment();
+            throw new LoginThrottledException(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(w.startedAt + windowNanos - now)));
+        }
+        return w;
+    }
+
+    // Takes an attempt back out of the window it was counted in, unless that window has been replaced
+    private static void release(Map<String, Window> windows, String key, Window w) {
+        if (key == null) return;
+        windows.computeIfPresent(key, (k, current) -> {
+            if (current == w) current.attempts--;
+            return current;
+        });
+    }
+
+    private boolean expired(Window w, long now) {
+        return now - w.startedAt >= windowNanos;
+    }
+
+    // --- Metrics ---
+
+    /** Attempts refused because of too many recent failures. */
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+}
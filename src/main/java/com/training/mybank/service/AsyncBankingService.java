@@ -0,0 +1,170 @@
+package com.training.mybank.service;
+
+import com.training.mybank.config.AppConfig;
+import com.training.mybank.config.DatabaseConfig;
+import com.training.mybank.dao.HistoryCursor;
+import com.training.mybank.model.Account;
+import com.training.mybank.model.Transaction;
+
+import java.lang.reflect.Method;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking facade over the session-less {@link BankingService} methods.
+ *
+ * Each call returns immediately with a CompletableFuture; the blocking JDBC work runs on a
+ * virtual thread (Java 21+), so thousands of requests can be in flight without a platform
+ * thread each. At most {@code maxConcurrency} calls touch the database at once; the rest
+ * park cheaply. The default limit is the Hikari pool size, so callers queue here rather than
+ * inside the pool's connection timeout.
+ *
+ * On Java 17 the same API runs on a fixed pool of {@code maxConcurrency} platform threads.
+ */
+public class AsyncBankingService implements AutoCloseable {
+    private final BankingService service;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+
+    @FunctionalInterface
+    private interface BankingCall<T> {
+        T call() throws Exception;
+    }
+
+    public AsyncBankingService() {
+        this(new BankingService(), AppConfig.getInt("mybank.async.max-concurrency", 0));
+    }
+
+    /**
+     * @param maxConcurrency calls allowed to run at once; 0 means the connection pool size
+     */
+    public AsyncBankingService(BankingService service, int maxConcurrency) {
+        this.service = service;
+        this.maxConcurrency = maxConcurrency > 0 ? maxConcurrency : DatabaseConfig.getMaximumPoolSize();
+        this.permits = new Semaphore(this.maxConcurrency);
+        this.executor = newExecutor(this.maxConcurrency);
+    }
+
+    private static ExecutorService newExecutor(int maxConcurrency) {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(maxConcurrency, r -> {
+                Thread t = new Thread(r, "banking-async-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /** Calls currently waiting for a free slot. */
+    public int getQueuedCount() {
+        return permits.getQueueLength();
+    }
+
+    // --- Operations ---
+
+    public CompletableFuture<Boolean> login(String userId, String password) {
+        return login(userId, password, null);
+    }
+
+    /** Fails with LoginThrottledException if the user or source failed too often recently. */
+    public CompletableFuture<Boolean> login(String userId, String password, String source) {
+        return submit(() -> service.authenticate(userId, password, source) != null);
+    }
+
+    public CompletableFuture<Integer> createAccount(String userId, long initialDeposit) {
+        return submit(() -> service.createAccount(userId, initialDeposit));
+    }
+
+    public CompletableFuture<List<Account>> getAccounts(String userId) {
+        return submit(() -> service.getAccounts(userId));
+    }
+
+    public CompletableFuture<Long> getBalance(String userId, int accountId) {
+        return submit(() -> service.getBalance(userId, accountId));
+    }
+
+    public CompletableFuture<Long> getBalanceAsOf(String userId, int accountId, Timestamp asOf) {
+        return submit(() -> service.getBalanceAsOf(userId, accountId, asOf));
+    }
+
+    public CompletableFuture<List<Transaction>> getTransactionHistory(String userId, int accountId,
+                                                                      HistoryCursor after, int pageSize) {
+        return submit(() -> service.getTransactionHistory(userId, accountId, after, pageSize));
+    }
+
+    public CompletableFuture<Void> deposit(String userId, int accountId, long amount) {
+        return submit(() -> {
+            service.deposit(userId, accountId, amount);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> withdraw(String userId, int accountId, long amount) {
+        return submit(() -> {
+            service.withdraw(userId, accountId, amount);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> transferFunds(String userId, int fromAccId, int toAccId, long amount) {
+        return submit(() -> {
+            service.transferFunds(userId, fromAccId, toAccId, amount);
+            return null;
+        });
+    }
+
+    // Idempotent variants: true if applied now, false if the key had already been applied
+
+    public CompletableFuture<Boolean> deposit(String userId, int accountId, long amount, String idempotencyKey) {
+        return submit(() -> service.deposit(userId, accountId, amount, idempotencyKey));
+    }
+
+    public CompletableFuture<Boolean> withdraw(String userId, int accountId, long amount, String idempotencyKey) {
+        return submit(() -> service.withdraw(userId, accountId, amount, idempotencyKey));
+    }
+
+    public CompletableFuture<Boolean> transferFunds(String userId, int fromAccId, int toAccId, long amount,
+                                                    String idempotencyKey) {
+        return submit(() -> service.transferFunds(userId, fromAccId, toAccId, amount, idempotencyKey));
+    }
+
+    private <T> CompletableFuture<T> submit(BankingCall<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.completeExceptionally(e);
+                return;
+            }
+            try {
+                result.complete(call.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            } finally {
+                permits.release();
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -1,27 +1,192 @@
 package com.training.mybank.service;
 
+import com.training.mybank.config.AppConfig;
 import com.training.mybank.config.DatabaseConfig;
+import com.training.mybank.dao.AccountCache;
 import com.training.mybank.dao.AccountDAO;
+import com.training.mybank.dao.AccountIndex;
+import com.training.mybank.dao.CachingAccountDAO;
+import com.training.mybank.dao.HistoryCursor;
 import com.training.mybank.dao.TransactionDAO;
-import com.training.mybank.dao.UserDAO;
+import com.training.mybank.fraud.FraudScreen;
+import com.training.mybank.metrics.MetricsRegistry;
+import com.training.mybank.metrics.Timer;
 import com.training.mybank.model.Account;
+import com.training.mybank.model.Transaction;
 import com.training.mybank.model.User;
+import com.training.mybank.security.Authenticator;
+import com.training.mybank.security.LoginThrottledException;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Banking operations. All amounts are in cents (see Money).
+ *
+ * The methods that take a {@code userId} are session-less and thread-safe; one instance can serve
+ * many concurrent callers. The overloads without it act for the user logged in through
+ * {@link #login} and are meant for the single-user console.
+ */
 public class BankingService {
-    private final UserDAO userDAO = new UserDAO();
-    private final AccountDAO accountDAO = new AccountDAO();
+    // Latency and errors per operation; an idempotent overload counts as its plain operation
+    private static final Timer AUTHENTICATE = timer("authenticate");
+    private static final Timer CREATE_ACCOUNT = timer("create_account");
+    private static final Timer GET_ACCOUNTS = timer("get_accounts");
+    private static final Timer GET_BALANCE = timer("get_balance");
+    private static final Timer GET_BALANCE_AS_OF = timer("get_balance_as_of");
+    private static final Timer GET_HISTORY = timer("get_transaction_history");
+    private static final Timer DEPOSIT = timer("deposit");
+    private static final Timer WITHDRAW = timer("withdraw");
+    private static final Timer TRANSFER = timer("transfer");
+
+    private final Authenticator authenticator = Authenticator.shared();
+    private final AccountDAO accountDAO = AppConfig.getBoolean("mybank.account-cache.enabled", true)
+            ? new CachingAccountDAO(AccountCache.shared())
+            : new AccountDAO();
+    private final AccountIndex accountIndex = AccountIndex.sharedFromConfig(); // null = ownership and balances from accountDAO
+    private final FraudScreen fraudScreen = FraudScreen.sharedFromConfig(); // null = debits are not screened
     private final TransactionDAO transactionDAO = new TransactionDAO();
+    private final TransferEngine transferEngine = new TransferEngine(accountDAO, transactionDAO);
+    private final IdempotencyGuard idempotencyGuard = IdempotencyGuard.shared();
+    private final GroupCommitter groupCommitter; // null = every call commits on its own
+    private final LedgerEngine engine; // null = money movements are applied before the call returns
+    private static final AtomicBoolean SHARED_METRICS_REGISTERED = new AtomicBoolean();
     private User currentUser = null;
 
+    public BankingService() {
+        this(GroupCommitter.sharedFromConfig(), ledgerEngineFromConfig());
+    }
+
+    public BankingService(GroupCommitter groupCommitter) {
+        this(groupCommitter, (LedgerEngine) null);
+    }
+
+    /**
+     * With a journal, deposits, withdrawals and transfers are acknowledged once they are durable
+     * in the journal and reach the database shortly after (see {@link JournalLedger}).
+     */
+    public BankingService(GroupCommitter groupCommitter, JournalLedger journal) {
+        this(groupCommitter, (LedgerEngine) journal);
+    }
+
+    /**
+     * With a sharded ledger, deposits, withdrawals and transfers are applied to in-memory
+     * balances by the account's shard and written to the database shortly after (see {@link ShardedLedger}).
+     */
+    public BankingService(GroupCommitter groupCommitter, ShardedLedger sharded) {
+        this(groupCommitter, (LedgerEngine) sharded);
+    }
+
+    private BankingService(GroupCommitter groupCommitter, LedgerEngine engine) {
+        this.groupCommitter = groupCommitter;
+        this.engine = engine;
+        registerMetrics(MetricsRegistry.shared());
+    }
+
+    // The journal or the sharded ledger if one is enabled; they cannot both own the balances
+    private static LedgerEngine ledgerEngineFromConfig() {
+        if (AppConfig.getBoolean("mybank.journal.enabled", false) && AppConfig.getBoolean("mybank.sharded.enabled", false)) {
+            throw new IllegalStateException("mybank.journal.enabled and mybank.sharded.enabled cannot both be true.");
+        }
+        JournalLedger journal = JournalLedger.sharedFromConfig();
+        return journal != null ? journal : ShardedLedger.sharedFromConfig();
+    }
+
+    // Exposes the counters the components already keep. The process-wide ones are registered by the
+    // first instance only; for the group committer and ledger engine a later instance replaces an earlier one's
+    private void registerMetrics(MetricsRegistry metrics) {
+        if (SHARED_METRICS_REGISTERED.compareAndSet(false, true)) {
+            registerSharedMetrics(metrics);
+        }
+        if (groupCommitter != null) {
+            metrics.counter("mybank_group_commits_total", "Group commits", groupCommitter::getGroupCount);
+            metrics.counter("mybank_group_commit_units_total", "Units committed in groups", groupCommitter::getCommittedUnitCount);
+            metrics.counter("mybank_group_commit_failed_units_total", "Units that failed in groups", groupCommitter::getFailedUnitCount);
+        }
+        if (engine instanceof JournalLedger journal) {
+            metrics.gauge("mybank_journal_apply_lag", "Journal records not yet applied to the database", journal::getApplyLag);
+            metrics.counter("mybank_journal_applied_total", "Journal records applied", journal::getAppliedCount);
+            metrics.counter("mybank_journal_rejected_total", "Journal records the database rejected", journal::getRejectedCount);
+            metrics.counter("mybank_journal_fsyncs_total", "Journal forces to disk", () -> journal.getJournal().getForceCount());
+        }
+        if (engine instanceof ShardedLedger sharded) {
+            metrics.gauge("mybank_sharded_persist_lag", "Balance changes not yet written to the database", sharded::getPersistLag);
+            metrics.counter("mybank_sharded_movements_total", "Movements submitted to the shards", sharded::getSubmittedCount);
+            metrics.counter("mybank_sharded_cross_shard_total", "Transfers handed off between shards", sharded::getCrossShardCount);
+            metrics.counter("mybank_sharded_rejected_total", "Movements refused for insufficient funds", sharded::getRejectedCount);
+            metrics.counter("mybank_sharded_persist_failures_total", "Failed balance-change write batches",
+                    sharded::getPersistFailureCount);
+        }
+    }
+
+    // Counters of the components every instance shares: the transfer engines' totals, the
+    // idempotency guard, the authenticator, the account cache, the account index and the fraud screen
+    private void registerSharedMetrics(MetricsRegistry metrics) {
+        metrics.counter("mybank_transfers_total", "Committed transfers", TransferEngine::getTransferCount);
+        metrics.counter("mybank_transfer_retries_total", "Transfer attempts retried", TransferEngine::getRetryCount);
+        metrics.counter("mybank_transfer_deadlocks_total", "Deadlocks reported to transfers", TransferEngine::getDeadlockCount);
+        metrics.counter("mybank_transfer_serialization_failures_total", "Serialization failures reported to transfers",
+                TransferEngine::getSerializationFailureCount);
+        metrics.counter("mybank_transfer_exhausted_total", "Transfers that failed after the last retry", TransferEngine::getExhaustedCount);
+        metrics.counter("mybank_idempotency_memory_replays_total", "Retries answered from memory",
+                idempotencyGuard::getMemoryReplayCount);
+        metrics.counter("mybank_idempotency_database_replays_total", "Retries answered from the database",
+                idempotencyGuard::getDatabaseReplayCount);
+        metrics.counter("mybank_idempotency_purged_total", "Expired idempotency keys deleted",
+                idempotencyGuard::getPurgedCount);
+        metrics.counter("mybank_credential_cache_hits_total", "Logins verified from the credential cache",
+                authenticator.getCache()::getHitCount);
+        metrics.counter("mybank_credential_cache_misses_total", "Logins that needed a password hash",
+                authenticator.getCache()::getMissCount);
+        metrics.counter("mybank_login_throttled_total", "Login attempts refused by throttling",
+                authenticator.getThrottle()::getThrottledCount);
+        if (accountDAO instanceof CachingAccountDAO caching) {
+            AccountCache cache = caching.getCache();
+            metrics.counter("mybank_account_cache_hits_total", "Account lookups served from the cache", cache::getHitCount);
+            metrics.counter("mybank_account_cache_misses_total", "Account lookups that went to the database", cache::getMissCount);
+        }
+        if (accountIndex != null) {
+            metrics.gauge("mybank_account_index_entries", "Accounts in the off-heap account index", accountIndex::getAccountCount);
+            metrics.gauge("mybank_account_index_offheap_bytes", "Direct memory held by the account index",
+                    accountIndex::getOffHeapBytes);
+            metrics.counter("mybank_account_index_database_reads_total", "Account index lookups that went to the database",
+                    accountIndex::getDatabaseReadCount);
+        }
+        if (fraudScreen != null) {
+            fraudScreen.registerMetrics(metrics);
+        }
+    }
+
     // --- Authentication ---
 
+    /**
+     * Returns the user if the credentials are valid, otherwise null. Does not touch the console session.
+     *
+     * @param source where the attempt came from (client address), used for throttling; may be null
+     * @throws LoginThrottledException if there were too many failed attempts recently
+     */
+    public User authenticate(String userId, String password, String source) throws SQLException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            User user = authenticator.authenticate(userId, password, source);
+            ok = true;
+            return user;
+        } finally {
+            AUTHENTICATE.record(start, ok);
+        }
+    }
+
+    public User authenticate(String userId, String password) throws SQLException {
+        return authenticate(userId, password, null);
+    }
+
     public boolean login(String userId, String password) throws SQLException {
-        User user = userDAO.getUserById(userId);
-        if (user != null && user.password().equals(password)) {
+        User user = authenticate(userId, password);
+        if (user != null) {
             this.currentUser = user;
             return true;
         }
@@ -37,82 +202,412 @@ public class BankingService {
         System.out.println("Logged out successfully.");
     }
 
+    // --- Console session ---
+    // These act for the logged-in user and delegate to the session-less methods below.
+
+    public int createAccount(long initialDeposit) throws SQLException {
+        return createAccount(requireLogin(), initialDeposit);
+    }
+
+    public List<Account> getMyAccounts() throws SQLException {
+        return getAccounts(requireLogin());
+    }
+
+    public long getBalance(int accountId) throws SQLException {
+        return getBalance(requireLogin(), accountId);
+    }
+
+    public long getBalanceAsOf(int accountId, Timestamp asOf) throws SQLException {
+        return getBalanceAsOf(requireLogin(), accountId, asOf);
+    }
+
+    public List<Transaction> getTransactionHistory(int accountId, HistoryCursor after, int pageSize) throws SQLException {
+        return getTransactionHistory(requireLogin(), accountId, after, pageSize);
+    }
+
+    public void deposit(int accountId, long amount) throws SQLException {
+        deposit(requireLogin(), accountId, amount);
+    }
+
+    public void withdraw(int accountId, long amount) throws SQLException {
+        withdraw(requireLogin(), accountId, amount);
+    }
+
+    public void transferFunds(int fromAccId, int toAccId, long amount) throws Exception {
+        transferFunds(requireLogin(), fromAccId, toAccId, amount);
+    }
+
     // --- Account Management ---
+    // Session-less: the caller identity is a parameter, so these are safe to call from many threads.
 
-    public void createAccount(double initialDeposit) throws SQLException {
-        if (currentUser == null) throw new IllegalStateException("Login required.");
+    /**
+     * Opens an account and returns its id. A non-zero initial deposit is also written to the
+     * ledger, in the same transaction, so balances always equal the sum of their ledger rows.
+     */
+    public int createAccount(String userId, long initialDeposit) throws SQLException {
+        if (initialDeposit < 0) throw new IllegalArgumentException("Initial deposit must not be negative.");
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            int[] accountId = new int[1];
+            runInTransaction((conn, ledger) -> {
+                accountId[0] = accountDAO.createAccount(conn, userId, initialDeposit);
+                if (initialDeposit > 0) ledger.record(null, accountId[0], initialDeposit); // opening deposit
+            });
+            ok = true;
+            return accountId[0];
+        } finally {
+            CREATE_ACCOUNT.record(start, ok);
+        }
+    }
 
-        try (Connection conn = DatabaseConfig.getConnection()) {
-            accountDAO.createAccount(conn, currentUser.userId(), initialDeposit);
+    public List<Account> getAccounts(String userId) throws SQLException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            List<Account> accounts = accountDAO.getAccountsByUserId(userId);
+            if (engine != null) {
+                for (int i = 0; i < accounts.size(); i++) {
+                    Account a = accounts.get(i);
+                    accounts.set(i, new Account(a.accountId(), a.userId(), engine.balanceOf(a.accountId(), a.balance())));
+                }
+            }
+            ok = true;
+            return accounts;
+        } finally {
+            GET_ACCOUNTS.record(start, ok);
         }
     }
 
-    public List<Account> getMyAccounts() throws SQLException {
-        if (currentUser == null) throw new IllegalStateException("Login required.");
-        return accountDAO.getAccountsByUserId(currentUser.userId());
+    public long getBalance(String userId, int accountId) throws SQLException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            long balance;
+            if (accountIndex != null && engine == null) {
+                validateOwnership(userId, accountId);
+                balance = accountIndex.getBalance(accountId);
+            } else {
+                Account account = ownedAccount(userId, accountId);
+                balance = engine != null ? engine.balanceOf(accountId, account.balance()) : account.balance();
+            }
+            ok = true;
+            return balance;
+        } finally {
+            GET_BALANCE.record(start, ok);
+        }
     }
 
-    public double getBalance(int accountId) throws SQLException {
-        validateOwnership(accountId);
-        return accountDAO.getAccountById(accountId).balance();
+    /**
+     * The balance the account had at {@code asOf}, from the nearest balance snapshot plus the ledger after it.
+     */
+    public long getBalanceAsOf(String userId, int accountId, Timestamp asOf) throws SQLException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            validateOwnership(userId, accountId);
+            long balance = accountDAO.getBalanceAsOf(accountId, asOf);
+            ok = true;
+            return balance;
+        } finally {
+            GET_BALANCE_AS_OF.record(start, ok);
+        }
+    }
+
+    /**
+     * One page of the account's transactions, newest first. Start with {@link HistoryCursor#START}
+     * and continue with {@link HistoryCursor#after} of the last row returned.
+     */
+    public List<Transaction> getTransactionHistory(String userId, int accountId, HistoryCursor after, int pageSize) throws SQLException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            validateOwnership(userId, accountId);
+            List<Transaction> page = transactionDAO.getAccountHistoryPage(accountId, after, pageSize);
+            ok = true;
+            return page;
+        } finally {
+            GET_HISTORY.record(start, ok);
+        }
     }
 
     // --- Financial Operations ---
 
-    public void deposit(int accountId, double amount) throws SQLException {
+    public void deposit(String userId, int accountId, long amount) throws SQLException {
         if (amount <= 0) throw new IllegalArgumentException("Amount must be positive.");
-        validateOwnership(accountId);
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            validateOwnership(userId, accountId);
+            if (engine != null) {
+                engine.submit(0, accountId, amount, null, null, null);
+            } else {
+                indexed(0, accountId, amount, () -> runInTransaction(depositWork(accountId, amount)));
+            }
+            ok = true;
+        } finally {
+            DEPOSIT.record(start, ok);
+        }
+    }
 
-        try (Connection conn = DatabaseConfig.getConnection()) {
-            accountDAO.updateBalance(conn, accountId, amount);
-            transactionDAO.recordTransaction(conn, null, accountId, amount); // null fromAcc = deposit
+    public void withdraw(String userId, int accountId, long amount) throws SQLException {
+        if (amount <= 0) throw new IllegalArgumentException("Amount must be positive.");
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            validateOwnership(userId, accountId);
+            screen(accountId, 0, amount);
+            if (engine != null) {
+                engine.submit(accountId, 0, amount, null, null, null);
+            } else {
+                indexed(accountId, 0, amount, () -> runInTransaction(withdrawWork(accountId, amount)));
+            }
+            ok = true;
+        } finally {
+            WITHDRAW.record(start, ok);
         }
     }
 
-    public void withdraw(int accountId, double amount) throws SQLException {
+    public void transferFunds(String userId, int fromAccId, int toAccId, long amount) throws SQLException {
         if (amount <= 0) throw new IllegalArgumentException("Amount must be positive.");
-        validateOwnership(accountId);
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            validateOwnership(userId, fromAccId);
+            screen(fromAccId, toAccId, amount);
+            if (engine != null) {
+                engine.submit(fromAccId, toAccId, amount, null, null, null);
+            } else {
+                indexed(fromAccId, toAccId, amount, () -> runTransfer(fromAccId, toAccId, amount, null));
+            }
+            ok = true;
+        } finally {
+            TRANSFER.record(start, ok);
+        }
+    }
 
-        try (Connection conn = DatabaseConfig.getConnection()) {
-            Account account = accountDAO.getAccountById(accountId);
-            double currentBalance = account.balance();
-            if (currentBalance < amount) throw new RuntimeException("Insufficient funds.");
+    // --- Idempotent Financial Operations ---
+    // A retried call with the same key and the same arguments does not move money again.
+    // Each returns true if it was applied now and false if it had already been applied.
+    // Only successful calls consume their key; a call that failed may be retried with it.
+    // A null key behaves like the plain overload.
 
-            accountDAO.updateBalance(conn, accountId, -amount);
-            transactionDAO.recordTransaction(conn, accountId, null, amount); // null toAcc = withdrawal
+    public boolean deposit(String userId, int accountId, long amount, String idempotencyKey) throws SQLException {
+        if (idempotencyKey == null) {
+            deposit(userId, accountId, amount);
+            return true;
+        }
+        if (amount <= 0) throw new IllegalArgumentException("Amount must be positive.");
+        String fingerprint = "DEPOSIT:" + accountId + ":" + amount;
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            validateOwnership(userId, accountId);
+            boolean appliedNow = idempotencyGuard.runOnce(userId, idempotencyKey, fingerprint, engine != null
+                    ? journaled(userId, idempotencyKey, fingerprint, 0, accountId, amount)
+                    : () -> indexed(0, accountId, amount,
+                            () -> runInTransaction(guarded(userId, idempotencyKey, fingerprint, depositWork(accountId, amount)))));
+            ok = true;
+            return appliedNow;
+        } finally {
+            DEPOSIT.record(start, ok);
         }
     }
 
-    public void transferFunds(int fromAccId, int toAccId, double amount) throws Exception {
+    public boolean withdraw(String userId, int accountId, long amount, String idempotencyKey) throws SQLException {
+        if (idempotencyKey == null) {
+            withdraw(userId, accountId, amount);
+            return true;
+        }
         if (amount <= 0) throw new IllegalArgumentException("Amount must be positive.");
-        validateOwnership(fromAccId);
+        String fingerprint = "WITHDRAW:" + accountId + ":" + amount;
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            validateOwnership(userId, accountId);
+            boolean appliedNow = idempotencyGuard.runOnce(userId, idempotencyKey, fingerprint, screened(accountId, 0, amount,
+                    engine != null
+                            ? journaled(userId, idempotencyKey, fingerprint, accountId, 0, amount)
+                            : () -> indexed(accountId, 0, amount,
+                                    () -> runInTransaction(guarded(userId, idempotencyKey, fingerprint, withdrawWork(accountId, amount))))));
+            ok = true;
+            return appliedNow;
+        } finally {
+            WITHDRAW.record(start, ok);
+        }
+    }
 
-        try (Connection conn = DatabaseConfig.getConnection()) {
+    public boolean transferFunds(String userId, int fromAccId, int toAccId, long amount, String idempotencyKey) throws SQLException {
+        if (idempotencyKey == null) {
+            transferFunds(userId, fromAccId, toAccId, amount);
+            return true;
+        }
+        if (amount <= 0) throw new IllegalArgumentException("Amount must be positive.");
+        String fingerprint = "TRANSFER:" + fromAccId + ":" + toAccId + ":" + amount;
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            validateOwnership(userId, fromAccId);
+            boolean appliedNow = idempotencyGuard.runOnce(userId, idempotencyKey, fingerprint, screened(fromAccId, toAccId, amount,
+                    engine != null
+                            ? journaled(userId, idempotencyKey, fingerprint, fromAccId, toAccId, amount)
+                            : () -> indexed(fromAccId, toAccId, amount, () -> runTransfer(fromAccId, toAccId, amount,
+                                    (conn, ledger) -> idempotencyGuard.claim(conn, userId, idempotencyKey, fingerprint)))));
+            ok = true;
+            return appliedNow;
+        } finally {
+            TRANSFER.record(start, ok);
+        }
+    }
+
+    public TransferEngine getTransferEngine() {
+        return transferEngine;
+    }
+
+    // --- Helper Logic ---
+
+    private TransactionWork depositWork(int accountId, long amount) {
+        return (conn, ledger) -> {
+            accountDAO.updateBalance(conn, accountId, amount);
+            ledger.record(null, accountId, amount); // null fromAcc = deposit
+        };
+    }
+
+    private TransactionWork withdrawWork(int accountId, long amount) {
+        return (conn, ledger) -> {
+            // Funds check and debit in one statement, so concurrent withdrawals cannot overdraw
+            if (!accountDAO.debitIfSufficient(conn, accountId, amount)) {
+                throw new InsufficientFundsException();
+            }
+            ledger.record(accountId, null, amount); // null toAcc = withdrawal
+        };
+    }
+
+    // guard runs first in the same transaction; null for none
+    private void runTransfer(int fromAccId, int toAccId, long amount, TransactionWork guard) throws SQLException {
+        if (groupCommitter != null) {
+            groupCommitter.execute((conn, ledger) -> {
+                if (guard != null) guard.execute(conn, ledger);
+                transferEngine.apply(conn, ledger, fromAccId, toAccId, amount);
+            });
+        } else {
+            // Locks both rows in account_id order and retries deadlocks/serialization failures
+            transferEngine.transfer(fromAccId, toAccId, amount, guard);
+        }
+    }
+
+    // Lets the account index apply the movement, and the account cache drop the accounts, once it
+    // has committed; account 0 means none
+    private void indexed(int fromAccId, int toAccId, long amount, IdempotencyGuard.GuardedStep step) throws SQLException {
+        if (accountIndex == null) {
             try {
-                conn.setAutoCommit(false); // ACID Transaction Start
+                step.run();
+            } finally {
+                afterCommit(fromAccId, toAccId);
+            }
+            return;
+        }
+        if (fromAccId != 0) accountIndex.beginWrite(fromAccId);
+        if (toAccId != 0) accountIndex.beginWrite(toAccId);
+        boolean committed = false;
+        boolean known = false; // e.g. a failed commit may or may not have taken effect
+        try {
+            step.run();
+            committed = known = true;
+        } catch (InsufficientFundsException e) {
+            known = true; // refused before anything was written
+            throw e;
+        } finally {
+            if (fromAccId != 0) accountIndex.endWrite(fromAccId, committed ? -amount : 0, known);
+            if (toAccId != 0) accountIndex.endWrite(toAccId, committed ? amount : 0, known);
+            afterCommit(fromAccId, toAccId);
+        }
+    }
+
+    // Also after a failure, which may have come after the commit took effect
+    private void afterCommit(int fromAccId, int toAccId) {
+        if (fromAccId != 0) accountDAO.afterCommit(fromAccId);
+        if (toAccId != 0) accountDAO.afterCommit(toAccId);
+    }
+
+    // Fraud rules for money leaving fromAccId, before any database work; toAccId 0 = withdrawal
+    private void screen(int fromAccId, int toAccId, long amount) {
+        if (fraudScreen != null) fraudScreen.screen(fromAccId, toAccId, amount);
+    }
+
+    // Idempotent calls screen inside the guarded step, so a replayed retry is not screened again
+    private IdempotencyGuard.GuardedStep screened(int fromAccId, int toAccId, long amount, IdempotencyGuard.GuardedStep step) {
+        return () -> {
+            screen(fromAccId, toAccId, amount);
+            step.run();
+        };
+    }
 
-                double balance = accountDAO.getAccountById(fromAccId).balance();
-                if (balance < amount) throw new SQLException("Insufficient funds.");
+    // Claims the idempotency key in the same transaction before the work moves any money
+    private TransactionWork guarded(String userId, String key, String fingerprint, TransactionWork work) {
+        return (conn, ledger) -> {
+            idempotencyGuard.claim(conn, userId, key, fingerprint);
+            work.execute(conn, ledger);
+        };
+    }
 
-                accountDAO.updateBalance(conn, fromAccId, -amount);
-                accountDAO.updateBalance(conn, toAccId, amount);
-                transactionDAO.recordTransaction(conn, fromAccId, toAccId, amount);
+    // Journal and sharded mode: the key is checked now and claimed when the movement is written
+    private IdempotencyGuard.GuardedStep journaled(String userId, String key, String fingerprint,
+                                                   int fromAccId, int toAccId, long amount) {
+        return () -> {
+            idempotencyGuard.checkUnclaimed(userId, key);
+            engine.submit(fromAccId, toAccId, amount, userId, key, fingerprint);
+        };
+    }
 
+    /**
+     * Runs the work in one database transaction, either on its own connection
+     * or as part of the next group commit.
+     */
+    private void runInTransaction(TransactionWork work) throws SQLException {
+        if (groupCommitter != null) {
+            groupCommitter.execute(work);
+            return;
+        }
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try {
+                conn.setAutoCommit(false);
+                work.execute(conn, (from, to, amount) -> transactionDAO.recordTransaction(conn, from, to, amount));
                 conn.commit();
-            } catch (SQLException e) {
+            } catch (SQLException | RuntimeException e) {
                 conn.rollback();
                 throw e;
             }
         }
     }
 
-    // --- Helper Logic ---
+    private static Timer timer(String operation) {
+        return MetricsRegistry.shared().timer("mybank_service_seconds", "BankingService call latency", operation);
+    }
 
-    private void validateOwnership(int accountId) throws SQLException {
+    private String requireLogin() {
         if (currentUser == null) throw new IllegalStateException("Login required.");
+        return currentUser.userId();
+    }
+
+    private void validateOwnership(String userId, int accountId) throws SQLException {
+        if (accountIndex == null) {
+            ownedAccount(userId, accountId);
+            return;
+        }
+        if (userId == null) throw new IllegalStateException("Login required.");
+        if (!accountIndex.isOwner(accountId, userId)) {
+            throw new SecurityException("Unauthorized access to account ID: " + accountId);
+        }
+    }
+
+    // Returns the account so callers that also need the balance do not read it twice
+    private Account ownedAccount(String userId, int accountId) throws SQLException {
+        if (userId == null) throw new IllegalStateException("Login required.");
         Account acc = accountDAO.getAccountById(accountId);
-        if (acc == null || !acc.userId().equals(currentUser.userId())) {
+        if (acc == null || !acc.userId().equals(userId)) {
             throw new SecurityException("Unauthorized access to account ID: " + accountId);
         }
+        return acc;
     }
 }
\ No newline at end of file
@@ -0,0 +1,208 @@
+package com.training.mybank.service;
+
+import com.training.mybank.config.AppConfig;
+import com.training.mybank.config.DatabaseConfig;
+import com.training.mybank.dao.TransactionDAO;
+import com.training.mybank.model.LedgerEntry;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Group commit for money movements.
+ *
+ * Concurrent callers hand in their {@link TransactionWork}; a single writer thread collects
+ * them for up to {@code maxDelayMicros} or {@code maxBatchSize} units, runs each one inside its
+ * own savepoint, inserts all of the group's ledger rows with one JDBC batch and commits once.
+ * Every caller is released only after that commit, so an acknowledged row is as durable as
+ * with a per-call commit, while the fsync and the ledger INSERT round-trips are shared.
+ *
+ * A unit that throws is rolled back to its savepoint and fails on its own; the rest of the
+ * group still commits. If the batch insert or the commit fails, every unit in the group fails.
+ */
+public class GroupCommitter implements AutoCloseable {
+    private static GroupCommitter shared;
+
+    private final TransactionDAO transactionDAO;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private final LongAdder groups = new LongAdder();
+    private final LongAdder units = new LongAdder();
+    private final LongAdder failedUnits = new LongAdder();
+
+    private record Pending(TransactionWork work, CompletableFuture<Void> done) {
+    }
+
+    public GroupCommitter(TransactionDAO transactionDAO, int maxBatchSize, long maxDelayMicros) {
+        if (maxBatchSize < 1) throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        this.transactionDAO = transactionDAO;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.writer = new Thread(this::runWriter, "ledger-group-commit");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Returns the process-wide committer if mybank.ledger.group-commit.enabled is true, otherwise null.
+     */
+    public static synchronized GroupCommitter sharedFromConfig() {
+        if (!AppConfig.getBoolean("mybank.ledger.group-commit.enabled", false)) return null;
+        if (shared == null) {
+            shared = new GroupCommitter(new TransactionDAO(),
+                    AppConfig.getInt("mybank.ledger.group-commit.max-batch-size", 256),
+                    AppConfig.getLong("mybank.ledger.group-commit.max-delay-micros", 2_000));
+        }
+        return shared;
+    }
+
+    /**
+     * Runs the work as part of the next group and blocks until that group has committed.
+     */
+    public void execute(TransactionWork work) throws SQLException {
+        CompletableFuture<Void> done = submit(work);
+        try {
+            done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for group commit", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sql) throw sql;
+            if (cause instanceof RuntimeException re) throw re;
+            throw new SQLException(cause);
+        }
+    }
+
+    /**
+     * Queues the work; the future completes once its group has committed.
+     */
+    public CompletableFuture<Void> submit(TransactionWork work) {
+        if (!running) throw closed();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Pending pending = new Pending(work, done);
+        queue.add(pending);
+        // Closed meanwhile: the writer may already have done its last drain
+        if (!running && queue.remove(pending)) done.completeExceptionally(closed());
+        return done;
+    }
+
+    private void runWriter() {
+        List<Pending> group = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                group.add(first);
+
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (group.size() < maxBatchSize) {
+                    queue.drainTo(group, maxBatchSize - group.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (group.size() >= maxBatchSize || remaining <= 0) break;
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    group.add(next);
+                }
+                commitGroup(group);
+            } catch (InterruptedException e) {
+                running = false;
+                failAll(group, new IllegalStateException("GroupCommitter was interrupted."));
+                break;
+            } finally {
+                group.clear();
+            }
+        }
+        // Whatever is still queued will never be written
+        List<Pending> left = new ArrayList<>();
+        queue.drainTo(left);
+        failAll(left, closed());
+    }
+
+    private void failAll(List<Pending> pending, Exception e) {
+        for (Pending p : pending) {
+            if (p.done().completeExceptionally(e)) failedUnits.increment();
+        }
+    }
+
+    private static IllegalStateException closed() {
+        return new IllegalStateException("GroupCommitter is closed.");
+    }
+
+    private void commitGroup(List<Pending> group) {
+        List<Pending> applied = new ArrayList<>(group.size());
+        List<LedgerEntry> entries = new ArrayList<>(group.size() * 2);
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try {
+                conn.setAutoCommit(false);
+                for (Pending pending : group) {
+                    List<LedgerEntry> unitEntries = new ArrayList<>(2);
+                    Savepoint savepoint = conn.setSavepoint();
+                    try {
+                        pending.work().execute(conn, (from, to, amount) -> unitEntries.add(new LedgerEntry(from, to, amount)));
+                        entries.addAll(unitEntries);
+                        applied.add(pending);
+                    } catch (SQLException | RuntimeException e) {
+                        conn.rollback(savepoint);
+                        failedUnits.increment();
+                        pending.done().completeExceptionally(e);
+                    }
+                }
+                transactionDAO.recordTransactions(conn, entries);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException | RuntimeException e) {
+            // Fails the applied units, and all of them if the connection could not even be borrowed
+            failAll(group, e);
+            return;
+        }
+
+        groups.increment();
+        units.add(applied.size());
+        applied.forEach(p -> p.done().complete(null));
+    }
+
+    // --- Metrics ---
+
+    public long getGroupCount() {
+        return groups.sum();
+    }
+
+    public long getCommittedUnitCount() {
+        return units.sum();
+    }
+
+    public long getFailedUnitCount() {
+        return failedUnits.sum();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Pending> left = new ArrayList<>();
+        queue.drainTo(left);
+        failAll(left, closed());
+    }
+}
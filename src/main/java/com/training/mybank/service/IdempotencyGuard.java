@@ -0,0 +1,255 @@
+package com.training.mybank.service;
+
+import com.training.mybank.config.AppConfig;
+import com.training.mybank.dao.IdempotencyDAO;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Deduplicates retried money movements by client-supplied idempotency key.
+ *
+ * The key is claimed with an INSERT into idempotency_keys inside the same transaction as the
+ * money movement, so the unique constraint guarantees at most one of several concurrent
+ * retries commits. Keys completed in this JVM are also held in a bounded in-memory index, so
+ * most retries are answered in O(1) without touching the database at all. Retries of a key that is
+ * still being processed in this JVM wait for that attempt instead of racing it.
+ *
+ * A key is bound to a request fingerprint (operation, accounts, amount). Reusing a key for a
+ * different request is rejected rather than silently treated as a replay.
+ *
+ * Keys are kept for a retention period (see {@link #startPurging}), in the table and in memory;
+ * a retry that comes later than that is treated as a new request, so the period must outlast
+ * any client's retries.
+ */
+public class IdempotencyGuard {
+    private static final Logger log = Logger.getLogger(IdempotencyGuard.class.getName());
+    private static final long PURGE_INTERVAL_MINUTES = 60;
+
+    private static IdempotencyGuard shared;
+
+    private final IdempotencyDAO idempotencyDAO;
+    private final Map<String, Completed> completed; // insertion order: the oldest entries come first
+    private volatile long retentionNanos = Long.MAX_VALUE;
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder memoryReplays = new LongAdder();
+    private final LongAdder databaseReplays = new LongAdder();
+    private final LongAdder purged = new LongAdder();
+    private ScheduledExecutorService purger;
+
+    private record Completed(String fingerprint, long rememberedAt) {
+    }
+
+    /** A transaction that claims the key (see {@link #claim}) and moves the money. */
+    @FunctionalInterface
+    interface GuardedStep {
+        void run() throws SQLException;
+    }
+
+    /** Thrown inside the transaction when the key is already taken, to roll it back. */
+    static final class DuplicateRequestException extends RuntimeException {
+        DuplicateRequestException() {
+            super("Duplicate request", null, false, false);
+        }
+    }
+
+    public IdempotencyGuard(IdempotencyDAO idempotencyDAO, int maxEntries) {
+        this.idempotencyDAO = idempotencyDAO;
+        this.completed = new LinkedHashMap<>(1024, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Completed> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public static synchronized IdempotencyGuard shared() {
+        if (shared == null) {
+            shared = new IdempotencyGuard(new IdempotencyDAO(),
+                    AppConfig.getInt("mybank.idempotency.max-cached-keys", 100_000));
+            long retentionHours = AppConfig.getLong("mybank.idempotency.retention-hours", 72);
+            if (retentionHours > 0) shared.startPurging(retentionHours);
+        }
+        return shared;
+    }
+
+    /**
+     * Deletes keys older than {@code retentionHours} from idempotency_keys now and then once an
+     * hour, on a daemon thread, and forgets them in memory once they are that old. Retries of a
+     * deleted key are treated as new requests.
+     */
+    public synchronized void startPurging(long retentionHours) {
+        if (purger != null) throw new IllegalStateException("Already purging");
+        retentionNanos = TimeUnit.HOURS.toNanos(retentionHours);
+        purger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "idempotency-purge");
+            t.setDaemon(true);
+            return t;
+        });
+        long retentionMillis = TimeUnit.HOURS.toMillis(retentionHours);
+        purger.scheduleWithFixedDelay(() -> purgeOlderThan(retentionMillis), 0, PURGE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    private void purgeOlderThan(long retentionMillis) {
+        forgetExpired();
+        try {
+            int deleted = idempotencyDAO.purgeOlderThan(retentionMillis);
+            purged.add(deleted);
+            if (deleted > 0) log.info("Purged " + deleted + " expired idempotency keys");
+        } catch (SQLException | RuntimeException e) {
+            // Tried again at the next interval
+            log.log(Level.WARNING, "Could not purge expired idempotency keys", e);
+        }
+    }
+
+    private static String indexKey(String userId, String key) {
+        return userId + '\u0000' + key;
+    }
+
+    /**
+     * Runs the step unless this request already completed. Returns true if it ran now,
+     * false if it is a replay.
+     */
+    boolean runOnce(String userId, String key, String fingerprint, GuardedStep step) throws SQLException {
+        String id = indexKey(userId, key);
+        while (true) {
+            if (isCompleted(userId, key, fingerprint)) return false;
+
+            CompletableFuture<Void> mine = new CompletableFuture<>();
+            CompletableFuture<Void> running = inFlight.putIfAbsent(id, mine);
+            if (running == null) {
+                try {
+                    return runClaimed(userId, key, fingerprint, step);
+                } finally {
+                    inFlight.remove(id, mine);
+                    mine.complete(null);
+                }
+            }
+            // Another attempt with this key is running here; if it fails, try again ourselves
+            running.join();
+        }
+    }
+
+    private boolean runClaimed(String userId, String key, String fingerprint, GuardedStep step) throws SQLException {
+        long startedAt = System.nanoTime(); // no later than the row's created_at, so memory forgets it first
+        try {
+            step.run();
+        } catch (DuplicateRequestException e) {
+            resolveDuplicate(userId, key, fingerprint);
+            return false;
+        }
+        remember(userId, key, fingerprint, startedAt);
+        return true;
+    }
+
+    /**
+     * True if this exact request already completed, answered from memory only.
+     */
+    boolean isCompleted(String userId, String key, String fingerprint) {
+        Completed known;
+        synchronized (completed) {
+            known = completed.get(indexKey(userId, key));
+            if (known != null && expired(known, System.nanoTime())) {
+                completed.remove(indexKey(userId, key));
+                known = null;
+            }
+        }
+        if (known == null) return false;
+        requireSameRequest(known.fingerprint(), fingerprint);
+        memoryReplays.increment();
+        return true;
+    }
+
+    /**
+     * Claims the key on the transaction's connection; throws {@link DuplicateRequestException}
+     * if another request already holds it.
+     */
+    void claim(Connection conn, String userId, String key, String fingerprint) throws SQLException {
+        requireValidKey(key);
+        if (!idempotencyDAO.claim(conn, userId, key, fingerprint)) {
+            throw new DuplicateRequestException();
+        }
+    }
+
+    /**
+     * Throws {@link DuplicateRequestException} if the key is already claimed in the database.
+     * For steps that claim the key later, outside the caller's transaction (journal mode).
+     */
+    void checkUnclaimed(String userId, String key) throws SQLException {
+        requireValidKey(key);
+        if (idempotencyDAO.findFingerprint(userId, key) != null) {
+            throw new DuplicateRequestException();
+        }
+    }
+
+    private static void requireValidKey(String key) {
+        if (key.isEmpty() || key.length() > 100) {
+            throw new IllegalArgumentException("Idempotency key must be 1 to 100 characters.");
+        }
+    }
+
+    // Called after a DuplicateRequestException rolled the transaction back
+    private void resolveDuplicate(String userId, String key, String fingerprint) throws SQLException {
+        String stored = idempotencyDAO.findFingerprint(userId, key);
+        if (stored == null) {
+            throw new IllegalStateException("Idempotency key was released concurrently; retry the request.");
+        }
+        requireSameRequest(stored, fingerprint);
+        databaseReplays.increment();
+        // Not remembered: the key's age is unknown here, and memory must not outlive the table row
+    }
+
+    private void remember(String userId, String key, String fingerprint, long startedAt) {
+        synchronized (completed) {
+            completed.put(indexKey(userId, key), new Completed(fingerprint, startedAt));
+        }
+    }
+
+    // Entries are roughly oldest first (in the order they completed), so the sweep stops at the first
+    // live one; isCompleted checks the age of what it finds as well
+    private void forgetExpired() {
+        long now = System.nanoTime();
+        synchronized (completed) {
+            Iterator<Completed> it = completed.values().iterator();
+            while (it.hasNext() && expired(it.next(), now)) {
+                it.remove();
+            }
+        }
+    }
+
+    private boolean expired(Completed entry, long now) {
+        return now - entry.rememberedAt() >= retentionNanos;
+    }
+
+    private static void requireSameRequest(String stored, String fingerprint) {
+        if (!stored.equals(fingerprint)) {
+            throw new IllegalArgumentException("Idempotency key was already used for a different request.");
+        }
+    }
+
+    // --- Metrics ---
+
+    public long getMemoryReplayCount() {
+        return memoryReplays.sum();
+    }
+
+    public long getDatabaseReplayCount() {
+        return databaseReplays.sum();
+    }
+
+    public long getPurgedCount() {
+        return purged.sum();
+    }
+}
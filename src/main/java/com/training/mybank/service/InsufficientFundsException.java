@@ -0,0 +1,8 @@
+package com.training.mybank.service;
+
+// Thrown when a debit would take an account below zero. Nothing has been changed.
+public class InsufficientFundsException extends RuntimeException {
+    public InsufficientFundsException() {
+        super("Insufficient funds.");
+    }
+}
@@ -0,0 +1,475 @@
+package com.training.mybank.service;
+
+import com.training.mybank.config.AppConfig;
+import com.training.mybank.config.DatabaseConfig;
+import com.training.mybank.dao.AccountCache;
+import com.training.mybank.dao.AccountDAO;
+import com.training.mybank.dao.AccountNotFoundException;
+import com.training.mybank.dao.CachingAccountDAO;
+import com.training.mybank.dao.JournalCheckpointDAO;
+import com.training.mybank.dao.TransactionDAO;
+import com.training.mybank.journal.FsyncPolicy;
+import com.training.mybank.journal.Journal;
+import com.training.mybank.journal.JournalEvent;
+import com.training.mybank.model.Account;
+import com.training.mybank.model.LedgerEntry;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Journal mode for money movements: acknowledged once they are in the local write-ahead
+ * {@link Journal}, applied to accounts and transactions afterwards.
+ *
+ * Funds are checked against an in-memory balance per account, loaded from the database the
+ * first time the account is touched and updated under a per-account lock together with the
+ * append, so a movement is only journaled if it is valid at that point. The caller then waits
+ * for durability as the journal's {@link FsyncPolicy} defines it, outside the lock.
+ *
+ * A single applier thread drains the journal into the database in batches: every record runs
+ * under its own savepoint, the ledger rows go in as one JDBC batch, and the journal_checkpoints
+ * row moves in the same transaction, so after a crash each record is applied exactly once.
+ * Idempotency keys are claimed at that point too. Only durable records are applied, so the
+ * database never holds a movement the journal could lose. On startup the journal is recovered
+ * and drained before any request is served; if the applier stops on an unexpected error,
+ * movements are refused from then on.
+ *
+ * The in-memory balances are only correct if this process is the only writer of balances
+ * while journal mode is on. A record the database still rejects (insufficient funds, a key
+ * already used, an account that no longer exists) is logged and its effect on the in-memory
+ * balances is undone; only connection and transaction failures make the applier retry the
+ * batch. Reads from the database (history, balance as of) trail the acknowledged movements by
+ * the apply lag.
+ */
+public class JournalLedger extends LedgerEngine implements AutoCloseable {
+    private static final Logger log = Logger.getLogger(JournalLedger.class.getName());
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long MAX_BACKOFF_MILLIS = 5_000;
+    private static final int LOCK_STRIPES = 256;
+
+    private static JournalLedger shared;
+
+    private final Journal journal;
+    private final String journalId;
+    private final AccountDAO accountDAO;
+    private final AccountDAO databaseReads = new AccountDAO(); // uncached: balances are loaded exactly
+    private final TransactionDAO transactionDAO;
+    private final TransferEngine transferEngine;
+    private final IdempotencyGuard idempotencyGuard;
+    private final JournalCheckpointDAO checkpointDAO = new JournalCheckpointDAO();
+    private final int applyBatchSize;
+
+    private final Map<Integer, AccountView> views = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+
+    private final Thread applier;
+    private volatile boolean running = true;
+    private volatile Throwable applierFailure;
+    private volatile long appliedSeq;
+    private final Object appliedLock = new Object();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder applyFailures = new LongAdder();
+
+    // Balance in cents including journaled but not yet applied movements; guarded by the account's stripe
+    private static final class AccountView {
+        long balance;
+
+        AccountView(long balance) {
+            this.balance = balance;
+        }
+    }
+
+    private record Rejection(JournalEvent event, Exception reason) {
+    }
+
+    /**
+     * @param journal opened with a start sequence of at least this journal's checkpoint + 1
+     * @throws IllegalStateException if the journal ends before the checkpoint
+     */
+    public JournalLedger(Journal journal, String journalId, AccountDAO accountDAO, TransactionDAO transactionDAO,
+                         IdempotencyGuard idempotencyGuard, int applyBatchSize) throws SQLException {
+        if (applyBatchSize < 1) throw new IllegalArgumentException("applyBatchSize must be at least 1");
+        this.journal = journal;
+        this.journalId = journalId;
+        this.accountDAO = accountDAO;
+        this.transactionDAO = transactionDAO;
+        this.transferEngine = new TransferEngine(accountDAO, transactionDAO);
+        this.idempotencyGuard = idempotencyGuard;
+        this.applyBatchSize = applyBatchSize;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.appliedSeq = checkpointDAO.getAppliedSeq(journalId);
+        if (journal.getLastSeq() < appliedSeq) {
+            throw new IllegalStateException("Journal ends at record " + journal.getLastSeq()
+                    + ", before the database's checkpoint " + appliedSeq);
+        }
+        Journal.Cursor cursor = journal.cursor(appliedSeq + 1);
+        this.applier = new Thread(() -> runApplier(cursor), "journal-applier");
+        this.applier.setDaemon(true);
+        this.applier.start();
+    }
+
+    /**
+     * Returns the process-wide journal ledger if mybank.journal.enabled is true, otherwise null.
+     * The first call recovers the journal and applies everything in it before returning.
+     */
+    public static synchronized JournalLedger sharedFromConfig() {
+        if (!AppConfig.getBoolean("mybank.journal.enabled", false)) return null;
+        if (shared == null) {
+            String journalId = AppConfig.get("mybank.journal.id", "main");
+            try {
+                // The journal continues the sequence where the database says it left off, if it ends before
+                long checkpoint = new JournalCheckpointDAO().getAppliedSeq(journalId);
+                Journal journal = new Journal(Path.of(AppConfig.get("mybank.journal.dir", "journal")),
+                        AppConfig.getInt("mybank.journal.segment-size-mb", 64) << 20,
+                        FsyncPolicy.valueOf(AppConfig.get("mybank.journal.fsync", "GROUP").trim().toUpperCase(Locale.ROOT)),
+                        AppConfig.getLong("mybank.journal.fsync-interval-ms", 10),
+                        checkpoint + 1);
+                AccountDAO accountDAO = AppConfig.getBoolean("mybank.account-cache.enabled", true)
+                        ? new CachingAccountDAO(AccountCache.shared())
+                        : new AccountDAO();
+                JournalLedger ledger;
+                try {
+                    ledger = new JournalLedger(journal, journalId, accountDAO, new TransactionDAO(),
+                            IdempotencyGuard.shared(), AppConfig.getInt("mybank.journal.apply-batch-size", 500));
+                } catch (SQLException | RuntimeException e) {
+                    journal.close();
+                    throw e;
+                }
+                ledger.awaitApplied();
+                shared = ledger;
+            } catch (SQLException | IOException e) {
+                throw new IllegalStateException("Could not open the ledger journal", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while recovering the ledger journal", e);
+            }
+        }
+        return shared;
+    }
+
+    // --- Submitting ---
+
+    /**
+     * Checks the movement against the in-memory balances, journals it and waits until it is
+     * durable. Account 0 means none, as in {@link JournalEvent}; the idempotency fields may be null.
+     *
+     * @throws InsufficientFundsException if the source account cannot cover the amount
+     * @throws IllegalStateException       if the ledger is closed or its applier has stopped
+     */
+    @Override
+    void submit(int fromAccount, int toAccount, long amount, String userId, String key, String fingerprint) throws SQLException {
+        if (!running) throw new IllegalStateException("JournalLedger is closed.");
+        checkApplier();
+        long seq;
+        int first = fromAccount != 0 ? stripe(fromAccount) : -1;
+        int second = toAccount != 0 ? stripe(toAccount) : -1;
+        int low = Math.min(first, second);
+        int high = Math.max(first, second);
+        // Stripes are always locked in index order, so two transfers cannot deadlock
+        if (low >= 0) stripes[low].lock();
+        if (high != low) stripes[high].lock();
+        try {
+            AccountView source = fromAccount != 0 ? view(fromAccount) : null;
+            AccountView target = toAccount != 0 ? view(toAccount) : null;
+            if (source != null && source.balance < amount) throw new InsufficientFundsException();
+            seq = journal.append(new JournalEvent(0, fromAccount, toAccount, amount, userId, key, fingerprint));
+            if (source != null) source.balance -= amount;
+            if (target != null) target.balance += amount;
+        } finally {
+            if (high != low) stripes[high].unlock();
+            if (low >= 0) stripes[low].unlock();
+        }
+        submitted.increment();
+        LockSupport.unpark(applier);
+        journal.awaitDurable(seq);
+    }
+
+    /**
+     * The account's balance including journaled movements, or {@code databaseBalance} if the
+     * account has not been touched through the journal (then the database is current).
+     */
+    @Override
+    long balanceOf(int accountId, long databaseBalance) {
+        AccountView view = views.get(accountId);
+        if (view == null) return databaseBalance;
+        ReentrantLock lock = stripes[stripe(accountId)];
+        lock.lock();
+        try {
+            return view.balance;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller holds the account's stripe
+    private AccountView view(int accountId) throws SQLException {
+        AccountView view = views.get(accountId);
+        if (view == null) {
+            Account account = databaseReads.getAccountById(accountId);
+            if (account == null) throw new AccountNotFoundException(accountId);
+            view = new AccountView(account.balance());
+            views.put(accountId, view);
+        }
+        return view;
+    }
+
+    private static int stripe(int accountId) {
+        int h = accountId * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (LOCK_STRIPES - 1);
+    }
+
+    // --- Applying ---
+
+    /**
+     * Blocks until everything journaled before this call has been applied to the database.
+     *
+     * @throws IllegalStateException if the applier has stopped before getting there
+     */
+    public void awaitApplied() throws InterruptedException {
+        long target = journal.getLastSeq();
+        checkApplier();
+        synchronized (appliedLock) {
+            while (appliedSeq < target) {
+                checkApplier();
+                if (!applier.isAlive()) throw new IllegalStateException("Journal applier has stopped.");
+                appliedLock.wait(100);
+            }
+        }
+    }
+
+    private void checkApplier() {
+        Throwable failure = applierFailure;
+        if (failure != null) throw new IllegalStateException("Journal applier has stopped.", failure);
+    }
+
+    private void runApplier(Journal.Cursor cursor) {
+        try {
+            drain(cursor);
+        } catch (Throwable e) {
+            applierFailure = e;
+            log.log(Level.SEVERE, "Journal applier stopped at record " + (appliedSeq + 1)
+                    + "; movements are refused until restart", e);
+            synchronized (appliedLock) {
+                appliedLock.notifyAll();
+            }
+        }
+    }
+
+    private void drain(Journal.Cursor cursor) {
+        List<JournalEvent> batch = new ArrayList<>(applyBatchSize);
+        long backoffMillis = 0;
+        // At shutdown, records not yet durable are forced by the journal's close and applied on the next start
+        while (running || appliedSeq < journal.getDurableSeq()) {
+            if (batch.isEmpty()) {
+                JournalEvent event;
+                while (batch.size() < applyBatchSize && (event = cursor.next()) != null) {
+                    batch.add(event);
+                }
+                if (batch.isEmpty()) {
+                    LockSupport.parkNanos(this, IDLE_NANOS);
+                    continue;
+                }
+            }
+            try {
+                applyBatch(batch);
+                batch.clear();
+                backoffMillis = 0;
+            } catch (SQLException | RuntimeException e) {
+                // A connection or transaction failure: the batch stays in memory and is retried as a
+                // whole; nothing of it was committed
+                applyFailures.increment();
+                if (!running) {
+                    log.log(Level.WARNING, "Journal records from " + batch.get(0).seq()
+                            + " left unapplied at shutdown; they are applied on the next start", e);
+                    return;
+                }
+                backoffMillis = Math.min(MAX_BACKOFF_MILLIS, Math.max(10, backoffMillis * 2));
+                log.log(Level.WARNING, "Applying journal records " + batch.get(0).seq() + ".."
+                        + batch.get(batch.size() - 1).seq() + " failed; retrying in " + backoffMillis + " ms", e);
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(backoffMillis));
+            }
+        }
+    }
+
+    private void applyBatch(List<JournalEvent> batch) throws SQLException {
+        List<Rejection> rejections = new ArrayList<>();
+        List<LedgerEntry> entries = new ArrayList<>(batch.size());
+        long lastSeq = batch.get(batch.size() - 1).seq();
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try {
+                conn.setAutoCommit(false);
+                for (JournalEvent event : batch) {
+                    List<LedgerEntry> eventEntries = new ArrayList<>(1);
+                    Savepoint savepoint = conn.setSavepoint();
+                    try {
+                        apply(conn, event, (from, to, amount) -> eventEntries.add(new LedgerEntry(from, to, amount)));
+                        entries.addAll(eventEntries);
+                    } catch (InsufficientFundsException | IdempotencyGuard.DuplicateRequestException e) {
+                        conn.rollback(savepoint);
+                        rejections.add(new Rejection(event, e));
+                    } catch (SQLException e) {
+                        // Only a failure of the connection or the transaction is worth retrying the batch for;
+                        // anything else (e.g. the account no longer exists) would fail the same way every time
+                        if (isTransient(e)) throw e;
+                        conn.rollback(savepoint);
+                        rejections.add(new Rejection(event, e));
+                    }
+                }
+                transactionDAO.recordTransactions(conn, entries);
+                checkpointDAO.saveAppliedSeq(conn, journalId, lastSeq);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                for (JournalEvent event : batch) {
+                    if (event.fromAccount() != 0) accountDAO.afterCommit(event.fromAccount());
+                    if (event.toAccount() != 0) accountDAO.afterCommit(event.toAccount());
+                }
+            }
+        }
+
+        for (Rejection rejection : rejections) {
+            undo(rejection.event());
+            log.warning("Journal record " + rejection.event().seq() + " rejected by the database ("
+                    + rejection.reason().getMessage() + "); in-memory balances corrected");
+        }
+        applied.add(batch.size() - rejections.size());
+        rejected.add(rejections.size());
+        synchronized (appliedLock) {
+            appliedSeq = lastSeq;
+            appliedLock.notifyAll();
+        }
+        if (journal.getSegmentCount() > 1) {
+            try {
+                journal.deleteThrough(lastSeq);
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Could not delete applied journal segments", e);
+            }
+        }
+    }
+
+    // Connection loss, rollbacks the database forced (serialization failure, deadlock), timeouts,
+    // lack of resources and operator intervention (e.g. a restart)
+    static boolean isTransient(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransientException || t instanceof SQLRecoverableException
+                    || t instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+            if (t instanceof SQLException sql && sql.getSQLState() != null) {
+                String state = sql.getSQLState();
+                if (state.startsWith("08") || state.startsWith("40") || state.startsWith("53")
+                        || state.startsWith("57") || state.startsWith("HYT")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void apply(Connection conn, JournalEvent event, LedgerWriter ledger) throws SQLException {
+        if (event.idempotencyKey() != null) {
+            idempotencyGuard.claim(conn, event.userId(), event.idempotencyKey(), event.fingerprint());
+        }
+        int from = event.fromAccount();
+        int to = event.toAccount();
+        if (from == 0) {
+            accountDAO.updateBalance(conn, to, event.amount());
+            ledger.record(null, to, event.amount());
+        } else if (to == 0) {
+            if (!accountDAO.debitIfSufficient(conn, from, event.amount())) throw new InsufficientFundsException();
+            ledger.record(from, null, event.amount());
+        } else {
+            transferEngine.apply(conn, ledger, from, to, event.amount());
+        }
+    }
+
+    // Reverses a rejected record's effect on the in-memory balances
+    private void undo(JournalEvent event) {
+        adjust(event.fromAccount(), event.amount());
+        adjust(event.toAccount(), -event.amount());
+    }
+
+    private void adjust(int accountId, long delta) {
+        if (accountId == 0) return;
+        ReentrantLock lock = stripes[stripe(accountId)];
+        lock.lock();
+        try {
+            AccountView view = views.get(accountId);
+            if (view != null) view.balance += delta;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // --- Metrics ---
+
+    public Journal getJournal() {
+        return journal;
+    }
+
+    public long getAppliedSeq() {
+        return appliedSeq;
+    }
+
+    /** Records journaled but not yet applied to the database. */
+    public long getApplyLag() {
+        return journal.getLastSeq() - appliedSeq;
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    public long getAppliedCount() {
+        return applied.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getApplyFailureCount() {
+        return applyFailures.sum();
+    }
+
+    /**
+     * Stops accepting movements, applies what the journal durably holds (unless the database is
+     * unavailable) and closes the journal.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        LockSupport.unpark(applier);
+        try {
+            applier.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+    }
+}
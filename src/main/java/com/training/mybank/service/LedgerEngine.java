@@ -0,0 +1,28 @@
+package com.training.mybank.service;
+
+import java.sql.SQLException;
+
+/**
+ * A way of moving money that answers from in-memory balances and writes to the database
+ * afterwards, instead of running every movement as its own JDBC transaction: {@link JournalLedger}
+ * or {@link ShardedLedger}. {@link BankingService} checks the arguments and the caller's ownership
+ * before handing a movement over, and overlays {@link #balanceOf} on the balances it reads.
+ */
+abstract class LedgerEngine {
+
+    /**
+     * Applies a deposit ({@code fromAccount == 0}), withdrawal ({@code toAccount == 0}) or transfer
+     * and returns once the engine has accepted it. The idempotency fields may be null; the engine
+     * claims the key when it writes the movement.
+     *
+     * @throws InsufficientFundsException if the source account cannot cover the amount
+     */
+    abstract void submit(int fromAccount, int toAccount, long amount, String userId, String key, String fingerprint)
+            throws SQLException;
+
+    /**
+     * The account's balance including movements not yet in the database, or {@code databaseBalance}
+     * if the engine holds nothing newer for the account.
+     */
+    abstract long balanceOf(int accountId, long databaseBalance) throws SQLException;
+}
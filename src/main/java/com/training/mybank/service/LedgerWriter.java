@@ -0,0 +1,12 @@
+package com.training.mybank.service;
+
+import java.sql.SQLException;
+
+/**
+ * Receives the ledger rows produced by a {@link TransactionWork}. Depending on how the work
+ * is run, rows are inserted immediately or batched with other callers' rows.
+ */
+@FunctionalInterface
+public interface LedgerWriter {
+    void record(Integer fromAcc, Integer toAcc, long amount) throws SQLException;
+}
@@ -0,0 +1,508 @@
+package com.training.mybank.service;
+
+import com.training.mybank.config.AppConfig;
+import com.training.mybank.config.DatabaseConfig;
+import com.training.mybank.dao.AccountCache;
+import com.training.mybank.dao.AccountDAO;
+import com.training.mybank.dao.AccountNotFoundException;
+import com.training.mybank.dao.CachingAccountDAO;
+import com.training.mybank.dao.TransactionDAO;
+import com.training.mybank.model.Account;
+import com.training.mybank.model.LedgerEntry;
+import com.training.mybank.util.IntLongHashMap;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sharded mode for money movements: balances are held in memory, partitioned by account across
+ * single-threaded shards, and written to accounts and transactions in the background.
+ *
+ * Each shard owns the balances of its accounts outright. Only its thread reads or changes them,
+ * so checking funds and moving money takes no lock; callers hand movements to the shard through
+ * a lock-free queue and wait for the answer. All balances are loaded when the engine starts, and
+ * accounts opened later are read from the database the first time their shard sees them.
+ *
+ * A transfer between accounts of two shards is a two-phase handoff. The source shard reserves
+ * the amount by debiting it in memory and passes the transfer on. The target shard credits it,
+ * or refuses if the account does not exist. The source shard then commits the debit or releases
+ * the reservation. No shard ever waits for another, so shards cannot deadlock.
+ *
+ * Every shard has a writer thread that persists the shard's changes in order, in batches. Each
+ * batch is one transaction with the net balance change per account, the ledger rows and the
+ * idempotency keys. An account is only ever written by its own shard's writer, in the order the
+ * shard changed it, so writers never contend for rows and database balances never go negative.
+ * The debit and ledger row of a cross-shard transfer are written by the source shard, and the
+ * credit by the target shard; a crash between the two leaves the target account off by the
+ * amount, which the ledger reconciliation reports.
+ *
+ * Movements are acknowledged once applied in memory, before they reach the database, so a crash
+ * loses what was not yet written (see {@link #getPersistLag}); {@link #close} writes everything
+ * first. As with {@link JournalLedger}, the in-memory balances are only correct if this process
+ * is the only writer of balances while sharded mode is on.
+ */
+public class ShardedLedger extends LedgerEngine implements AutoCloseable {
+    private static final Logger log = Logger.getLogger(ShardedLedger.class.getName());
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long MAX_BACKOFF_MILLIS = 5_000;
+
+    private static ShardedLedger shared;
+
+    private final Shard[] shards;
+    private final AccountDAO accountDAO;
+    private final AccountDAO databaseReads = new AccountDAO(); // uncached: balances are loaded exactly
+    private final TransactionDAO transactionDAO;
+    private final IdempotencyGuard idempotencyGuard;
+    private final int persistBatchSize;
+
+    private volatile boolean running = true;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder crossShard = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder persisted = new LongAdder();
+    private final LongAdder persistFailures = new LongAdder();
+
+    // --- Messages between callers, shards and writers ---
+
+    private interface Command {
+    }
+
+    // A movement from the caller; first handled by the source shard (the target shard for a deposit)
+    private static final class Movement implements Command {
+        final int from;
+        final int to;
+        final long amount;
+        final String userId;
+        final String key;
+        final String fingerprint;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Movement(int from, int to, long amount, String userId, String key, String fingerprint) {
+            this.from = from;
+            this.to = to;
+            this.amount = amount;
+            this.userId = userId;
+            this.key = key;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    // Phase two of a cross-shard transfer, at the target shard
+    private record Credit(Movement movement) implements Command {
+    }
+
+    // Phase three, back at the source shard: commit the reserved debit, or release it if error is set
+    private record Settle(Movement movement, Exception error) implements Command {
+    }
+
+    private record Read(int accountId, long databaseBalance, CompletableFuture<Long> result) implements Command {
+    }
+
+    // One balance change for the writer; the ledger row and key travel with exactly one change per movement
+    private record Change(int accountId, long delta, LedgerEntry entry, Movement movement) {
+    }
+
+    public ShardedLedger(int shardCount, AccountDAO accountDAO, TransactionDAO transactionDAO,
+                         IdempotencyGuard idempotencyGuard, int persistBatchSize, int fetchSize) throws SQLException {
+        if (shardCount < 1) throw new IllegalArgumentException("shardCount must be at least 1");
+        if (persistBatchSize < 1) throw new IllegalArgumentException("persistBatchSize must be at least 1");
+        this.accountDAO = accountDAO;
+        this.transactionDAO = transactionDAO;
+        this.idempotencyGuard = idempotencyGuard;
+        this.persistBatchSize = persistBatchSize;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+        // Loaded before the threads start, which publishes the maps to them
+        databaseReads.forEachBalance(fetchSize, (accountId, balance) -> shardOf(accountId).balances.put(accountId, balance));
+        for (Shard shard : shards) {
+            shard.start();
+        }
+    }
+
+    /**
+     * Returns the process-wide sharded ledger if mybank.sharded.enabled is true, otherwise null.
+     * The first call loads every balance and registers a shutdown hook that writes out what is
+     * still pending when the JVM exits.
+     */
+    public static synchronized ShardedLedger sharedFromConfig() {
+        if (!AppConfig.getBoolean("mybank.sharded.enabled", false)) return null;
+        if (shared == null) {
+            int shardCount = AppConfig.getInt("mybank.sharded.shards", 0);
+            if (shardCount <= 0) shardCount = Runtime.getRuntime().availableProcessors();
+            AccountDAO accountDAO = AppConfig.getBoolean("mybank.account-cache.enabled", true)
+                    ? new CachingAccountDAO(AccountCache.shared())
+                    : new AccountDAO();
+            try {
+                shared = new ShardedLedger(shardCount, accountDAO, new TransactionDAO(), IdempotencyGuard.shared(),
+                        AppConfig.getInt("mybank.sharded.persist-batch-size", 500),
+                        AppConfig.getInt("mybank.reconcile.fetch-size", 10_000));
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not load balances for the sharded ledger", e);
+            }
+            ShardedLedger ledger = shared;
+            Runtime.getRuntime().addShutdownHook(new Thread(ledger::close, "sharded-ledger-shutdown"));
+        }
+        return shared;
+    }
+
+    private Shard shardOf(int accountId) {
+        int h = accountId * 0x9E3779B9;
+        return shards[Math.floorMod(h ^ (h >>> 16), shards.length)];
+    }
+
+    // --- Submitting ---
+
+    /**
+     * Hands the movement to its shard and waits until it is applied in memory. Account 0 means
+     * none; the idempotency fields may be null.
+     *
+     * @throws InsufficientFundsException if the source account cannot cover the amount
+     */
+    @Override
+    void submit(int fromAccount, int toAccount, long amount, String userId, String key, String fingerprint) throws SQLException {
+        // Counted before the check, so close() sees every movement that got past it
+        inFlight.incrementAndGet();
+        try {
+            if (!running) throw new IllegalStateException("ShardedLedger is closed.");
+            Movement movement = new Movement(fromAccount, toAccount, amount, userId, key, fingerprint);
+            shardOf(fromAccount != 0 ? fromAccount : toAccount).send(movement);
+            submitted.increment();
+            await(movement.done);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * The account's balance as its shard holds it, or {@code databaseBalance} if the shard has
+     * not loaded the account yet (then nothing has changed it since it was opened) or the
+     * ledger is closed.
+     */
+    @Override
+    long balanceOf(int accountId, long databaseBalance) throws SQLException {
+        inFlight.incrementAndGet();
+        try {
+            if (!running) return databaseBalance; // closed: everything has been written
+            Read read = new Read(accountId, databaseBalance, new CompletableFuture<>());
+            shardOf(accountId).send(read);
+            return await(read.result());
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws SQLException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sql) throw sql;
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            throw e;
+        }
+    }
+
+    /**
+     * Blocks until every change applied before this call has been written to the database.
+     */
+    public void awaitPersisted() throws InterruptedException {
+        for (Shard shard : shards) {
+            long target = shard.produced;
+            while (shard.written < target) {
+                if (!shard.writer.isAlive()) throw new IllegalStateException("Sharded ledger writer has stopped.");
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    // --- Shards ---
+
+    private final class Shard {
+        final int index;
+        final IntLongHashMap balances = new IntLongHashMap(1024); // owned by the shard thread
+        final ConcurrentLinkedQueue<Command> inbox = new ConcurrentLinkedQueue<>();
+        final ConcurrentLinkedQueue<Change> outbox = new ConcurrentLinkedQueue<>();
+        final Thread thread;
+        final Thread writer;
+        volatile boolean sleeping;
+        volatile boolean writerSleeping;
+        volatile boolean stopped;
+        volatile long produced; // changes queued for the writer; written by the shard thread only
+        volatile long written;  // changes committed; written by the writer thread only
+
+        Shard(int index) {
+            this.index = index;
+            this.thread = new Thread(this::run, "ledger-shard-" + index);
+            this.thread.setDaemon(true);
+            this.writer = new Thread(this::runWriter, "ledger-shard-writer-" + index);
+            this.writer.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+            writer.start();
+        }
+
+        void send(Command command) {
+            inbox.offer(command);
+            // The shard sets sleeping before its last look at the queue, so one side always sees the other
+            if (sleeping) LockSupport.unpark(thread);
+        }
+
+        private void run() {
+            while (true) {
+                Command command = inbox.poll();
+                if (command == null) {
+                    if (stopped) return;
+                    sleeping = true;
+                    if (inbox.isEmpty()) LockSupport.parkNanos(this, IDLE_NANOS);
+                    sleeping = false;
+                    continue;
+                }
+                try {
+                    dispatch(command);
+                } catch (RuntimeException e) {
+                    log.log(Level.SEVERE, "Shard " + index + " failed to handle a command", e);
+                }
+            }
+        }
+
+        private void dispatch(Command command) {
+            if (command instanceof Movement movement) {
+                apply(movement);
+            } else if (command instanceof Credit credit) {
+                credit(credit.movement());
+            } else if (command instanceof Settle settle) {
+                settle(settle.movement(), settle.error());
+            } else if (command instanceof Read read) {
+                read.result().complete(balances.containsKey(read.accountId())
+                        ? balances.get(read.accountId()) : read.databaseBalance());
+            }
+        }
+
+        private void apply(Movement m) {
+            try {
+                if (m.from == 0) {
+                    load(m.to);
+                    balances.addTo(m.to, m.amount);
+                    queue(new Change(m.to, m.amount, new LedgerEntry(null, m.to, m.amount), m));
+                    m.done.complete(null);
+                    return;
+                }
+                load(m.from);
+                if (balances.get(m.from) < m.amount) {
+                    rejected.increment();
+                    m.done.completeExceptionally(new InsufficientFundsException());
+                    return;
+                }
+                if (m.to == 0) {
+                    balances.addTo(m.from, -m.amount);
+                    queue(new Change(m.from, -m.amount, new LedgerEntry(m.from, null, m.amount), m));
+                    m.done.complete(null);
+                } else if (shardOf(m.to) == this) {
+                    load(m.to);
+                    balances.addTo(m.from, -m.amount);
+                    balances.addTo(m.to, m.amount);
+                    queue(new Change(m.from, -m.amount, new LedgerEntry(m.from, m.to, m.amount), m));
+                    queue(new Change(m.to, m.amount, null, null));
+                    m.done.complete(null);
+                } else {
+                    // Phase one: reserve the amount, so later movements here cannot spend it
+                    balances.addTo(m.from, -m.amount);
+                    crossShard.increment();
+                    shardOf(m.to).send(new Credit(m));
+                }
+            } catch (SQLException | RuntimeException e) {
+                m.done.completeExceptionally(e);
+            }
+        }
+
+        private void credit(Movement m) {
+            Exception error = null;
+            try {
+                load(m.to);
+                balances.addTo(m.to, m.amount);
+                queue(new Change(m.to, m.amount, null, null));
+            } catch (SQLException | RuntimeException e) {
+                error = e;
+            }
+            shardOf(m.from).send(new Settle(m, error));
+        }
+
+        private void settle(Movement m, Exception error) {
+            if (error != null) {
+                balances.addTo(m.from, m.amount);
+                m.done.completeExceptionally(error);
+            } else {
+                queue(new Change(m.from, -m.amount, new LedgerEntry(m.from, m.to, m.amount), m));
+                m.done.complete(null);
+            }
+        }
+
+        // Reads an account opened after startup; throws if it does not exist
+        private void load(int accountId) throws SQLException {
+            if (balances.containsKey(accountId)) return;
+            Account account = databaseReads.getAccountById(accountId);
+            if (account == null) throw new AccountNotFoundException(accountId);
+            balances.put(accountId, account.balance());
+        }
+
+        private void queue(Change change) {
+            outbox.offer(change);
+            produced++;
+            if (writerSleeping) LockSupport.unpark(writer);
+        }
+
+        // --- Writer ---
+
+        private void runWriter() {
+            List<Change> batch = new ArrayList<>(persistBatchSize);
+            long backoffMillis = 0;
+            while (true) {
+                if (batch.isEmpty()) {
+                    Change change;
+                    while (batch.size() < persistBatchSize && (change = outbox.poll()) != null) {
+                        batch.add(change);
+                    }
+                    if (batch.isEmpty()) {
+                        if (stopped && !thread.isAlive() && outbox.isEmpty()) return;
+                        writerSleeping = true;
+                        if (outbox.isEmpty()) LockSupport.parkNanos(this, IDLE_NANOS);
+                        writerSleeping = false;
+                        continue;
+                    }
+                }
+                try {
+                    persist(batch);
+                    written += batch.size();
+                    persisted.add(batch.size());
+                    batch.clear();
+                    backoffMillis = 0;
+                } catch (SQLException | RuntimeException e) {
+                    // The batch stays in memory and is retried as a whole; nothing of it was committed
+                    persistFailures.increment();
+                    if (stopped) {
+                        log.log(Level.SEVERE, "Shard " + index + " could not write " + (batch.size() + outbox.size())
+                                + " balance changes at shutdown; the database is behind the acknowledged movements", e);
+                        return;
+                    }
+                    backoffMillis = Math.min(MAX_BACKOFF_MILLIS, Math.max(10, backoffMillis * 2));
+                    log.log(Level.WARNING, "Shard " + index + " failed to write " + batch.size()
+                            + " balance changes; retrying in " + backoffMillis + " ms", e);
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(backoffMillis));
+                }
+            }
+        }
+
+        private void persist(List<Change> batch) throws SQLException {
+            IntLongHashMap deltas = new IntLongHashMap(batch.size());
+            List<LedgerEntry> entries = new ArrayList<>(batch.size());
+            try (Connection conn = DatabaseConfig.getConnection()) {
+                try {
+                    conn.setAutoCommit(false);
+                    for (Change change : batch) {
+                        deltas.addTo(change.accountId(), change.delta());
+                        if (change.entry() != null) entries.add(change.entry());
+                        if (change.movement() != null && change.movement().key != null) claim(conn, change.movement());
+                    }
+                    accountDAO.adjustBalances(conn, deltas);
+                    transactionDAO.recordTransactions(conn, entries);
+                    conn.commit();
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    deltas.forEach((accountId, delta) -> accountDAO.afterCommit(accountId));
+                }
+            }
+        }
+
+        // The key was checked before the movement was accepted, so a clash means another writer used it
+        private void claim(Connection conn, Movement m) throws SQLException {
+            Savepoint savepoint = conn.setSavepoint();
+            try {
+                idempotencyGuard.claim(conn, m.userId, m.key, m.fingerprint);
+            } catch (IdempotencyGuard.DuplicateRequestException e) {
+                conn.rollback(savepoint);
+                log.severe("Idempotency key of an acknowledged movement was already claimed in the database;"
+                        + " the movement is kept. Is another process writing balances?");
+            }
+        }
+    }
+
+    // --- Metrics ---
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    public long getCrossShardCount() {
+        return crossShard.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getPersistedCount() {
+        return persisted.sum();
+    }
+
+    public long getPersistFailureCount() {
+        return persistFailures.sum();
+    }
+
+    /** Balance changes applied in memory but not yet written to the database. */
+    public long getPersistLag() {
+        long lag = 0;
+        for (Shard shard : shards) {
+            lag += shard.produced - shard.written;
+        }
+        return lag;
+    }
+
+    /**
+     * Stops accepting movements, waits for those in progress, writes every pending change
+     * (unless the database is unavailable) and stops the shard threads.
+     */
+    @Override
+    public void close() {
+        running = false;
+        while (inFlight.get() > 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        for (Shard shard : shards) {
+            shard.stopped = true;
+            LockSupport.unpark(shard.thread);
+        }
+        try {
+            for (Shard shard : shards) {
+                shard.thread.join();
+                LockSupport.unpark(shard.writer);
+                shard.writer.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.training.mybank.service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * One money movement: balance updates on {@code conn} plus its ledger rows.
+ * The caller owns the transaction; the work must not commit, roll back or close the connection.
+ */
+@FunctionalInterface
+public interface TransactionWork {
+    void execute(Connection conn, LedgerWriter ledger) throws SQLException;
+}
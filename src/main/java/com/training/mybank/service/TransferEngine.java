@@ -0,0 +1,172 @@
+package com.training.mybank.service;
+
+import com.training.mybank.config.AppConfig;
+import com.training.mybank.config.DatabaseConfig;
+import com.training.mybank.dao.AccountDAO;
+import com.training.mybank.dao.TransactionDAO;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Moves money between two accounts in one database transaction.
+ *
+ * Row locks are always taken in ascending account_id order, whichever direction
+ * the money flows, so two transfers over the same pair of accounts cannot wait on
+ * each other in a cycle. Serialization failures and deadlocks reported by the
+ * database (for example with other writers that do not follow this order) are
+ * retried with bounded, jittered exponential backoff.
+ */
+public class TransferEngine {
+    static final String SERIALIZATION_FAILURE = "40001";
+    static final String DEADLOCK_DETECTED = "40P01";
+
+    private final AccountDAO accountDAO;
+    private final TransactionDAO transactionDAO;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    // Process-wide: every engine (each service's, the journal's, the importer's) counts into the same totals
+    private static final LongAdder transfers = new LongAdder();
+    private static final LongAdder retries = new LongAdder();
+    private static final LongAdder deadlocks = new LongAdder();
+    private static final LongAdder serializationFailures = new LongAdder();
+    private static final LongAdder exhausted = new LongAdder();
+
+    public TransferEngine(AccountDAO accountDAO, TransactionDAO transactionDAO) {
+        this(accountDAO, transactionDAO,
+                AppConfig.getInt("mybank.transfer.max-attempts", 5),
+                AppConfig.getLong("mybank.transfer.backoff-initial-ms", 5),
+                AppConfig.getLong("mybank.transfer.backoff-max-ms", 200));
+    }
+
+    public TransferEngine(AccountDAO accountDAO, TransactionDAO transactionDAO,
+                          int maxAttempts, long initialBackoffMillis, long maxBackoffMillis) {
+        if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be at least 1");
+        this.accountDAO = accountDAO;
+        this.transactionDAO = transactionDAO;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public void transfer(int fromAccId, int toAccId, long amount) throws SQLException {
+        transfer(fromAccId, toAccId, amount, null);
+    }
+
+    /**
+     * Like {@link #transfer(int, int, long)}, but runs {@code guard} first in the same
+     * transaction, on every attempt. A guard that throws rolls the transfer back.
+     */
+    public void transfer(int fromAccId, int toAccId, long amount, TransactionWork guard) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transferOnce(fromAccId, toAccId, amount, guard);
+                transfers.increment();
+                return;
+            } catch (SQLException e) {
+                String state = retryableState(e);
+                if (state == null) throw e;
+
+                if (DEADLOCK_DETECTED.equals(state)) deadlocks.increment();
+                else serializationFailures.increment();
+
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    throw e;
+                }
+                retries.increment();
+                backoff(attempt, e);
+            }
+        }
+    }
+
+    private void transferOnce(int fromAccId, int toAccId, long amount, TransactionWork guard) throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try {
+                conn.setAutoCommit(false);
+                LedgerWriter ledger = (from, to, amt) -> transactionDAO.recordTransaction(conn, from, to, amt);
+                if (guard != null) guard.execute(conn, ledger);
+                apply(conn, ledger, fromAccId, toAccId, amount);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                accountDAO.afterCommit(fromAccId);
+                accountDAO.afterCommit(toAccId);
+            }
+        }
+    }
+
+    /**
+     * The transfer itself, inside a transaction the caller owns.
+     */
+    public void apply(Connection conn, LedgerWriter ledger, int fromAccId, int toAccId, long amount) throws SQLException {
+        // Canonical lock order: the lower account_id is always updated first
+        if (fromAccId <= toAccId) {
+            debit(conn, fromAccId, amount);
+            accountDAO.updateBalance(conn, toAccId, amount);
+        } else {
+            accountDAO.updateBalance(conn, toAccId, amount);
+            debit(conn, fromAccId, amount);
+        }
+        ledger.record(fromAccId, toAccId, amount);
+    }
+
+    private void debit(Connection conn, int accountId, long amount) throws SQLException {
+        if (!accountDAO.debitIfSufficient(conn, accountId, amount)) {
+            throw new InsufficientFundsException();
+        }
+    }
+
+    // Full-jitter exponential backoff: sleep a random time up to min(max, initial * 2^(attempt-1))
+    private void backoff(int attempt, SQLException cause) throws SQLException {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    // Returns the SQLState if this failure is worth retrying, otherwise null
+    static String retryableState(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql) {
+                String state = sql.getSQLState();
+                if (SERIALIZATION_FAILURE.equals(state) || DEADLOCK_DETECTED.equals(state)) {
+                    return state;
+                }
+            }
+        }
+        return null;
+    }
+
+    // --- Metrics (all engines in the process together) ---
+
+    public static long getTransferCount() {
+        return transfers.sum();
+    }
+
+    public static long getRetryCount() {
+        return retries.sum();
+    }
+
+    public static long getDeadlockCount() {
+        return deadlocks.sum();
+    }
+
+    public static long getSerializationFailureCount() {
+        return serializationFailures.sum();
+    }
+
+    /** Transfers that still failed after the last allowed attempt. */
+    public static long getExhaustedCount() {
+        return exhausted.sum();
+    }
+}
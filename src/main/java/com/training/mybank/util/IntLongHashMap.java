@@ -0,0 +1,139 @@
+package com.training.mybank.util;
+
+import java.util.Arrays;
+
+/**
+ * An int to long hash map that stores keys and values in primitive arrays, so counting or
+ * summing over millions of rows creates no boxed Integer/Long objects and no entry objects.
+ *
+ * Open addressing with linear probing; capacity is a power of two and doubles at 50% load.
+ * Absent keys read as 0. Not thread-safe: give each worker its own map and {@link #addAll}
+ * them together at the end.
+ */
+public final class IntLongHashMap {
+    private static final int FREE_KEY = 0;
+
+    private int[] keys;
+    private long[] values;
+    private int size;
+    private int mask;
+
+    // Key 0 marks a free slot, so its entry is kept outside the arrays
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(int key, long value);
+    }
+
+    public IntLongHashMap() {
+        this(16);
+    }
+
+    public IntLongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        keys = new int[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    public int size() {
+        return size + (hasZeroKey ? 1 : 0);
+    }
+
+    public boolean containsKey(int key) {
+        if (key == FREE_KEY) return hasZeroKey;
+        return keys[slot(key)] == key;
+    }
+
+    public long get(int key) {
+        if (key == FREE_KEY) return zeroValue;
+        int i = slot(key);
+        return keys[i] == key ? values[i] : 0L;
+    }
+
+    public void put(int key, long value) {
+        if (key == FREE_KEY) {
+            hasZeroKey = true;
+            zeroValue = value;
+            return;
+        }
+        int i = slot(key);
+        if (keys[i] == key) {
+            values[i] = value;
+        } else {
+            insert(i, key, value);
+        }
+    }
+
+    /** Adds {@code delta} to the key's value (0 if absent) and returns the new value. */
+    public long addTo(int key, long delta) {
+        if (key == FREE_KEY) {
+            hasZeroKey = true;
+            return zeroValue += delta;
+        }
+        int i = slot(key);
+        if (keys[i] == key) {
+            return values[i] += delta;
+        }
+        insert(i, key, delta);
+        return delta;
+    }
+
+    /** Adds every entry of {@code other} to this map. */
+    public void addAll(IntLongHashMap other) {
+        other.forEach(this::addTo);
+    }
+
+    public void forEach(EntryConsumer consumer) {
+        if (hasZeroKey) consumer.accept(FREE_KEY, zeroValue);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE_KEY) consumer.accept(keys[i], values[i]);
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE_KEY);
+        Arrays.fill(values, 0L);
+        size = 0;
+        hasZeroKey = false;
+        zeroValue = 0;
+    }
+
+    // The slot holding the key, or the free slot where it would go
+    private int slot(int key) {
+        int i = mix(key) & mask;
+        while (keys[i] != FREE_KEY && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void insert(int freeSlot, int key, long value) {
+        keys[freeSlot] = key;
+        values[freeSlot] = value;
+        if (++size > keys.length >>> 1) rehash(keys.length << 1);
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new int[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE_KEY) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    // Sequential ids would otherwise fill runs of adjacent slots
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
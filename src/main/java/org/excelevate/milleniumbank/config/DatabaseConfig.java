@@ -1,38 +1,17 @@
 package org.excelevate.milleniumbank.config;
 
-import com.zaxxer.hikari.HikariConfig;
-import com.zaxxer.hikari.HikariDataSource;
-
 import java.sql.Connection;
 import java.sql.SQLException;
 
+/**
+ * Connections for the legacy app, from the same pool and settings as
+ * {@link com.training.mybank.config.DatabaseConfig} (AppConfig overrides, connection-init-sql
+ * session time zone, pool name), so both apps see the database the same way.
+ */
 public class DatabaseConfig {
-    private static final String URL = "jdbc:postgresql://localhost:5432/mybankdb?currentSchema=mybank";
-    private static final String USER = "postgres";
-    private static final String PASS = "password";
-    private static HikariDataSource dataSource;
-    static {
-        HikariConfig config = new HikariConfig();
-        config.setJdbcUrl("jdbc:postgresql://localhost:5432/mybankdb?currentSchema=mybank");
-        config.setUsername("postgres");
-        config.setPassword("password");
-        // =======================================
-
-        config.setMaximumPoolSize(2);
-        config.setMinimumIdle(2);
-        config.setConnectionTimeout(30_000);
-        config.setIdleTimeout(600_000);
-        config.setMaxLifetime(1_800_000);
-
-        dataSource = new HikariDataSource(config);
-    }
-
-    private static Connection connection = null;
 
+    // Borrows a pooled connection; closing it returns the connection to the pool.
     public static Connection getConnection() throws SQLException {
-        if (connection ==null) {
-            connection = dataSource.getConnection();
-        }
-        return connection;
+        return com.training.mybank.config.DatabaseConfig.getConnection();
     }
 }
@@ -11,7 +11,7 @@ import java.sql.SQLException;
 public class UserDAO {
 
     public User getUserById(String userId) throws SQLException {
-        String sql = "SELECT * FROM users WHERE user_id = ?";
+        String sql = "SELECT user_id, password FROM users WHERE user_id = ?";
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
@@ -1,7 +1,6 @@
 package org.excelevate.milleniumbank.service;
 
 public class BankingService {
-    @SYZSdfasdf
     LoginService loginSerice;
     AccountService accountService;
 
@@ -1,9 +1,10 @@
 package org.excelevate.milleniumbank.service;
 
+import com.training.mybank.security.Authenticator;
+import com.training.mybank.security.LoginThrottledException;
 import lombok.extern.java.Log;
 import org.excelevate.milleniumbank.dao.UserDAO;
 import org.excelevate.milleniumbank.exception.AuthenticationException;
-import org.excelevate.milleniumbank.model.User;
 
 import java.sql.SQLException;
 import java.util.Scanner;
@@ -14,6 +15,8 @@ public class LoginServiceImpl implements LoginService {
     static Scanner scanner = new Scanner(System.in);
     boolean loggedIn = false;
     UserDAO userDAO;
+    // The same login path as the main app: configured throttling, dummy hash for unknown users, rehashing
+    Authenticator authenticator = Authenticator.shared();
 
 
 
@@ -44,6 +47,8 @@ public class LoginServiceImpl implements LoginService {
                     } else {
                         System.out.println("Invalid credentials.");
                     }
+                } catch (LoginThrottledException e) {
+                    System.out.println(e.getMessage());
                 } catch (AuthenticationException e) {
                     System.out.println("Exception Occurred");
                     System.exit(0);
@@ -58,18 +63,11 @@ public class LoginServiceImpl implements LoginService {
     public boolean login(String userId, String password) throws AuthenticationException {
         //loggedIn = true;
 
-        // Get users id and password from DB
         try {
-            User currentUser = userDAO.getUserById(userId);
-
-            if (currentUser != null && userId.equals(currentUser.userId()) && password.equals(currentUser.password())) {
-                return true;
-            }
+            return authenticator.authenticate(userId, password, null) != null;
         } catch (SQLException e) {
             throw new AuthenticationException(e.getMessage(), e, "123");
 
         }
-
-        return false;
     }
 }
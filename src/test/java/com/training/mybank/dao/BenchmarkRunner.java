@@ -0,0 +1,27 @@
+package com.training.mybank.dao;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the DAO and row-mapping benchmarks. Build first with {@code mvn test-compile},
+ * then run this class from the IDE, or pass a regex to select benchmarks:
+ * <pre>
+ *   java -cp target/classes:target/test-classes:&lt;test classpath&gt; com.training.mybank.dao.BenchmarkRunner RowMapping
+ * </pre>
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackageName() + ".*Benchmark";
+        Options options = new OptionsBuilder()
+                .include(include)
+                .result("target/jmh-results.json")
+                .resultFormat(ResultFormatType.JSON)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,104 @@
+package com.training.mybank.dao;
+
+import com.training.mybank.config.DatabaseConfig;
+import com.training.mybank.model.User;
+import com.training.mybank.support.EmbeddedDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round-trip cost of the DAO methods against an in-process H2 database,
+ * including borrowing and returning a pooled connection.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DaoBenchmark {
+
+    @Param({"1000"})
+    public int accounts;
+
+    @Param({"100"})
+    public int users;
+
+    private final AccountDAO accountDAO = new AccountDAO();
+    private final TransactionDAO transactionDAO = new TransactionDAO();
+    private final UserDAO userDAO = new UserDAO();
+    private int firstAccountId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        EmbeddedDatabase.start(8);
+        for (int i = 0; i < users; i++) {
+            userDAO.createUser(new User("bench_user_" + i, "secret"));
+        }
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            for (int i = 0; i < accounts; i++) {
+                int accountId = accountDAO.createAccount(conn, "bench_user_" + (i % users), 1_000_000);
+                transactionDAO.recordTransaction(conn, null, accountId, 1_000_000); // opening deposit
+            }
+        }
+        firstAccountId = accountDAO.getAccountsByUserId("bench_user_0").get(0).accountId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DatabaseConfig.close();
+    }
+
+    private int randomAccountId() {
+        return firstAccountId + ThreadLocalRandom.current().nextInt(accounts);
+    }
+
+    private String randomUserId() {
+        return "bench_user_" + ThreadLocalRandom.current().nextInt(users);
+    }
+
+    @Benchmark
+    public Object getAccountById() throws SQLException {
+        return accountDAO.getAccountById(randomAccountId());
+    }
+
+    @Benchmark
+    public Object getAccountsByUserId() throws SQLException {
+        return accountDAO.getAccountsByUserId(randomUserId());
+    }
+
+    @Benchmark
+    public void updateBalance() throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            accountDAO.updateBalance(conn, randomAccountId(), 1);
+        }
+    }
+
+    @Benchmark
+    public void recordTransaction() throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            transactionDAO.recordTransaction(conn, randomAccountId(), randomAccountId(), 1);
+        }
+    }
+
+    @Benchmark
+    public Object getUserById() throws SQLException {
+        return userDAO.getUserById(randomUserId());
+    }
+}
@@ -0,0 +1,93 @@
+package com.training.mybank.dao;
+
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning result-set rows into Account, Transaction and User objects,
+ * measured on in-memory result sets so no database time is included. The columns are
+ * laid out in the order of the DAOs' *_COLUMNS lists, which the row mappers read by position.
+ * Each invocation maps {@link #ROWS} rows.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RowMappingBenchmark {
+    private static final int ROWS = 1000;
+
+    private SimpleResultSet accounts;
+    private SimpleResultSet transactions;
+    private SimpleResultSet users;
+
+    @Setup
+    public void setUp() {
+        accounts = new SimpleResultSet();
+        accounts.addColumn("account_id", Types.INTEGER, 10, 0);
+        accounts.addColumn("user_id", Types.VARCHAR, 50, 0);
+        accounts.addColumn("balance", Types.DECIMAL, 15, 2);
+
+        transactions = new SimpleResultSet();
+        transactions.addColumn("transaction_id", Types.INTEGER, 10, 0);
+        transactions.addColumn("from_account", Types.INTEGER, 10, 0);
+        transactions.addColumn("to_account", Types.INTEGER, 10, 0);
+        transactions.addColumn("amount", Types.DECIMAL, 15, 2);
+        transactions.addColumn("transaction_date", Types.TIMESTAMP, 26, 6);
+
+        users = new SimpleResultSet();
+        users.addColumn("user_id", Types.VARCHAR, 50, 0);
+        users.addColumn("password", Types.VARCHAR, 100, 0);
+
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < ROWS; i++) {
+            accounts.addRow(i, "user_" + (i % 100), new BigDecimal("1500.25"));
+            transactions.addRow(i, i % 10 == 0 ? null : i, i, new BigDecimal("42.10"), now);
+            users.addRow("user_" + i, "password" + i);
+        }
+        accounts.setAutoClose(false);
+        transactions.setAutoClose(false);
+        users.setAutoClose(false);
+    }
+
+    @Benchmark
+    public void mapAccounts(Blackhole bh) throws SQLException {
+        accounts.beforeFirst();
+        while (accounts.next()) {
+            bh.consume(AccountDAO.ACCOUNT_ROW.map(accounts));
+        }
+    }
+
+    @Benchmark
+    public void mapTransactions(Blackhole bh) throws SQLException {
+        transactions.beforeFirst();
+        while (transactions.next()) {
+            bh.consume(TransactionDAO.TRANSACTION_ROW.map(transactions));
+        }
+    }
+
+    @Benchmark
+    public void mapUsers(Blackhole bh) throws SQLException {
+        users.beforeFirst();
+        while (users.next()) {
+            bh.consume(UserDAO.USER_ROW.map(users));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.training.mybank.http;
+
+import com.training.mybank.dao.AccountDAO;
+import com.training.mybank.dao.UserDAO;
+import com.training.mybank.model.User;
+import com.training.mybank.service.AsyncBankingService;
+import com.training.mybank.service.BankingService;
+import com.training.mybank.support.EmbeddedDatabase;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BankingHttpServerTest {
+    private static final String USER = "http_test_user";
+    private static final String PASSWORD = "http-secret";
+
+    private static AsyncBankingService banking;
+    private static BankingHttpServer server;
+    private static final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeAll
+    static void startServer() throws SQLException, IOException {
+        EmbeddedDatabase.start(4);
+        new UserDAO().createUser(new User(USER, PASSWORD));
+        banking = new AsyncBankingService(new BankingService(), 4);
+        server = new BankingHttpServer(banking, 0, 2, 100, 30);
+        server.start();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.close();
+        banking.close();
+    }
+
+    @Test
+    void transferToAnUnknownAccountIsABadRequest() throws Exception {
+        String token = login();
+        int from = new BankingService().createAccount(USER, 10_000);
+
+        HttpResponse<String> response = post("/api/transfers", token,
+                "{\"fromAccountId\": " + from + ", \"toAccountId\": 999999, \"amount\": 12.50}");
+
+        assertEquals(400, response.statusCode());
+        assertEquals("{\"error\":\"Account not found: 999999\"}", response.body());
+        assertEquals(10_000, new AccountDAO().getAccountById(from).balance());
+    }
+
+    private static String login() throws IOException, InterruptedException {
+        HttpResponse<String> response = post("/api/login", null,
+                "{\"userId\": \"" + USER + "\", \"password\": \"" + PASSWORD + "\"}");
+        assertEquals(200, response.statusCode(), response.body());
+        return Json.parseObject(response.body()).get("token");
+    }
+
+    private static HttpResponse<String> post(String path, String token, String body) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (token != null) request.header("Authorization", "Bearer " + token);
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
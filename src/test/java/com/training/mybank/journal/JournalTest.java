@@ -0,0 +1,171 @@
+package com.training.mybank.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalTest {
+    private static final int SEGMENT_BYTES = 4096;
+    // Records of event(i): 16-byte record header + 22-byte payload (no strings)
+    private static final int RECORD_BYTES = Segment.RECORD_HEADER_BYTES + 22;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsRecordsBackAcrossSegmentRotationsAndRestarts() throws IOException {
+        try (Journal journal = open()) {
+            for (int i = 1; i <= 300; i++) {
+                assertEquals(i, journal.append(event(i)));
+            }
+            assertEquals(3, journal.getSegmentCount());
+            assertReads(journal, 1, 300);
+        }
+        try (Journal journal = open()) {
+            assertEquals(300, journal.getLastSeq());
+            assertEquals(3, journal.getSegmentCount());
+            assertEquals(301, journal.append(event(301)));
+            assertReads(journal, 1, 301);
+        }
+    }
+
+    @Test
+    void discardsATornRecordAtTheEndOfTheLastSegment() throws IOException {
+        try (Journal journal = open()) {
+            for (int i = 1; i <= 10; i++) {
+                journal.append(event(i));
+            }
+        }
+        // A crash in the middle of appending record 10: its payload never fully reached the disk
+        int tenth = Segment.HEADER_BYTES + 9 * RECORD_BYTES;
+        try (FileChannel channel = FileChannel.open(segmentFile(1), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x7F}), tenth + Segment.RECORD_HEADER_BYTES + 3);
+        }
+
+        try (Journal journal = open()) {
+            assertEquals(9, journal.getLastSeq());
+            assertEquals(10, journal.append(event(1000)));
+            journal.awaitDurable(10);
+            Journal.Cursor cursor = journal.cursor(10);
+            assertEquals(1000, cursor.next().amount());
+            assertNull(cursor.next());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, SEGMENT_BYTES})
+    void deletesASegmentLeftWithoutAHeaderByAnInterruptedRotation(int tornSize) throws IOException {
+        long rotatedAt;
+        try (Journal journal = open()) {
+            long seq = 0;
+            while (journal.getSegmentCount() < 3) {
+                seq = journal.append(event(seq + 1));
+            }
+            rotatedAt = seq;
+        }
+        // A crash after the third segment was created (empty, or mapped and zero-filled) but
+        // before its header, or anything after it, was forced
+        Files.write(segmentFile(rotatedAt), new byte[tornSize]);
+
+        try (Journal journal = open()) {
+            assertEquals(rotatedAt - 1, journal.getLastSeq());
+            assertEquals(2, journal.getSegmentCount());
+            assertFalse(Files.exists(segmentFile(rotatedAt)));
+            for (long seq = rotatedAt; seq < rotatedAt + 50; seq++) {
+                assertEquals(seq, journal.append(event(seq)));
+            }
+            assertEquals(3, journal.getSegmentCount());
+            assertTrue(Files.exists(segmentFile(rotatedAt)));
+            assertReads(journal, 1, rotatedAt + 49);
+        }
+    }
+
+    @Test
+    void startsAgainAtTheTornSegmentIfItWasTheOnlyOne() throws IOException {
+        Files.write(segmentFile(51), new byte[SEGMENT_BYTES]);
+
+        try (Journal journal = open()) {
+            assertEquals(50, journal.getLastSeq());
+            assertEquals(51, journal.append(event(51)));
+            assertReads(journal, 51, 51);
+        }
+    }
+
+    @Test
+    void readsOnlyRecordsThatAreDurable() throws IOException {
+        try (Journal journal = open()) {
+            for (int i = 1; i <= 3; i++) {
+                journal.append(event(i));
+            }
+            journal.awaitDurable(2);
+            Journal.Cursor cursor = journal.cursor(1);
+            assertEquals(1, cursor.next().amount());
+            assertEquals(2, cursor.next().amount());
+            assertNull(cursor.next());
+
+            journal.awaitDurable(3);
+            assertEquals(3, cursor.next().amount());
+        }
+    }
+
+    @Test
+    void startsAgainAtTheStartSeqIfTheJournalEndsBeforeIt() throws IOException {
+        try (Journal journal = open()) {
+            for (int i = 1; i <= 5; i++) {
+                journal.append(event(i));
+            }
+        }
+        // A reader that got to record 10 before the journal lost records 6..10
+        try (Journal journal = open(11)) {
+            assertEquals(10, journal.getLastSeq());
+            assertEquals(1, journal.getSegmentCount());
+            assertFalse(Files.exists(segmentFile(1)));
+            assertEquals(11, journal.append(event(11)));
+        }
+        try (Journal journal = open()) {
+            assertEquals(11, journal.getLastSeq());
+            assertReads(journal, 11, 11);
+        }
+    }
+
+    private Journal open() throws IOException {
+        return open(1);
+    }
+
+    private Journal open(long startSeq) throws IOException {
+        return new Journal(dir, SEGMENT_BYTES, FsyncPolicy.PER_WRITE, 10, startSeq);
+    }
+
+    private Path segmentFile(long firstSeq) {
+        return dir.resolve(Segment.fileName(firstSeq));
+    }
+
+    private static JournalEvent event(long amount) {
+        return new JournalEvent(0, 0, 1, amount, null, null, null);
+    }
+
+    // Expects records from..to, each carrying its own sequence number as the amount
+    private static void assertReads(Journal journal, long from, long to) {
+        journal.awaitDurable(to);
+        Journal.Cursor cursor = journal.cursor(from);
+        for (long seq = from; seq <= to; seq++) {
+            JournalEvent event = cursor.next();
+            assertEquals(seq, event.seq());
+            assertEquals(seq, event.amount());
+        }
+        assertNull(cursor.next());
+    }
+}
@@ -0,0 +1,268 @@
+package com.training.mybank.loadtest;
+
+import com.training.mybank.config.DatabaseConfig;
+import com.training.mybank.dao.AccountCache;
+import com.training.mybank.dao.AccountDAO;
+import com.training.mybank.dao.TransactionDAO;
+import com.training.mybank.dao.UserDAO;
+import com.training.mybank.model.Account;
+import com.training.mybank.model.Money;
+import com.training.mybank.model.User;
+import com.training.mybank.service.BankingService;
+import com.training.mybank.support.EmbeddedDatabase;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Standalone load generator for {@link BankingService}.
+ *
+ * Creates users and accounts in an embedded H2 database, runs a mixed
+ * getBalance / deposit / withdraw / transfer workload from many concurrent workers,
+ * then prints throughput and latency percentiles per operation and checks that the
+ * total amount of money in the bank equals opening balances + deposits - withdrawals.
+ *
+ * Usage (all arguments optional):
+ * <pre>
+ *   --users=100 --accounts=400 --workers=200 --seconds=30 --pool=20 --balance=1000 --group-commit=false
+ * </pre>
+ * Exits with status 1 if money was created or destroyed.
+ */
+public class BankingLoadTest {
+
+    enum Operation { GET_BALANCE, DEPOSIT, WITHDRAW, TRANSFER }
+
+    private final int users;
+    private final int accounts;
+    private final int workers;
+    private final int seconds;
+    private final long openingBalance;
+
+    private final List<String> userIds = new ArrayList<>();
+    private final Map<String, List<Integer>> accountsByUser = new HashMap<>();
+    private final List<Integer> allAccountIds = new ArrayList<>();
+
+    private final LongAdder depositedCents = new LongAdder();
+    private final LongAdder withdrawnCents = new LongAdder();
+    private final LongAdder[] succeeded = newAdders();
+    private final LongAdder[] rejected = newAdders();
+    private final LongAdder[] failed = newAdders();
+
+    BankingLoadTest(int users, int accounts, int workers, int seconds, long openingBalance) {
+        this.users = users;
+        this.accounts = accounts;
+        this.workers = workers;
+        this.seconds = seconds;
+        this.openingBalance = openingBalance;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        int pool = Integer.parseInt(options.getOrDefault("pool", "20"));
+        System.setProperty("mybank.ledger.group-commit.enabled", options.getOrDefault("group-commit", "false"));
+        BankingLoadTest test = new BankingLoadTest(
+                Integer.parseInt(options.getOrDefault("users", "100")),
+                Integer.parseInt(options.getOrDefault("accounts", "400")),
+                Integer.parseInt(options.getOrDefault("workers", "200")),
+                Integer.parseInt(options.getOrDefault("seconds", "30")),
+                Long.parseLong(options.getOrDefault("balance", "1000")));
+
+        EmbeddedDatabase.start(pool);
+        boolean conserved;
+        try {
+            test.setUp();
+            conserved = test.run();
+        } finally {
+            DatabaseConfig.close();
+        }
+        System.exit(conserved ? 0 : 1);
+    }
+
+    private void setUp() throws SQLException {
+        UserDAO userDAO = new UserDAO();
+        AccountDAO accountDAO = new AccountDAO();
+        TransactionDAO transactionDAO = new TransactionDAO();
+
+        for (int i = 0; i < users; i++) {
+            String userId = "load_user_" + i;
+            userDAO.createUser(new User(userId, "secret" + i));
+            userIds.add(userId);
+        }
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            long opening = Money.ofUnits(openingBalance);
+            for (int i = 0; i < accounts; i++) {
+                int accountId = accountDAO.createAccount(conn, userIds.get(i % users), opening);
+                transactionDAO.recordTransaction(conn, null, accountId, opening); // opening deposit
+            }
+        }
+        for (String userId : userIds) {
+            List<Integer> ids = new ArrayList<>();
+            for (Account account : accountDAO.getAccountsByUserId(userId)) {
+                ids.add(account.accountId());
+            }
+            accountsByUser.put(userId, ids);
+            allAccountIds.addAll(ids);
+        }
+        System.out.printf("Created %d users and %d accounts with $%d each%n", users, accounts, openingBalance);
+    }
+
+    private boolean run() throws Exception {
+        BigDecimal before = totalBalance();
+        LatencySamples[][] samples = new LatencySamples[workers][Operation.values().length];
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        CountDownLatch ready = new CountDownLatch(workers);
+        CountDownLatch go = new CountDownLatch(1);
+        long[] deadline = new long[1];
+
+        for (int w = 0; w < workers; w++) {
+            LatencySamples[] workerSamples = samples[w];
+            for (Operation op : Operation.values()) {
+                workerSamples[op.ordinal()] = new LatencySamples();
+            }
+            int userIndex = w % users;
+            String userId = userIds.get(userIndex);
+            executor.submit(() -> {
+                BankingService service = new BankingService();
+                try {
+                    service.login(userId, "secret" + userIndex);
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Login failed for " + userId, e);
+                } finally {
+                    ready.countDown();
+                }
+                go.await();
+                while (System.nanoTime() < deadline[0]) {
+                    runOne(service, userId, workerSamples);
+                }
+                return null;
+            });
+        }
+
+        ready.await();
+        long start = System.nanoTime();
+        deadline[0] = start + TimeUnit.SECONDS.toNanos(seconds);
+        go.countDown();
+        executor.shutdown();
+        executor.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        report(samples, elapsedSeconds);
+        return verifyConservation(before);
+    }
+
+    private void runOne(BankingService service, String userId, LatencySamples[] workerSamples) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Integer> own = accountsByUser.get(userId);
+        int accountId = own.get(random.nextInt(own.size()));
+        long cents = 1 + random.nextInt(10_000); // $0.01 .. $100.00
+
+        int pick = random.nextInt(100);
+        Operation op = pick < 40 ? Operation.GET_BALANCE
+                : pick < 60 ? Operation.DEPOSIT
+                : pick < 80 ? Operation.WITHDRAW
+                : Operation.TRANSFER;
+
+        long t0 = System.nanoTime();
+        try {
+            switch (op) {
+                case GET_BALANCE -> service.getBalance(accountId);
+                case DEPOSIT -> {
+                    service.deposit(accountId, cents);
+                    depositedCents.add(cents);
+                }
+                case WITHDRAW -> {
+                    service.withdraw(accountId, cents);
+                    withdrawnCents.add(cents);
+                }
+                case TRANSFER -> {
+                    int to = allAccountIds.get(random.nextInt(allAccountIds.size()));
+                    service.transferFunds(accountId, to, cents);
+                }
+            }
+            succeeded[op.ordinal()].increment();
+        } catch (Exception e) {
+            if ("Insufficient funds.".equals(e.getMessage())) {
+                rejected[op.ordinal()].increment();
+            } else {
+                failed[op.ordinal()].increment();
+            }
+        } finally {
+            workerSamples[op.ordinal()].record(System.nanoTime() - t0);
+        }
+    }
+
+    private void report(LatencySamples[][] samples, double elapsedSeconds) {
+        long totalOps = 0;
+        System.out.printf("%n%-12s %10s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "ok", "rejected", "errors", "ops/s", "p50 us", "p99 us", "p999 us");
+        for (Operation op : Operation.values()) {
+            LatencySamples merged = new LatencySamples();
+            for (LatencySamples[] workerSamples : samples) {
+                merged.addAll(workerSamples[op.ordinal()]);
+            }
+            long[] p = merged.percentiles(50, 99, 99.9);
+            totalOps += merged.size();
+            System.out.printf("%-12s %10d %10d %10d %10.0f %10.0f %10.0f %10.0f%n",
+                    op, succeeded[op.ordinal()].sum(), rejected[op.ordinal()].sum(), failed[op.ordinal()].sum(),
+                    merged.size() / elapsedSeconds, p[0] / 1e3, p[1] / 1e3, p[2] / 1e3);
+        }
+        System.out.printf("%nTotal: %d operations in %.1f s = %.0f ops/s with %d workers%n",
+                totalOps, elapsedSeconds, totalOps / elapsedSeconds, workers);
+        AccountCache cache = AccountCache.shared();
+        System.out.printf("Account cache: %d hits, %d misses (%.1f%% hit ratio)%n",
+                cache.getHitCount(), cache.getMissCount(), cache.getHitRatio() * 100);
+    }
+
+    private boolean verifyConservation(BigDecimal before) throws SQLException {
+        BigDecimal expected = before
+                .add(Money.toDecimal(depositedCents.sum()))
+                .subtract(Money.toDecimal(withdrawnCents.sum()));
+        BigDecimal actual = totalBalance();
+        boolean conserved = expected.compareTo(actual) == 0;
+        System.out.printf("Money check: expected total $%s, actual $%s -> %s%n",
+                expected, actual, conserved ? "CONSERVED" : "MISMATCH");
+        return conserved;
+    }
+
+    private static BigDecimal totalBalance() throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT COALESCE(SUM(balance), 0) FROM accounts");
+             ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            return rs.getBigDecimal(1);
+        }
+    }
+
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[Operation.values().length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,45 @@
+package com.training.mybank.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Growable array of latency samples in nanoseconds. Each worker owns its own
+ * instance, so no synchronisation is needed while recording.
+ */
+final class LatencySamples {
+    private long[] values = new long[1024];
+    private int size = 0;
+
+    void record(long nanos) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = nanos;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void addAll(LatencySamples other) {
+        if (size + other.size > values.length) {
+            values = Arrays.copyOf(values, Math.max(values.length * 2, size + other.size));
+        }
+        System.arraycopy(other.values, 0, values, size, other.size);
+        size += other.size;
+    }
+
+    /**
+     * Returns the requested percentiles (0-100) in nanoseconds. Sorts the samples in place.
+     */
+    long[] percentiles(double... percentiles) {
+        Arrays.sort(values, 0, size);
+        long[] result = new long[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            if (size == 0) continue;
+            int index = (int) Math.ceil(percentiles[i] / 100.0 * size) - 1;
+            result[i] = values[Math.max(0, Math.min(index, size - 1))];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,52 @@
+package com.training.mybank.loadtest;
+
+import com.training.mybank.config.DatabaseConfig;
+import com.training.mybank.dao.AccountDAO;
+import com.training.mybank.dao.TransactionDAO;
+import com.training.mybank.dao.UserDAO;
+import com.training.mybank.http.BankingHttpServer;
+import com.training.mybank.model.Money;
+import com.training.mybank.model.User;
+import com.training.mybank.service.AsyncBankingService;
+import com.training.mybank.support.EmbeddedDatabase;
+
+import java.sql.Connection;
+
+/**
+ * Starts the HTTP API on an in-memory H2 database, so it can be load-tested locally
+ * without PostgreSQL. Creates users user0..user{N-1} (password "password" + index),
+ * each with two accounts of $1000.
+ *
+ * Usage: {@code LocalBankingServer [users] [pool size]}; the port comes from mybank.http.port.
+ */
+public class LocalBankingServer {
+
+    public static void main(String[] args) throws Exception {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int pool = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        EmbeddedDatabase.start(pool);
+        UserDAO userDAO = new UserDAO();
+        AccountDAO accountDAO = new AccountDAO();
+        TransactionDAO transactionDAO = new TransactionDAO();
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            for (int i = 0; i < users; i++) {
+                userDAO.createUser(new User("user" + i, "password" + i));
+                for (int a = 0; a < 2; a++) {
+                    int accountId = accountDAO.createAccount(conn, "user" + i, Money.ofUnits(1000));
+                    transactionDAO.recordTransaction(conn, null, accountId, Money.ofUnits(1000)); // opening deposit
+                }
+            }
+        }
+        System.out.printf("Seeded %d users with 2 accounts each%n", users);
+
+        AsyncBankingService banking = new AsyncBankingService();
+        BankingHttpServer server = BankingHttpServer.fromConfig(banking);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            banking.close();
+            DatabaseConfig.close();
+        }));
+        server.start();
+    }
+}
@@ -0,0 +1,189 @@
+package com.training.mybank.service;
+
+import com.training.mybank.config.DatabaseConfig;
+import com.training.mybank.dao.AccountDAO;
+import com.training.mybank.dao.IdempotencyDAO;
+import com.training.mybank.dao.JournalCheckpointDAO;
+import com.training.mybank.dao.TransactionDAO;
+import com.training.mybank.dao.UserDAO;
+import com.training.mybank.journal.FsyncPolicy;
+import com.training.mybank.journal.Journal;
+import com.training.mybank.journal.JournalEvent;
+import com.training.mybank.model.User;
+import com.training.mybank.support.EmbeddedDatabase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// A record the applier cannot get past would otherwise block awaitApplied forever
+@Timeout(30)
+class JournalLedgerTest {
+    private static final String USER = "journal_ledger_test";
+
+    private final AccountDAO accountDAO = new AccountDAO();
+    private final JournalCheckpointDAO checkpointDAO = new JournalCheckpointDAO();
+    private final IdempotencyGuard idempotencyGuard = new IdempotencyGuard(new IdempotencyDAO(), 1000);
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void startDatabase() throws SQLException {
+        EmbeddedDatabase.start(4);
+        new UserDAO().createUser(new User(USER, "secret"));
+    }
+
+    @Test
+    void appliesEachRecordExactlyOnceAcrossARestart() throws Exception {
+        int account = createAccount();
+        try (JournalLedger ledger = open("restart")) {
+            for (int i = 0; i < 10; i++) {
+                ledger.submit(0, account, 100, null, null, null);
+            }
+            ledger.awaitApplied();
+        }
+
+        // A crash after records 11..15 were journaled but before the applier got to them.
+        // Records 1..10 are applied and still in the journal's only segment.
+        try (Journal journal = openJournal("restart")) {
+            assertEquals(10, journal.getLastSeq());
+            for (int i = 0; i < 5; i++) {
+                journal.append(new JournalEvent(0, 0, account, 100, null, null, null));
+            }
+        }
+
+        try (JournalLedger ledger = open("restart")) {
+            ledger.awaitApplied();
+            assertEquals(15, ledger.getAppliedSeq());
+            assertEquals(5, ledger.getAppliedCount());
+        }
+        assertEquals(15, checkpointDAO.getAppliedSeq("restart"));
+        assertEquals(1500, accountDAO.getAccountById(account).balance());
+        assertEquals(15, ledgerRows(account));
+    }
+
+    @Test
+    void rejectsARecordTheDatabaseCannotApplyAndKeepsDraining() throws Exception {
+        int account = createAccount();
+        try (Journal journal = openJournal("rejects")) {
+            journal.append(new JournalEvent(0, 0, account, 100, null, null, null));
+            journal.append(new JournalEvent(0, 0, Integer.MAX_VALUE, 100, null, null, null)); // no such account
+            journal.append(new JournalEvent(0, 0, account, 100, null, null, null));
+        }
+
+        try (JournalLedger ledger = open("rejects")) {
+            ledger.awaitApplied();
+            assertEquals(3, ledger.getAppliedSeq());
+            assertEquals(2, ledger.getAppliedCount());
+            assertEquals(1, ledger.getRejectedCount());
+            assertEquals(0, ledger.getApplyFailureCount());
+        }
+        assertEquals(200, accountDAO.getAccountById(account).balance());
+        assertEquals(2, ledgerRows(account));
+    }
+
+    @Test
+    void continuesAfterTheCheckpointIfTheJournalLostItsTail() throws Exception {
+        int account = createAccount();
+        Path segment;
+        byte[] beforeTail;
+        try (JournalLedger ledger = open("lost-tail")) {
+            ledger.submit(0, account, 100, null, null, null);
+            ledger.submit(0, account, 100, null, null, null);
+            ledger.awaitApplied();
+            try (Stream<Path> files = Files.list(dir.resolve("lost-tail"))) {
+                segment = files.findFirst().orElseThrow();
+            }
+            beforeTail = Files.readAllBytes(segment);
+            for (int i = 0; i < 3; i++) {
+                ledger.submit(0, account, 100, null, null, null);
+            }
+            ledger.awaitApplied();
+        }
+        // The disk comes back without records 3..5, which the database already has
+        Files.write(segment, beforeTail);
+
+        try (JournalLedger ledger = open("lost-tail")) {
+            assertEquals(5, ledger.getAppliedSeq());
+            assertEquals(5, ledger.getJournal().getLastSeq());
+            ledger.submit(0, account, 100, null, null, null);
+            ledger.awaitApplied();
+            assertEquals(6, ledger.getAppliedSeq());
+        }
+        assertEquals(6, checkpointDAO.getAppliedSeq("lost-tail"));
+        assertEquals(600, accountDAO.getAccountById(account).balance());
+        assertEquals(6, ledgerRows(account));
+    }
+
+    @Test
+    void refusesToStartOnAJournalThatEndsBeforeTheCheckpoint() throws Exception {
+        int account = createAccount();
+        try (JournalLedger ledger = open("behind")) {
+            ledger.submit(0, account, 100, null, null, null);
+            ledger.awaitApplied();
+        }
+        try (Journal journal = new Journal(dir.resolve("behind-copy"), 4096, FsyncPolicy.PER_WRITE, 10, 1)) {
+            assertThrows(IllegalStateException.class, () -> new JournalLedger(journal, "behind", accountDAO,
+                    new TransactionDAO(), idempotencyGuard, 4));
+        }
+    }
+
+    @Test
+    void refusesMovementsOnceTheApplierHasStopped() throws Exception {
+        int account = createAccount();
+        AccountDAO failing = new AccountDAO() {
+            @Override
+            public void afterCommit(int accountId) {
+                throw new AssertionError("applier killed");
+            }
+        };
+        try (JournalLedger ledger = new JournalLedger(openJournal("stopped"), "stopped", failing,
+                new TransactionDAO(), idempotencyGuard, 4)) {
+            ledger.submit(0, account, 100, null, null, null);
+            IllegalStateException stopped = assertThrows(IllegalStateException.class, ledger::awaitApplied);
+            assertEquals("applier killed", stopped.getCause().getMessage());
+            assertThrows(IllegalStateException.class, () -> ledger.submit(0, account, 100, null, null, null));
+        }
+    }
+
+    private JournalLedger open(String journalId) throws IOException, SQLException {
+        // A small batch size, so the records are applied in more than one transaction
+        return new JournalLedger(openJournal(journalId), journalId, accountDAO, new TransactionDAO(), idempotencyGuard, 4);
+    }
+
+    private Journal openJournal(String journalId) throws IOException, SQLException {
+        return new Journal(dir.resolve(journalId), 4096, FsyncPolicy.PER_WRITE, 10,
+                checkpointDAO.getAppliedSeq(journalId) + 1);
+    }
+
+    private int createAccount() throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            return accountDAO.createAccount(conn, USER, 0);
+        }
+    }
+
+    private static long ledgerRows(int accountId) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM transactions WHERE to_account = ?";
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, accountId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+}
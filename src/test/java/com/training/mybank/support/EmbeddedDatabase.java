@@ -0,0 +1,65 @@
+package com.training.mybank.support;
+
+import com.training.mybank.config.DatabaseConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Points DatabaseConfig at an in-memory H2 database running in PostgreSQL mode
+ * and creates the mybank schema in it.
+ *
+ * Must be called before anything touches DatabaseConfig, because the pool
+ * reads its settings once, when the class is initialised.
+ */
+public final class EmbeddedDatabase {
+    private static final String URL = "jdbc:h2:mem:mybank;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;"
+            + "DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000";
+    private static final String SCHEMA = "/db/h2-init-db.sql";
+
+    private static boolean started = false;
+
+    private EmbeddedDatabase() {
+    }
+
+    public static synchronized void start(int poolSize) throws SQLException {
+        if (started) return;
+
+        System.setProperty("spring.datasource.url", URL);
+        System.setProperty("spring.datasource.username", "sa");
+        System.setProperty("spring.datasource.password", "");
+        System.setProperty("spring.datasource.hikari.connection-init-sql", "");
+        System.setProperty("spring.datasource.hikari.maximum-pool-size", String.valueOf(poolSize));
+        System.setProperty("spring.datasource.hikari.minimum-idle", String.valueOf(poolSize));
+        System.setProperty("spring.datasource.hikari.leak-detection-threshold", "0");
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             Statement stmt = conn.createStatement()) {
+            for (String sql : readScript().split(";")) {
+                if (!sql.isBlank()) {
+                    stmt.execute(sql);
+                }
+            }
+        }
+        started = true;
+    }
+
+    private static String readScript() {
+        try (InputStream in = EmbeddedDatabase.class.getResourceAsStream(SCHEMA)) {
+            if (in == null) throw new IllegalStateException("Missing schema script " + SCHEMA);
+            StringBuilder script = new StringBuilder();
+            for (String line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                if (!line.trim().startsWith("--")) {
+                    script.append(line).append('\n');
+                }
+            }
+            return script.toString();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read " + SCHEMA, e);
+        }
+    }
+}
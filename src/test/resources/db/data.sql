@@ -6,17 +6,21 @@ INSERT INTO users (user_id, password) VALUES
 ('user3', 'password3');
 
 -- 2. Create Accounts for these users
--- Alice has two accounts to test internal transfers
+-- Alice has two accounts to test internal transfers.
+-- Balances include the transfer below, so each one equals its ledger (LedgerReconciler).
 INSERT INTO accounts (user_id, balance) VALUES
 ('alice_wonder', 1500.00), -- Alice's main account (ID will be 1)
 ('alice_wonder', 250.00),  -- Alice's savings (ID will be 2)
 ('bob_builder', 5000.00),  -- Bob's account (ID will be 3)
-('charlie_bank', 10.00);   -- Charlie's account (ID will be 4)
+('charlie_bank', 110.00);  -- Charlie's account (ID will be 4)
 
 -- 3. Record initial transactions
--- A deposit (from_account is NULL)
-INSERT INTO transactions (from_account, to_account, amount)
-VALUES (NULL, 1, 1500.00);
+-- Opening deposits (from_account is NULL), as BankingService.createAccount records them
+INSERT INTO transactions (from_account, to_account, amount) VALUES
+(NULL, 1, 1500.00),
+(NULL, 2, 250.00),
+(NULL, 3, 5100.00),
+(NULL, 4, 10.00);
 
 -- A transfer from Bob to Charlie
 INSERT INTO transactions (from_account, to_account, amount)
@@ -0,0 +1,73 @@
+-- H2 (PostgreSQL mode) version of new-init-db.sql, used by the load-test harness and benchmarks.
+
+CREATE TABLE users (
+    user_id VARCHAR(50) PRIMARY KEY,
+    password VARCHAR(255) NOT NULL -- PBKDF2 hash (legacy plaintext until the next login)
+);
+
+CREATE TABLE accounts (
+    account_id SERIAL PRIMARY KEY,
+    user_id VARCHAR(50) REFERENCES users(user_id) ON DELETE CASCADE,
+    balance DECIMAL(15, 2) DEFAULT 0.00,
+    CHECK (balance >= 0)
+);
+CREATE INDEX idx_accounts_user_id ON accounts(user_id);
+
+CREATE TABLE transactions (
+    transaction_id SERIAL PRIMARY KEY,
+    from_account INT REFERENCES accounts(account_id) ON DELETE SET NULL,
+    to_account INT REFERENCES accounts(account_id) ON DELETE SET NULL,
+    amount DECIMAL(15, 2) NOT NULL,
+    transaction_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+-- (account, transaction_date, transaction_id) supports keyset-paginated history, newest first
+CREATE INDEX idx_transactions_from_account ON transactions(from_account, transaction_date, transaction_id);
+CREATE INDEX idx_transactions_to_account ON transactions(to_account, transaction_date, transaction_id);
+
+-- Client idempotency keys for deposits, withdrawals and transfers.
+-- A row is inserted in the same transaction as the money movement it guards.
+CREATE TABLE idempotency_keys (
+    user_id VARCHAR(50) NOT NULL,
+    idempotency_key VARCHAR(100) NOT NULL,
+    request_fingerprint VARCHAR(200) NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, idempotency_key)
+);
+CREATE INDEX idx_idempotency_keys_created_at ON idempotency_keys(created_at);
+
+-- Ledger-derived balance of each account as of snapshot_at, for accounts with activity since the
+-- previous snapshot. Balance as of T = latest snapshot at or before T + ledger rows after it.
+CREATE TABLE balance_snapshots (
+    account_id INT NOT NULL REFERENCES accounts(account_id) ON DELETE CASCADE,
+    snapshot_at TIMESTAMP NOT NULL,
+    balance DECIMAL(15, 2) NOT NULL,
+    PRIMARY KEY (account_id, snapshot_at)
+);
+CREATE INDEX idx_balance_snapshots_snapshot_at ON balance_snapshots(snapshot_at);
+
+-- How far each local write-ahead journal (com.training.mybank.journal) has been applied.
+-- Updated in the same transaction as the balances and ledger rows of the records it covers.
+CREATE TABLE journal_checkpoints (
+    journal_id VARCHAR(100) PRIMARY KEY,
+    applied_seq BIGINT NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Ledger events for downstream consumers (com.training.mybank.outbox): one row per transactions
+-- row, inserted in the same transaction when mybank.outbox.enabled is on. event_id orders the stream.
+CREATE TABLE ledger_outbox (
+    event_id BIGSERIAL PRIMARY KEY,
+    transaction_id INT NOT NULL,
+    event_type VARCHAR(20) NOT NULL,
+    from_account INT,
+    to_account INT,
+    amount DECIMAL(15, 2) NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- The last event_id each outbox consumer has had delivered. Events every consumer has had are deleted.
+CREATE TABLE outbox_offsets (
+    consumer VARCHAR(100) PRIMARY KEY,
+    delivered_event_id BIGINT NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);